@@ -0,0 +1,86 @@
+package randoop.maven.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import randoop.maven.bytecode.ClassDiscovery;
+import randoop.maven.bytecode.ClassFile;
+import randoop.maven.utils.Utils;
+
+/**
+ * Compares the class-file based {@link ClassDiscovery} with the classpath scan plus
+ * class loading done by {@link Utils#classesLookup(String, ClassLoader)}, on a package
+ * sitting next to a number of dependency jars.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ClassDiscoveryBenchmark {
+
+  private static final String PACKAGE = "bench.fixture";
+
+  @Param({"100", "1000"})
+  public int classCount;
+
+  @Param({"100", "400"})
+  public int jarCount;
+
+  private Path root;
+  private Path classesDir;
+  private URL[] classpath;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("discovery-bench");
+    classesDir = Fixtures.compiledPackage(root, PACKAGE, classCount);
+
+    final byte[] sample = Files.readAllBytes(classesDir.resolve("bench/fixture/C0.class"));
+    final List<URL> urls = new ArrayList<>();
+    urls.add(Utils.newURL(classesDir.toString()));
+    for (Path each : Fixtures.fillerJars(root, jarCount, 500, sample)) {
+      urls.add(each.toUri().toURL());
+    }
+    classpath = Utils.toURLArray(urls);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Utils.deleteDirQuietly(root);
+  }
+
+  @Benchmark
+  public List<ClassFile> classDiscovery() throws IOException {
+    return ClassDiscovery.discover(classesDir, PACKAGE, ImmutableList.of());
+  }
+
+  @Benchmark
+  public Set<Class<?>> legacyClassesLookup() throws IOException {
+    // A fresh loader each time, as every build starts with a fresh one
+    try (URLClassLoader loader = new URLClassLoader(classpath, null)) {
+      return Utils.classesLookup(PACKAGE, loader);
+    }
+  }
+}
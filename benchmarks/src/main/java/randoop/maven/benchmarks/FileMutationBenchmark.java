@@ -0,0 +1,103 @@
+package randoop.maven.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import randoop.maven.utils.TreeCleaner;
+import randoop.maven.utils.Utils;
+
+/**
+ * Utilities that change the file system. Deleting consumes its input, so every iteration
+ * gets a fresh tree and runs exactly once (single-shot); copying overwrites the same
+ * targets, so it is measured like any other benchmark.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class FileMutationBenchmark {
+
+  @Param({"10000", "50000"})
+  public int fileCount;
+
+  @Param({"3", "12"})
+  public int depth;
+
+  private Path root;
+  private Path tree;
+  private Path copyTarget;
+  private List<Path> reports;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    root = Files.createTempDirectory("fs-mutation-bench");
+    copyTarget = root.resolve("copies");
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() throws IOException {
+    tree = Fixtures.testTree(root.resolve("iteration"), fileCount, depth);
+    reports = Utils.findFiles(tree, Utils.TEXT_MATCHER);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() {
+    Utils.deleteDirQuietly(root.resolve("iteration"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() {
+    Utils.deleteDirQuietly(root);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public void deleteDirQuietly() {
+    Utils.deleteDirQuietly(tree);
+  }
+
+  /** What cleanupStep did before {@link TreeCleaner}: look up, then delete one by one. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public void legacyRandoopTestsCleanup() {
+    Utils.findRandoopTests(tree).forEach(Utils::deleteFileQuietly);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public TreeCleaner.Result treeCleaner() {
+    return new TreeCleaner().clean(tree, TreeCleaner.RANDOOP_TEST_FILE);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2, time = 2)
+  @Measurement(iterations = 5, time = 2)
+  public Path copyFiles() throws IOException {
+    Utils.copyFiles(root, copyTarget, reports);
+    return copyTarget;
+  }
+}
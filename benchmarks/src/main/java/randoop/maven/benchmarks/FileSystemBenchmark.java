@@ -0,0 +1,70 @@
+package randoop.maven.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import randoop.maven.utils.Utils;
+
+/**
+ * Directory walks done on every build: looking up Randoop tests to clean up, and surefire
+ * reports to checkpoint. The tree is only read, so it is built once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileSystemBenchmark {
+
+  @Param({"10000", "50000", "200000"})
+  public int fileCount;
+
+  @Param({"3", "12"})
+  public int depth;
+
+  private Path root;
+  private Path tree;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("fs-bench");
+    tree = Fixtures.testTree(root, fileCount, depth);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Utils.deleteDirQuietly(root);
+  }
+
+  @Benchmark
+  public List<Path> findJavaFiles() {
+    return Utils.findFiles(tree, Utils.JAVA_MATCHER);
+  }
+
+  @Benchmark
+  public List<Path> findReportsWithSkipHints() {
+    return Utils.findFiles(tree, Utils.TEXT_MATCHER, "Report1", "Report2");
+  }
+
+  @Benchmark
+  public Set<Path> findRandoopTests() {
+    return Utils.findRandoopTests(tree);
+  }
+}
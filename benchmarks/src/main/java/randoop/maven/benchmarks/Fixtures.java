@@ -0,0 +1,150 @@
+package randoop.maven.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/** Synthetic inputs for the benchmarks; all of them are written under a given root. */
+final class Fixtures {
+
+  private Fixtures(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * Writes and compiles {@code count} classes in {@code packageName}: a mix of
+   * interfaces, abstract classes, plain classes with nested and anonymous classes,
+   * and classes with static initializers.
+   *
+   * @return the directory with the compiled classes
+   */
+  static Path compiledPackage(Path root, String packageName, int count) throws IOException {
+    final Path sources = root.resolve("src");
+    final Path classes = root.resolve("classes");
+    final Path packageDir = sources.resolve(packageName.replace('.', '/'));
+    Files.createDirectories(packageDir);
+    Files.createDirectories(classes);
+
+    final List<String> files = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final String name = "C" + i;
+      final String body;
+      switch (i % 4) {
+        case 0:
+          body = "public interface " + name + " { int value(); }";
+          break;
+        case 1:
+          body = "public abstract class " + name + " { public abstract int value(); }";
+          break;
+        case 2:
+          body = "public class " + name + " {\n"
+              + "  public static class Nested { public int x; }\n"
+              + "  public Runnable task() { return new Runnable() { public void run() {} }; }\n"
+              + "  public int add(int a, int b) { return a + b; }\n"
+              + "}";
+          break;
+        default:
+          body = "public class " + name + " {\n"
+              + "  static final String[] NAMES = { \"a\", \"b\", \"c\" };\n"
+              + "  static { System.getProperty(\"user.dir\"); }\n"
+              + "  private " + name + "() {}\n"
+              + "  public static " + name + " create() { return new " + name + "(); }\n"
+              + "}";
+      }
+
+      final Path file = packageDir.resolve(name + ".java");
+      Files.write(file, ("package " + packageName + ";\n" + body + "\n")
+          .getBytes(StandardCharsets.UTF_8));
+      files.add(file.toString());
+    }
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final List<String> args = new ArrayList<>(List.of("-d", classes.toString(), "-nowarn"));
+    args.addAll(files);
+    if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+      throw new IOException("Unable to compile fixture package " + packageName);
+    }
+
+    return classes;
+  }
+
+  /**
+   * Writes a test source tree of {@code fileCount} files spread over packages {@code depth}
+   * levels deep, 50 files per package. A quarter of them are Randoop regression tests, a
+   * quarter Randoop error tests, a quarter hand-written tests, and a quarter surefire text
+   * reports.
+   *
+   * @return the root of the tree
+   */
+  static Path testTree(Path root, int fileCount, int depth) throws IOException {
+    final Path tree = root.resolve("tree");
+    final byte[] content = "class Fixture {}\n".getBytes(StandardCharsets.UTF_8);
+
+    Path dir = null;
+    for (int i = 0; i < fileCount; i++) {
+      if (i % 50 == 0) {
+        dir = tree;
+        final int leaf = i / 50;
+        for (int level = 0; level < depth; level++) {
+          // Four-way fan-out from the bottom up; upper levels are shared, as in a real project
+          final int shift = Math.min(30, 2 * (depth - level - 1));
+          dir = dir.resolve("l" + level + "_" + ((leaf >> shift) & 3));
+        }
+        dir = dir.resolve("leaf" + leaf);
+        Files.createDirectories(dir);
+      }
+
+      final String name;
+      switch (i % 4) {
+        case 0:
+          name = "RegressionTest" + i + ".java";
+          break;
+        case 1:
+          name = "ErrorTest" + i + ".java";
+          break;
+        case 2:
+          name = "Handwritten" + i + "Test.java";
+          break;
+        default:
+          name = "bench.Report" + i + ".txt";
+      }
+      Files.write(dir.resolve(name), content);
+    }
+
+    return tree;
+  }
+
+  /**
+   * Writes {@code count} jars, each with {@code entries} class entries in packages other than
+   * the ones being looked up. They mimic a project's dependency closure.
+   */
+  static List<Path> fillerJars(Path root, int count, int entries, byte[] classBytes)
+      throws IOException {
+    final Path jarsDir = root.resolve("jars");
+    Files.createDirectories(jarsDir);
+
+    final List<Path> jars = new ArrayList<>();
+    for (int j = 0; j < count; j++) {
+      final Path jar = jarsDir.resolve("dependency-" + j + ".jar");
+      try (OutputStream out = Files.newOutputStream(jar);
+          JarOutputStream jarOut = new JarOutputStream(out)) {
+        for (int e = 0; e < entries; e++) {
+          jarOut.putNextEntry(new ZipEntry("filler/j" + j + "/p" + (e % 16) + "/F" + e + ".class"));
+          jarOut.write(classBytes);
+          jarOut.closeEntry();
+        }
+      }
+      jars.add(jar);
+    }
+
+    return jars;
+  }
+}
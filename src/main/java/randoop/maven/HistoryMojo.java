@@ -0,0 +1,73 @@
+package randoop.maven;
+
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import randoop.maven.history.TestHistory;
+import randoop.maven.history.TestStats;
+
+/**
+ * Queries the test history 'gentests' keeps in ${project.basedir}/.randoop.d/history;
+ * e.g., {@code mvn randoop:history -Drandoop.history.query=flaky}.
+ * <p>
+ * Queries: 'flaky' (tests that went from passing to failing and back), 'slowest'
+ * (highest mean duration; only tests in packageName, if set), and 'failing' (tests
+ * failing in the latest run that started failing in run sinceRun or later).
+ */
+@SuppressWarnings("unused")
+@Mojo(name = "history", requiresProject = true)
+public class HistoryMojo extends AbstractMojo {
+
+  @Parameter(property = "randoop.history.query", defaultValue = "flaky") private String query;
+  @Parameter(property = "randoop.history.limit", defaultValue = "20") private int limit;
+  @Parameter(property = "randoop.history.sinceRun", defaultValue = "0") private int sinceRun;
+  @Parameter private String packageName;
+
+  @Parameter( defaultValue = "${project}", readonly = true)
+  private MavenProject project;
+
+  @Override public void execute() throws MojoExecutionException, MojoFailureException {
+    final Path historyDir = project.getBasedir().toPath().resolve(".randoop.d").resolve("history");
+    if (!Files.isDirectory(historyDir)){
+      getLog().info("No test history in " + historyDir);
+      return;
+    }
+
+    final TestHistory history;
+    try {
+      history = TestHistory.open(historyDir);
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to read test history in " + historyDir, e);
+    }
+
+    final List<TestStats> results;
+    switch (query){
+      case "flaky":
+        results = history.flaky(2, limit);
+        break;
+      case "slowest":
+        final String prefix = Strings.isNullOrEmpty(packageName) ? "" : packageName + ".";
+        results = history.slowest(t -> t.startsWith(prefix), limit);
+        break;
+      case "failing":
+        results = history.failingSince(sinceRun);
+        break;
+      default:
+        throw new MojoFailureException("Unknown query '" + query
+            + "'; expected one of: flaky, slowest, failing");
+    }
+
+    getLog().info(String.format("%s: %d results over %d runs of %d tests",
+        query, results.size(), history.getLastRun(), history.getTestCount()));
+    results.forEach(r -> getLog().info("  " + r
+        + (r.getFailingSinceRun() < 0 ? "" : ", failing since run " + r.getFailingSinceRun())));
+  }
+}
@@ -0,0 +1,451 @@
+package randoop.maven;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import randoop.maven.bytecode.ClassDiscovery;
+import randoop.maven.bytecode.ClassFile;
+import randoop.maven.bytecode.LiteralHarvester;
+import randoop.maven.bytecode.Testability;
+import randoop.maven.exec.LaunchFiles;
+import randoop.maven.exec.MemoryGovernor;
+import randoop.maven.exec.RandoopLauncher;
+import randoop.maven.exec.RandoopProgress;
+import randoop.maven.exec.Shard;
+import randoop.maven.exec.Shards;
+import randoop.maven.junit.TestDeduplicator;
+import randoop.maven.schedule.BudgetScheduler;
+import randoop.maven.schedule.YieldHistory;
+import randoop.maven.utils.TreeCleaner;
+import randoop.maven.utils.Utils;
+
+/**
+ * Generates tests for every module of the reactor at once; e.g.,
+ * {@code mvn -Drun.randoop=true randoop:gentests-aggregate} from the root project.
+ * <p>
+ * The packageName, sourceDirectory and targetDirectory of each module come from the
+ * module's own configuration of this plugin; modules without a packageName are skipped.
+ * Each module is split into shards, in proportion to the public API of its classes, and
+ * all shards share one pool of forked Randoop JVMs and one wall-clock budget
+ * (globalTimeoutInSeconds), scheduled as in 'gentests' with adaptiveBudget: a first round
+ * in proportion to weight, then follow-ups for the most productive shards. Each module's
+ * tests land in its own targetDirectory.
+ */
+@SuppressWarnings("unused")
+@Mojo(name = "gentests-aggregate", aggregator = true,
+    requiresDependencyResolution = ResolutionScope.TEST)
+public class RandoopAggregateMojo extends AbstractMojo {
+
+  /** Wall-clock time the whole reactor's generation must finish in */
+  @Parameter(property = "randoop.globalTimeout", defaultValue = "600")
+  private int globalTimeoutInSeconds;
+  /** Number of forked Randoop JVMs that may run at once; 0 means one per available core. */
+  @Parameter(property = "randoop.parallelism", defaultValue = "0") private int parallelism;
+  @Parameter(property = "randoop.seed", defaultValue = "0") private int randomSeed;
+  @Parameter(property = "randoop.graceTime", defaultValue = "60")
+  private int processGraceInSeconds;
+  @Parameter(defaultValue = "50") private int maxLogLinesPerSecond;
+  @Parameter(defaultValue = "false") private boolean permitNonZeroExitStatus;
+  @Parameter(property = "randoop.deduplicate", defaultValue = "false")
+  private boolean deduplicateTests;
+  /** JVM options of forked Randoop runs; see gentests */
+  @Parameter(property = "randoop.jvmProfile", defaultValue = "default")
+  private String jvmProfile;
+  @Parameter(property = "randoop.maxHeap") private String maxHeap;
+  @Parameter private List<String> jvmArgs;
+  @Parameter(property = "randoop.argFiles", defaultValue = "false") private boolean useArgFiles;
+  @Parameter(property = "randoop.pathingJar", defaultValue = "false") private boolean usePathingJar;
+  @Parameter(defaultValue = "${project.build.directory}/randoop-launch")
+  private String launchFilesDirectory;
+  @Parameter(property = "randoop.cds", defaultValue = "false") private boolean useCds;
+  @Parameter(property = "randoop.cdsDirectory", defaultValue = "${user.home}/.m2/randoop-cds")
+  private String cdsDirectory;
+  /** Memory each forked Randoop run may use; see gentests */
+  @Parameter(property = "randoop.memoryLimit") private String memoryLimit;
+  /** Run Randoop unit test generator */
+  @Parameter(property = "run.randoop", defaultValue = "false")
+  private boolean runRandoop;
+
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+  private List<MavenProject> reactorProjects;
+  @Parameter(defaultValue = "${plugin}", readonly = true)
+  private PluginDescriptor plugin;
+  @Parameter( defaultValue = "${project}", readonly = true)
+  private MavenProject project;
+
+  private LaunchFiles launchFiles;
+  private RandoopLauncher launcher;
+
+  @Override public void execute() throws MojoExecutionException, MojoFailureException {
+    if (!runRandoop){
+      getLog().info("skipping Randoop execution");
+      return;
+    }
+
+    final List<URL> randoopUrls = new ArrayList<>(
+        RandoopMojo.resolvePluginJarWithRandoop(project, getLog()));
+    launchFiles = new LaunchFiles(Paths.get(launchFilesDirectory));
+    try {
+      launcher = new RandoopLauncher(getLog(), launchFiles, jvmProfile, maxHeap, jvmArgs,
+          processGraceInSeconds, maxLogLinesPerSecond, permitNonZeroExitStatus);
+    } catch (IllegalArgumentException e){
+      throw new MojoExecutionException("Unknown JVM profile: " + jvmProfile);
+    }
+    if (useArgFiles){
+      launcher.useArgFiles(usePathingJar);
+    }
+    if (!Strings.isNullOrEmpty(memoryLimit)){
+      try {
+        launcher.useMemoryGovernor(
+            new MemoryGovernor(Utils.parseBytes(memoryLimit) >> 10));
+      } catch (IllegalArgumentException e){
+        throw new MojoExecutionException("Invalid memoryLimit: " + memoryLimit, e);
+      }
+    }
+    if (useCds && !randoopUrls.isEmpty()){
+      launcher.useCds(Paths.get(cdsDirectory), LaunchFiles.toPaths(randoopUrls));
+    }
+
+    final List<Module> modules = new ArrayList<>();
+    for (MavenProject each : reactorProjects){
+      final Module module = moduleOf(each, randoopUrls);
+      if (module != null && !module.classes.isEmpty()){
+        modules.add(module);
+      }
+    }
+    if (modules.isEmpty()){
+      getLog().info("No reactor module configures a packageName with classes to test");
+      return;
+    }
+
+    final int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    final long totalWeight = modules.stream().mapToLong(Module::weight).sum();
+
+    // Heavier modules get more shards, so no single module holds up the pool
+    final Map<Module, List<List<String>>> groups = new LinkedHashMap<>();
+    for (Module each : modules){
+      final int count = (int) Math.max(1, Math.min(each.classes.size(),
+          Math.round((double) workers * each.weight() / totalWeight)));
+      groups.put(each, Shards.partition(each.classNames(), count, each.weights));
+    }
+
+    final int shardCount = groups.values().stream().mapToInt(List::size).sum();
+    final BudgetScheduler scheduler = new BudgetScheduler(globalTimeoutInSeconds,
+        Math.min(workers, shardCount));
+    final List<Long> shardWeights = new ArrayList<>();
+    groups.forEach((module, moduleGroups) -> moduleGroups.forEach(g ->
+        shardWeights.add(g.stream().mapToLong(module.weights).sum())));
+    final List<Integer> timeLimits = scheduler.initialTimeLimits(shardWeights);
+
+    final List<Shard> firstRound = new ArrayList<>();
+    final Map<String, Module> owners = new HashMap<>();
+    for (int i = 0; i < modules.size(); i++){
+      final Module module = modules.get(i);
+      final List<List<String>> moduleGroups = groups.get(module);
+      for (int j = 0; j < moduleGroups.size(); j++){
+        final String id = "M" + i + "S" + j;
+        firstRound.add(new Shard(id, moduleGroups.get(j), randomSeed + firstRound.size(),
+            timeLimits.get(firstRound.size()), module.shardsRoot.resolve(id), id));
+        owners.put(id, module);
+      }
+      Utils.deleteDirQuietly(module.shardsRoot);
+    }
+
+    getLog().info(String.format(
+        "Running %d Randoop shards of %d modules on %d parallel JVMs within %d seconds",
+        firstRound.size(), modules.size(), Math.min(workers, firstRound.size()),
+        globalTimeoutInSeconds));
+
+    final List<String> failed = new ArrayList<>();
+    try {
+      failed.addAll(runRound(firstRound, owners, scheduler, workers));
+      final List<Shard> followUps = scheduler.followUps(firstRound);
+      if (!followUps.isEmpty()){
+        getLog().info(String.format("Giving unused time to %d productive shards: %s",
+            followUps.size(), followUps.stream()
+                .map(f -> f.getId() + "=" + f.getTimeLimitInSeconds() + "s")
+                .collect(Collectors.joining(", "))));
+        followUps.forEach(f -> owners.put(f.getId(), owners.get(scheduler.parentOf(f.getId()))));
+        failed.addAll(runRound(followUps, owners, scheduler, workers));
+      }
+
+      final Map<Module, List<Shard>> ran = new LinkedHashMap<>();
+      modules.forEach(m -> ran.put(m, new ArrayList<>()));
+      firstRound.forEach(s -> ran.get(owners.get(s.getId())).add(s));
+      followUps.forEach(s -> ran.get(owners.get(s.getId())).add(s));
+      for (Map.Entry<Module, List<Shard>> each : ran.entrySet()){
+        land(each.getKey(), each.getValue(), scheduler);
+      }
+    } finally {
+      modules.forEach(m -> Utils.deleteDirQuietly(m.shardsRoot));
+    }
+
+    if (!failed.isEmpty()){
+      throw new MojoFailureException(
+          this,
+          "Randoop encountered an error!",
+          "Test generation failure in shards " + failed);
+    }
+    getLog().info("Randoop finished.");
+  }
+
+  /** @return the shards that failed */
+  private List<String> runRound(List<Shard> round, Map<String, Module> owners,
+      BudgetScheduler scheduler, int workers) throws MojoFailureException {
+    // Longest shards first, so the short ones fill the gaps at the end
+    final List<Shard> ordered = round.stream()
+        .sorted(Comparator.comparingInt(Shard::getTimeLimitInSeconds).reversed())
+        .collect(Collectors.toList());
+
+    final ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, ordered.size()));
+    final List<Future<Integer>> exitCodes = new ArrayList<>();
+    try {
+      for (Shard each : ordered){
+        final Module module = owners.get(each.getId());
+        final List<String> args;
+        try {
+          args = module.buildArgs(each);
+        } catch (IOException e){
+          throw new MojoFailureException("Unable to write Randoop launch files!", e);
+        }
+        getLog().debug("Call outside Maven (" + each.getId() + "): " + String.join(" ", args));
+        exitCodes.add(pool.submit(() -> {
+          final RandoopProgress progress = new RandoopProgress();
+          try {
+            return launcher.runWithinMemory(
+                module.project.getArtifactId() + "/" + each.getId(), each, args, progress,
+                module.weights, module::buildArgs,
+                (label, shard, shardArgs, shardProgress) ->
+                    launcher.execute(label, shardArgs, shardProgress));
+          } finally {
+            scheduler.record(each, progress.getElapsedSeconds(), progress.getRegressionTests());
+          }
+        }));
+      }
+
+      final List<String> failed = new ArrayList<>();
+      for (int i = 0; i < exitCodes.size(); i++){
+        try {
+          exitCodes.get(i).get();
+        } catch (ExecutionException e){
+          getLog().warn(ordered.get(i).getId() + ": " + e.getCause().getMessage());
+          failed.add(ordered.get(i).getId());
+        }
+      }
+      return failed;
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Interrupted while waiting for Randoop shards", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /** Moves a module's tests into its targetDirectory, and records its yield. */
+  private void land(Module module, List<Shard> ran, BudgetScheduler scheduler)
+      throws MojoFailureException {
+    final YieldHistory history = YieldHistory.load(module.yieldHistoryFile());
+    scheduler.updateHistory(history, ran);
+    try {
+      history.save(module.yieldHistoryFile());
+    } catch (IOException e){
+      getLog().warn("Unable to save Randoop yield history: " + e.getMessage());
+    }
+
+    // Tests of earlier runs (e.g., of shards this run does not have) would otherwise stay
+    final Path packageDir = module.targetDir.resolve(module.packageName.replace('.', '/'));
+    final TreeCleaner.Result cleaned = new TreeCleaner()
+        .clean(packageDir, TreeCleaner.RANDOOP_TEST_FILE);
+    getLog().debug(module.project.getArtifactId() + ": cleaned " + packageDir + ": " + cleaned);
+
+    final ListMultimap<String, Path> merged;
+    try {
+      merged = Shards.merge(ran, module.targetDir);
+    } catch (IOException e){
+      throw new MojoFailureException("Unable to merge Randoop shards of "
+          + module.project.getArtifactId(), e);
+    }
+    getLog().info(String.format("%s: merged %d generated files into %s",
+        module.project.getArtifactId(), merged.size(), module.targetDir));
+
+    if (!deduplicateTests) return;
+
+    final List<Path> regressionTests = merged.values().stream()
+        .filter(f -> f.getFileName().toString().startsWith("RegressionTest"))
+        .collect(Collectors.toList());
+    if (regressionTests.isEmpty()) return;
+    try {
+      final TestDeduplicator.Result result = TestDeduplicator.deduplicate(
+          regressionTests, t -> Double.NaN);
+      getLog().info(module.project.getArtifactId() + ": " + result);
+    } catch (IOException | RuntimeException e){
+      getLog().warn("Unable to deduplicate generated tests; keeping them all: "
+          + e.getMessage());
+    }
+  }
+
+  /** @return what to generate for {@code module}; null if it does not configure this plugin */
+  private Module moduleOf(MavenProject module, List<URL> randoopUrls)
+      throws MojoExecutionException {
+    final Plugin configured = module.getPlugin(plugin.getPluginLookupKey());
+    if (configured == null) return null;
+
+    final Map<String, String> config = new HashMap<>();
+    readConfiguration(configured.getConfiguration(), config);
+    for (PluginExecution each : configured.getExecutions()){
+      readConfiguration(each.getConfiguration(), config);
+    }
+
+    final String packageName = config.get("packageName");
+    if (Strings.isNullOrEmpty(packageName)){
+      getLog().debug(module.getArtifactId() + ": no packageName; skipped");
+      return null;
+    }
+
+    final Path sourceDir = Paths.get(config.getOrDefault("sourceDirectory",
+        module.getBuild().getOutputDirectory()));
+    final Path targetDir = Paths.get(config.getOrDefault("targetDirectory",
+        module.getBuild().getDirectory() + "/generated-test-sources/java"));
+    if (!Files.isDirectory(sourceDir)){
+      getLog().warn(module.getArtifactId() + ": " + sourceDir + " not found; compile first");
+      return null;
+    }
+
+    final List<ClassFile> classes;
+    try {
+      final List<ClassFile> candidates = ClassDiscovery.discover(
+              sourceDir, packageName, ImmutableList.of()).stream()
+          .filter(ClassDiscovery.RANDOOP_CANDIDATE)
+          .collect(ImmutableList.toImmutableList());
+      final Set<String> kept = Testability.assess(
+              candidates, ImmutableList.of(), ImmutableList.of(),
+              "true".equals(config.get("pruneUntestable"))).stream()
+          .filter(Testability.Verdict::isKept)
+          .map(Testability.Verdict::getClassName)
+          .collect(Collectors.toSet());
+      classes = candidates.stream()
+          .filter(c -> kept.contains(c.getName()))
+          .collect(ImmutableList.toImmutableList());
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to look up classes of "
+          + module.getArtifactId(), e);
+    }
+
+    final List<Path> classpath = new ArrayList<>();
+    classpath.add(sourceDir);
+    for (Artifact each : module.getArtifacts()){
+      if (each.getFile() != null) classpath.add(each.getFile().toPath());
+    }
+    classpath.addAll(LaunchFiles.toPaths(randoopUrls));
+
+    final Path stateDir = module.getBasedir().toPath().resolve(".randoop.d");
+    final Path literalsFile = "true".equals(config.get("harvestLiterals"))
+        ? harvestLiterals(module, classes, stateDir,
+            Integer.parseInt(config.getOrDefault("maxLiteralsPerClass", "100")))
+        : null;
+    final ToLongFunction<String> weights = BudgetScheduler.weights(
+        classes.stream().collect(Collectors.toMap(
+            ClassFile::getName, BudgetScheduler::staticWeight, (a, b) -> a)),
+        YieldHistory.load(stateDir.resolve("yield.tsv")));
+    return new Module(module, packageName, targetDir, classes, weights, classpath,
+        literalsFile, Paths.get(module.getBuild().getDirectory()).resolve("randoop-shards"),
+        stateDir);
+  }
+
+  private Path harvestLiterals(MavenProject module, List<ClassFile> classes, Path stateDir,
+      int maxPerClass) throws MojoExecutionException {
+    try {
+      final Map<String, List<String>> literals = new LiteralHarvester(stateDir.resolve("literals"))
+          .harvest(classes, maxPerClass);
+      return literals.isEmpty()
+          ? null
+          : launchFiles.literalsFile(LiteralHarvester.toLiteralsFile(literals));
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to harvest literals of "
+          + module.getArtifactId(), e);
+    }
+  }
+
+  private static void readConfiguration(Object configuration, Map<String, String> config){
+    if (!(configuration instanceof Xpp3Dom)) return;
+
+    for (Xpp3Dom child : ((Xpp3Dom) configuration).getChildren()){
+      if (!Strings.isNullOrEmpty(child.getValue())){
+        config.put(child.getName(), child.getValue().trim());
+      }
+    }
+  }
+
+  /** A reactor module taking part in generation, and the shards planned for it. */
+  private class Module {
+    final MavenProject project;
+    final String packageName;
+    final Path targetDir;
+    final List<ClassFile> classes;
+    final ToLongFunction<String> weights;
+    final List<Path> classpath;
+    final Path literalsFile;
+    final Path shardsRoot;
+    final Path stateDir;
+
+    Module(MavenProject project, String packageName, Path targetDir, List<ClassFile> classes,
+        ToLongFunction<String> weights, List<Path> classpath, Path literalsFile, Path shardsRoot,
+        Path stateDir){
+      this.project = project;
+      this.packageName = packageName;
+      this.targetDir = targetDir;
+      this.classes = classes;
+      this.weights = weights;
+      this.classpath = classpath;
+      this.literalsFile = literalsFile;
+      this.shardsRoot = shardsRoot;
+      this.stateDir = stateDir;
+    }
+
+    List<String> classNames(){
+      return classes.stream().map(ClassFile::getName).collect(Collectors.toList());
+    }
+
+    long weight(){
+      return classes.stream().map(ClassFile::getName).mapToLong(weights).sum();
+    }
+
+    Path yieldHistoryFile(){
+      return stateDir.resolve("yield.tsv");
+    }
+
+    List<String> buildArgs(Shard shard) throws IOException {
+      return launcher.buildArgs(classpath, shard, packageName, literalsFile);
+    }
+  }
+}
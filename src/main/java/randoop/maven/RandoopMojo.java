@@ -2,38 +2,84 @@ package randoop.maven;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
-import java.io.BufferedReader;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.hash.Hashing;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import randoop.maven.bytecode.ClassDiscovery;
+import randoop.maven.bytecode.ClassFile;
+import randoop.maven.bytecode.LiteralHarvester;
+import randoop.maven.bytecode.Testability;
+import randoop.maven.coverage.CoverageRunner;
+import randoop.maven.daemon.DaemonClient;
+import randoop.maven.exec.LaunchFiles;
+import randoop.maven.exec.MemoryGovernor;
+import randoop.maven.exec.RandoopLauncher;
+import randoop.maven.exec.RandoopProgress;
+import randoop.maven.exec.Shard;
+import randoop.maven.exec.Shards;
+import randoop.maven.exec.ThrottledLog;
+import randoop.maven.history.SurefireReports;
+import randoop.maven.history.TestHistory;
+import randoop.maven.history.TestOutcome;
+import randoop.maven.history.TestStats;
+import randoop.maven.incremental.FingerprintIndex;
+import randoop.maven.incremental.ImpactIndex;
+import randoop.maven.incremental.OutputCache;
+import randoop.maven.junit.FlakinessScreening;
+import randoop.maven.junit.TestCompiler;
+import randoop.maven.junit.TestDeduplicator;
+import randoop.maven.junit.TestRebalancer;
+import randoop.maven.junit.TestSource;
+import randoop.maven.metrics.PerformanceReport;
+import randoop.maven.schedule.BudgetScheduler;
+import randoop.maven.schedule.YieldHistory;
+import randoop.maven.utils.TreeCleaner;
 import randoop.maven.utils.Utils;
 
 /**
@@ -52,9 +98,16 @@ import randoop.maven.utils.Utils;
  * of failures, errors,) explaining their prior execution.
  */
 @SuppressWarnings("unused")
-@Mojo(name = "gentests", defaultPhase = LifecyclePhase.PROCESS_SOURCES)
+@Mojo(name = "gentests", defaultPhase = LifecyclePhase.PROCESS_SOURCES,
+    requiresDependencyResolution = ResolutionScope.TEST)
 public class RandoopMojo extends AbstractMojo {
 
+  // Coverage measurement of a round may take up to 1/MEASUREMENT_SHARE of its seconds
+  private static final int MEASUREMENT_SHARE = 4;
+  // Classes written by rebalanceTests; e.g., RegressionTest_B0Test or RegressionTest_<id>_B0Test
+  private static final Pattern BALANCED_TEST_CLASS = Pattern.compile(
+      "RegressionTest(_\\w+)?_B\\d+Test\\.java");
+
   @Parameter(defaultValue = "true")
   private boolean cleanBefore;
   @Parameter(defaultValue = "false") private boolean forgetPriorExecutions;
@@ -68,6 +121,170 @@ public class RandoopMojo extends AbstractMojo {
   @Parameter(required = true, defaultValue = "${project.build.directory}/generated-test-sources/java")
   private String targetDirectory;
   @Parameter(required = true, defaultValue = "60") private int timeoutInSeconds;
+  /** Number of forked Randoop JVMs that may run at once; 0 means one per available core. */
+  @Parameter(property = "randoop.parallelism", defaultValue = "0") private int parallelism;
+  /** Number of shards the classes under test are split into; 0 means one per parallel JVM. */
+  @Parameter(property = "randoop.shards", defaultValue = "1") private int shards;
+  @Parameter(property = "randoop.seed", defaultValue = "0") private int randomSeed;
+  @Parameter(defaultValue = "${project.build.directory}/randoop-shards")
+  private String shardsDirectory;
+  /**
+   * Only generate tests for classes whose class files changed since the last run, and keep
+   * the tests of everything else. The fingerprint index lives in ${project.basedir}/.randoop.d
+   */
+  @Parameter(property = "randoop.incremental", defaultValue = "false") private boolean incremental;
+  /**
+   * With incremental generation, the number of classes each Randoop run gets. A changed
+   * class also has the tests of the other classes in its group generated again.
+   */
+  @Parameter(property = "randoop.incrementalGroupSize", defaultValue = "4")
+  private int incrementalGroupSize;
+  /**
+   * Pass JVM options to the forked process through an @argfile, and the classes under test
+   * through a Randoop --classlist file, rather than on the command line.
+   */
+  @Parameter(property = "randoop.argFiles", defaultValue = "false") private boolean useArgFiles;
+  /** With useArgFiles, put the classpath in the manifest of a pathing jar. */
+  @Parameter(property = "randoop.pathingJar", defaultValue = "false") private boolean usePathingJar;
+  @Parameter(defaultValue = "${project.build.directory}/randoop-launch")
+  private String launchFilesDirectory;
+  /** Time Randoop may take beyond its time limit (e.g., to write its tests) before it is killed */
+  @Parameter(property = "randoop.graceTime", defaultValue = "60")
+  private int processGraceInSeconds;
+  /** Max number of Randoop output lines logged per second; progress updates are not logged */
+  @Parameter(defaultValue = "50") private int maxLogLinesPerSecond;
+  /** Run Randoop in a long-lived local daemon JVM, rather than forking a JVM per run */
+  @Parameter(property = "randoop.daemon", defaultValue = "false") private boolean useDaemon;
+  @Parameter(property = "randoop.daemonDirectory",
+      defaultValue = "${user.home}/.m2/randoop-daemon")
+  private String daemonDirectory;
+  @Parameter(property = "randoop.daemonIdleTimeout", defaultValue = "1800")
+  private int daemonIdleTimeoutInSeconds;
+  /**
+   * With more than one shard, split timeoutInSeconds across shards by the size of their
+   * classes' public API and their yield in earlier builds, and give the time left over
+   * to the shards that produce the most tests. Yields are kept in ${project.basedir}/.randoop.d
+   */
+  @Parameter(property = "randoop.adaptiveBudget", defaultValue = "false")
+  private boolean adaptiveBudget;
+  /**
+   * Where gentests-performance.json is written: wall time, CPU time and allocations of each
+   * phase, plus exit status, CPU time and peak RSS of each Randoop run
+   */
+  @Parameter(defaultValue = "${project.build.directory}/randoop-reports")
+  private String performanceReportDirectory;
+  /** Also write the performance report in Prometheus text format */
+  @Parameter(property = "randoop.prometheus", defaultValue = "false")
+  private boolean writePrometheusMetrics;
+  /**
+   * Rewrite Randoop's regression tests into this many classes of balanced cost (by recorded
+   * test durations, or else by test count), so that surefire forks can split them evenly;
+   * 0 keeps Randoop's classes. The new classes replace the RegressionTest suite.
+   */
+  @Parameter(property = "randoop.balancedClasses", defaultValue = "0")
+  private int balancedTestClasses;
+  /**
+   * Drop generated regression tests that make the same calls as another one and no
+   * assertion it does not make.
+   */
+  @Parameter(property = "randoop.deduplicate", defaultValue = "false")
+  private boolean deduplicateTests;
+  /**
+   * JVM options of forked Randoop runs: 'default' (none), 'startup' (C1 only, serial GC),
+   * 'throughput' (parallel GC, fixed heap), or 'auto' (startup for runs of up to 30s)
+   */
+  @Parameter(property = "randoop.jvmProfile", defaultValue = "default")
+  private String jvmProfile;
+  /** Max heap of forked Randoop runs; e.g., 2g */
+  @Parameter(property = "randoop.maxHeap") private String maxHeap;
+  /** More JVM options for forked Randoop runs */
+  @Parameter private List<String> jvmArgs;
+  /**
+   * Start forked Randoop runs from a class data sharing archive of the Randoop classpath,
+   * built by the first run and cached in cdsDirectory
+   */
+  @Parameter(property = "randoop.cds", defaultValue = "false") private boolean useCds;
+  @Parameter(property = "randoop.cdsDirectory", defaultValue = "${user.home}/.m2/randoop-cds")
+  private String cdsDirectory;
+  /**
+   * Memory forked Randoop runs may use, e.g. 4g. A run about to use more is stopped, and
+   * its classes are split in halves that run, one after the other, in the time left.
+   * Without a maxHeap, runs get 70% of it as heap.
+   */
+  @Parameter(property = "randoop.memoryLimit") private String memoryLimit;
+  /**
+   * Compile generated tests into testOutputDirectory while Randoop is still running, and
+   * delete those that do not compile. Files already compiled are skipped by testCompile
+   * only with the compiler plugin's useIncrementalCompilation set to false.
+   */
+  @Parameter(property = "randoop.compileTests", defaultValue = "false")
+  private boolean compileTests;
+  @Parameter(defaultValue = "${project.build.testOutputDirectory}")
+  private String testOutputDirectory;
+  /**
+   * Run each generated regression test this many times, in parallel, in class loaders of
+   * their own and in shuffled orders; tests that do not pass every time are moved to
+   * quarantineDirectory. 0 skips screening.
+   */
+  @Parameter(property = "randoop.screeningRuns", defaultValue = "0") private int screeningRuns;
+  @Parameter(defaultValue = "${project.build.directory}/randoop-quarantine")
+  private String quarantineDirectory;
+  /**
+   * Generate in up to this many rounds within timeoutInSeconds. After each round, the new
+   * tests run against instrumented classes of packageName, and the next round is given the
+   * methods no test reached so far. 0 or 1 generates in one go.
+   */
+  @Parameter(property = "randoop.coverageRounds", defaultValue = "0") private int coverageRounds;
+  /**
+   * Stop coverage rounds once a round adds fewer percentage points of method coverage per
+   * second than this
+   */
+  @Parameter(property = "randoop.minCoverageGain", defaultValue = "0.05")
+  private double minCoverageGain;
+  /** Dependencies, as groupId:artifactId, also searched for classes in packageName */
+  @Parameter private List<String> discoveryJars;
+  /**
+   * Leave out classes Randoop can do nothing with: interfaces, abstract classes and classes
+   * without usable constructors that no method of the package returns, classes without
+   * methods to call, and classes whose static initializer does I/O or starts processes.
+   * Why each class was left out goes to gentests-testability.json.
+   */
+  @Parameter(property = "randoop.prune", defaultValue = "false") private boolean pruneUntestable;
+  /**
+   * Give Randoop the string and number literals found in the constant pool of each class
+   * under test, most frequent in the package first, as literals of that class. Literals
+   * are cached by class file hash in ${project.basedir}/.randoop.d/literals
+   */
+  @Parameter(property = "randoop.literals", defaultValue = "false")
+  private boolean harvestLiterals;
+  /** Literals given to Randoop for each class */
+  @Parameter(property = "randoop.maxLiterals", defaultValue = "100")
+  private int maxLiteralsPerClass;
+  /**
+   * Keep the generated tests of an earlier build as long as no class of packageName changed
+   * since they were generated, and list those referring (in their sources) to a project
+   * class that did change in impactDirectory; surefire's excludesFile can point at the
+   * others. The checkpoint lives in ${project.basedir}/.randoop.d/impact.tsv
+   */
+  @Parameter(property = "randoop.warmStart", defaultValue = "false") private boolean warmStart;
+  @Parameter(defaultValue = "${project.build.directory}/randoop-impact")
+  private String impactDirectory;
+  /**
+   * Keep the tests each execution generates in a local cache, keyed by the hashes of the
+   * project's class files, of its dependencies and of Randoop, and by the parameters below;
+   * an execution with a known key restores its tests instead of running Randoop. Not used
+   * with incremental generation.
+   */
+  @Parameter(property = "randoop.cache", defaultValue = "false") private boolean useOutputCache;
+  @Parameter(property = "randoop.cacheDirectory",
+      defaultValue = "${user.home}/.m2/randoop-outputs")
+  private String outputCacheDirectory;
+  /** Size the cache may take, e.g. 2g; least recently used tests are evicted beyond it */
+  @Parameter(property = "randoop.cacheSize", defaultValue = "1g") private String outputCacheSize;
+  /** If set, only classes matching one of these patterns (e.g. *Service) are tested */
+  @Parameter private List<String> testClassIncludes;
+  /** Classes matching one of these patterns (e.g. *Impl, Foo$Bar) are not tested */
+  @Parameter private List<String> testClassExcludes;
 
 
   /** Run Randoop unit test generator */
@@ -77,9 +294,32 @@ public class RandoopMojo extends AbstractMojo {
   @Parameter( defaultValue = "${project}", readonly = true)
   private MavenProject project;
 
+  private LaunchFiles launchFiles;
+  private DaemonClient daemonClient;
+  private ToLongFunction<String> classWeights = c -> 1L;
+  private BudgetScheduler budgetScheduler;
+  private PerformanceReport report;
+  private RandoopLauncher launcher;
+  private TestCompiler testCompiler;
+  private List<URL> testClasspath;
+  private Path literalsFile;
+
   @Override public void execute() throws MojoExecutionException, MojoFailureException {
+    report = new PerformanceReport(project.getGroupId() + ":" + project.getArtifactId());
+
+    // On a warm start, earlier tests are kept if none of the classes they test changed
+    boolean reuseTests = false;
+    if (runRandoop && warmStart && !forgetPriorExecutions){
+      try (PerformanceReport.Phase ignored = report.phase("changeImpact")){
+        reuseTests = selectImpactedTests();
+      }
+    }
     // If requested, cleanup previously generated Randoop tests
-    cleanupStep();
+    if (!reuseTests){
+      try (PerformanceReport.Phase ignored = report.phase("cleanupStep")){
+        cleanupStep();
+      }
+    }
     // Default behavior: Randoop won't be called out of the box.
     // The user would have to provide the property -Drun.randoop=true.
     // Otherwise
@@ -89,33 +329,195 @@ public class RandoopMojo extends AbstractMojo {
     }
     // Check if the test reports of a prior tests execution exist.
     // If they do, persist them on ${project.basedir}/.surefire.d
-    checkpointingStep();
+    try (PerformanceReport.Phase ignored = report.phase("checkpointingStep")){
+      checkpointingStep();
+    }
+    if (reuseTests){
+      writePerformanceReport();
+      return;
+    }
+    String cacheKey = null;
+    if (useOutputCache && !incremental){
+      try (PerformanceReport.Phase ignored = report.phase("cacheLookup")){
+        cacheKey = outputCacheKey();
+        if (restoreFromCache(cacheKey)){
+          if (warmStart){
+            recordImpactCheckpoint();
+          }
+          writePerformanceReport();
+          return;
+        }
+      }
+    }
+
+    try {
+      // Calls Randoop to generate JUnit Tests for the given 'package-name'
+      runRandoopTool();
 
-    // Calls Randoop to generate JUnit Tests for the given 'package-name'
-    runRandoopTool();
+      // With incremental generation, each group of tests is processed on its own
+      if (!incremental){
+        landTests(generatedRegressionTests(), "RegressionTest_");
+      }
+      finishTestCompilation();
 
-    // TODO(has) Prevent Randoop from generating empty directories matching the packageName
-    // Temp. fix: search for those empty directories and delete them if found
-    removesRandoopLeftovers();
+      // TODO(has) Prevent Randoop from generating empty directories matching the packageName
+      // Temp. fix: search for those empty directories and delete them if found
+      try (PerformanceReport.Phase ignored = report.phase("removesRandoopLeftovers")){
+        removesRandoopLeftovers();
+      }
+      if (warmStart){
+        recordImpactCheckpoint();
+      }
+      if (cacheKey != null){
+        try (PerformanceReport.Phase ignored = report.phase("cacheStore")){
+          storeInCache(cacheKey);
+        }
+      }
+    } finally {
+      closeTestCompiler();
+      writePerformanceReport();
+    }
+  }
+
+  private void writePerformanceReport(){
+    report.finish();
+    final Path reportsDir = Paths.get(performanceReportDirectory);
+    try {
+      report.writeJson(reportsDir.resolve("gentests-performance.json"));
+      if (writePrometheusMetrics){
+        report.writePrometheus(reportsDir.resolve("gentests-performance.prom"));
+      }
+
+      final Path history = project.getBasedir().toPath()
+          .resolve(".randoop.d").resolve("performance.tsv");
+      report.appendToHistory(history).forEach(getLog()::warn);
+    } catch (IOException e){
+      getLog().warn("Unable to write performance report: " + e.getMessage());
+    }
+
+    getLog().info(String.format("gentests took %d ms; %d ms outside Randoop",
+        report.getWallMillis(), report.getOverheadMillis()));
+    if (report.getMeanStartupMillis() >= 0){
+      getLog().info(String.format("Forked Randoop JVMs took %d ms on average to start",
+          report.getMeanStartupMillis()));
+    }
   }
 
   private void runRandoopTool() throws MojoExecutionException, MojoFailureException {
     // Resolve any dependencies to the Randoop tool
-    final List<URL> dependencies = new LinkedList<>(resolveCommonPluginDependencies());
-    final List<URL> randoopUrls = resolveRandoopDependencies();
+    final List<URL> dependencies;
+    final List<URL> randoopUrls;
+    try (PerformanceReport.Phase ignored = report.phase("classpathResolution")){
+      dependencies = new LinkedList<>(resolveCommonPluginDependencies());
+      randoopUrls = resolveRandoopDependencies();
+    }
     if (randoopUrls.isEmpty()){
       getLog().warn("Randoop Jar not found!");
     }
     dependencies.addAll(randoopUrls);
-    final List<String> args = buildArgs(dependencies);
+    testClasspath = ImmutableList.copyOf(dependencies);
+    // Created before any pool thread builds a command line with it
+    launchFiles = new LaunchFiles(Paths.get(launchFilesDirectory));
+    try {
+      launcher = new RandoopLauncher(getLog(), launchFiles, jvmProfile, maxHeap, jvmArgs,
+          processGraceInSeconds, maxLogLinesPerSecond, permitNonZeroExitStatus)
+          .reportTo(report);
+    } catch (IllegalArgumentException e){
+      throw new MojoExecutionException("Unknown JVM profile: " + jvmProfile);
+    }
+    if (useArgFiles){
+      launcher.useArgFiles(usePathingJar);
+    }
+    if (!Strings.isNullOrEmpty(memoryLimit)){
+      try {
+        launcher.useMemoryGovernor(
+            new MemoryGovernor(Utils.parseBytes(memoryLimit) >> 10));
+      } catch (IllegalArgumentException e){
+        throw new MojoExecutionException("Invalid memoryLimit: " + memoryLimit, e);
+      }
+    }
+    if (useCds && !randoopUrls.isEmpty()){
+      launcher.useCds(Paths.get(cdsDirectory), LaunchFiles.toPaths(randoopUrls));
+    }
+    if (screeningRuns > 1){
+      try {
+        FlakinessScreening.requireJUnit(testClasspath);
+      } catch (IOException e){
+        throw new MojoExecutionException("Screening generated tests (randoop.screeningRuns)"
+            + " needs JUnit 4 among the project's test dependencies", e);
+      }
+    }
+    if (compileTests){
+      startTestCompilation(dependencies);
+    }
+
+    if (useDaemon && !Strings.isNullOrEmpty(memoryLimit)){
+      // Jobs share the daemon's heap; only forked runs can be sized and queued
+      getLog().warn("Randoop daemon jobs cannot be held to randoop.memoryLimit;"
+          + " forking Randoop instead");
+    } else if (useDaemon && !randoopUrls.isEmpty()){
+      final List<Path> daemonClasspath = LaunchFiles.toPaths(randoopUrls);
+      daemonClient = DaemonClient.connect(
+          Paths.get(daemonDirectory),
+          daemonClasspath,
+          LaunchFiles.fingerprint(daemonClasspath),
+          daemonIdleTimeoutInSeconds,
+          getLog()::info).orElse(null);
+      if (daemonClient == null){
+        getLog().warn("Randoop daemon unavailable; forking Randoop instead");
+      }
+    }
+
+    final List<ClassFile> classes;
+    try (PerformanceReport.Phase ignored = report.phase("classesLookup")){
+      classes = lookupClasses();
+    }
+    if (harvestLiterals){
+      try (PerformanceReport.Phase ignored = report.phase("literalsHarvest")){
+        literalsFile = harvestLiterals(classes);
+      }
+    }
+    final List<String> classNames = classes.stream()
+        .map(ClassFile::getName)
+        .collect(ImmutableList.toImmutableList());
+    final int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    final int shardCount = shards > 0 ? shards : workers;
+    if (adaptiveBudget){
+      classWeights = BudgetScheduler.weights(
+          classes.stream().collect(Collectors.toMap(
+              ClassFile::getName, BudgetScheduler::staticWeight, (a, b) -> a)),
+          YieldHistory.load(yieldHistoryFile()));
+    }
+    if (incremental){
+      runIncrementalRandoopTool(dependencies, classNames, workers);
+      return;
+    }
+    if (coverageRounds > 1){
+      runCoverageGuidedRandoopTool(dependencies, classes, shardCount, workers);
+      return;
+    }
+
+    if (shardCount > 1 && classNames.size() > 1){
+      final List<List<String>> groups = Shards.partition(classNames, shardCount, classWeights);
+      final List<Shard> plannedShards = planShards(groups, workers, i -> "S" + i);
+      try (PerformanceReport.Phase ignored = report.phase(PerformanceReport.GENERATION)){
+        runShards(dependencies, plannedShards, workers, true);
+      }
+      getLog().info("Randoop finished.");
+      return;
+    }
+
+    final Shard single = new Shard("randoop", classNames, randomSeed, timeoutInSeconds,
+        Paths.get(targetDirectory), null);
+    final List<String> args = buildArgs(dependencies, single);
 
     // Build Randoop command line
     final String randoopCmdLine = String.join(" ", args);
     getLog().info("Call outside Maven: " + randoopCmdLine);
 
     int exitCode = 0;
-    try {
-      exitCode = executeRandoop(args);
+    try (PerformanceReport.Phase ignored = report.phase(PerformanceReport.GENERATION)){
+      exitCode = runWithinMemory(null, single, dependencies, args, new RandoopProgress());
     } catch (IOException | InterruptedException e){
       throw new MojoFailureException(
           this,
@@ -126,6 +528,642 @@ public class RandoopMojo extends AbstractMojo {
     getLog().info("Randoop " + (exitCode == 0 ? "finished." : "did not finish."));
   }
 
+  private void runIncrementalRandoopTool(List<URL> dependencies, List<String> classNames,
+      int workers) throws MojoExecutionException, MojoFailureException {
+    if (incrementalGroupSize < 1){
+      throw new MojoExecutionException("Invalid incrementalGroupSize: " + incrementalGroupSize);
+    }
+
+    final Path targetDir = Paths.get(targetDirectory);
+    final Path indexFile = project.getBasedir().toPath().resolve(".randoop.d").resolve("index.tsv");
+    final FingerprintIndex index = FingerprintIndex.load(indexFile);
+
+    final Map<String, String> current;
+    try {
+      current = FingerprintIndex.fingerprint(Paths.get(sourceDirectory), classNames);
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to fingerprint classes in " + sourceDirectory, e);
+    }
+
+    // Tests of a group are only valid as long as all classes in that group are unchanged
+    final Set<String> staleGroups = index.staleGroups(current, targetDir);
+    for (String each : staleGroups){
+      index.testFilesOf(each).forEach(f -> Utils.deleteFileQuietly(targetDir.resolve(f)));
+    }
+
+    final Set<String> pending = index.classesToGenerate(current, staleGroups);
+    index.removeGroups(staleGroups);
+    getLog().info(String.format("Incremental generation: %d of %d classes changed",
+        pending.size(), current.size()));
+
+    if (!pending.isEmpty()){
+      // Small groups by name, rather than balanced shards: a change in one class only
+      // invalidates the tests of its group
+      final List<List<String>> groups = Shards.chunks(pending, incrementalGroupSize);
+      final List<Shard> plannedShards = planShards(groups, workers, i -> groupId(groups.get(i)));
+      final ListMultimap<String, Path> produced;
+      try (PerformanceReport.Phase ignored = report.phase(PerformanceReport.GENERATION)){
+        produced = runShards(dependencies, plannedShards, workers, false);
+      }
+
+      for (Shard each : plannedShards){
+        final Map<String, String> classHashes = Maps.filterKeys(
+            current, each.getClassNames()::contains);
+        final List<Path> groupFiles = new ArrayList<>(produced.get(each.getId()));
+        final List<Path> regressionTests = groupFiles.stream()
+            .filter(f -> f.getFileName().toString().startsWith("RegressionTest"))
+            .collect(Collectors.toList());
+        groupFiles.removeAll(regressionTests);
+        groupFiles.addAll(landTests(regressionTests, "RegressionTest_" + each.getId() + "_"));
+
+        final List<String> files = groupFiles.stream()
+            .map(f -> targetDir.relativize(f).toString())
+            .collect(Collectors.toList());
+        index.recordGroup(each.getId(), classHashes, files);
+      }
+    }
+
+    try {
+      index.save(indexFile);
+    } catch (IOException e){
+      throw new MojoFailureException("Unable to save fingerprint index!", e);
+    }
+
+    getLog().info("Randoop finished.");
+  }
+
+  /**
+   * Generates in rounds that share timeoutInSeconds. Round 0 tests every class; each later
+   * round tests the classes with methods no test has reached yet, and those methods, until
+   * the rounds run out, or a round's coverage gain per second drops below minCoverageGain.
+   */
+  private void runCoverageGuidedRandoopTool(List<URL> dependencies, List<ClassFile> classes,
+      int shardCount, int workers) throws MojoExecutionException, MojoFailureException {
+
+    final CoverageRunner coverage;
+    try {
+      coverage = new CoverageRunner(Paths.get(sourceDirectory), packageName);
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to instrument classes in " + sourceDirectory, e);
+    }
+    final List<String> methods = coverage.getMethods();
+    final Map<String, Integer> probes = new HashMap<>();
+    for (int i = 0; i < methods.size(); i++){
+      probes.put(methods.get(i), i);
+    }
+    // Methods Randoop can call directly, by class
+    final ListMultimap<String, String> testable =
+        MultimapBuilder.linkedHashKeys().arrayListValues().build();
+    for (ClassFile each : classes){
+      each.getMethods().stream()
+          .filter(m -> m.isPublic() && !m.isSynthetic() && !m.isAbstract())
+          .map(m -> each.getName() + "#" + m.getName() + m.getDescriptor())
+          .filter(probes::containsKey)
+          .forEach(m -> testable.put(each.getName(), m));
+    }
+
+    final Path coverageDir = Paths.get(project.getBuild().getDirectory())
+        .resolve("randoop-coverage");
+    Utils.deleteDirQuietly(coverageDir);
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutInSeconds);
+    final boolean[] covered = new boolean[methods.size()];
+    final List<Path> generated = new ArrayList<>();
+    List<String> targetClasses = classes.stream()
+        .map(ClassFile::getName)
+        .collect(Collectors.toList());
+    List<String> targetMethods = ImmutableList.of();
+    double coveredPercent = 0;
+
+    try (TestCompiler compiler = new TestCompiler(
+        ImmutableList.of(Paths.get(targetDirectory)),
+        coverageDir,
+        LaunchFiles.toPaths(testClasspath),
+        compilerRelease(),
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 4),
+        getLog()::warn)){
+      for (int round = 0; round < coverageRounds && !targetClasses.isEmpty(); round++){
+        final long started = System.nanoTime();
+        final int secondsLeft = (int) TimeUnit.NANOSECONDS.toSeconds(deadline - started);
+        final int roundSeconds = secondsLeft / (coverageRounds - round);
+        if (roundSeconds < BudgetScheduler.MIN_FOLLOW_UP_SECONDS){
+          break;
+        }
+
+        final List<List<String>> groups = Shards.partition(targetClasses,
+            Math.min(shardCount, targetClasses.size()), classWeights);
+        final int timeLimit = Shards.timeLimitPerShard(roundSeconds, groups.size(), workers);
+        final List<Shard> roundShards = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++){
+          final String id = "C" + round + "S" + i;
+          final List<String> group = groups.get(i);
+          roundShards.add(new Shard(id, group, randomSeed + round * groups.size() + i,
+              timeLimit, Paths.get(shardsDirectory).resolve(id), id,
+              targetMethods.stream()
+                  .filter(m -> group.contains(m.substring(0, m.indexOf('#'))))
+                  .map(CoverageRunner::toRandoopSignature)
+                  .collect(Collectors.toList())));
+        }
+        getLog().info(String.format("Coverage round %d: %d classes, %d methods, %ds",
+            round, targetClasses.size(), targetMethods.size(), roundSeconds));
+
+        final List<Path> produced;
+        try (PerformanceReport.Phase ignored = report.phase(PerformanceReport.GENERATION)){
+          produced = new ArrayList<>(runShards(dependencies, roundShards, workers, false).values());
+        }
+        generated.addAll(produced);
+
+        try (PerformanceReport.Phase ignored = report.phase("measureCoverage")){
+          compiler.finish(generated);
+          final List<String> testClasses = new ArrayList<>();
+          for (Path each : produced){
+            if (Files.exists(each) && !TestSource.read(each).isSuite()){
+              testClasses.add(packageName + "." + each.getFileName().toString()
+                  .replaceFirst("\\.java$", ""));
+            }
+          }
+
+          final List<URL> classpath = new ArrayList<>(testClasspath);
+          classpath.add(0, coverageDir.toUri().toURL());
+          // Measuring may take a share of the round, never the whole budget
+          final long millisLeft = Math.max(1000, Math.min(
+              TimeUnit.SECONDS.toMillis(roundSeconds) / MEASUREMENT_SHARE,
+              TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+          final boolean[] hits = coverage.run(classpath, testClasses, millisLeft);
+          for (int i = 0; i < hits.length; i++){
+            covered[i] |= hits[i];
+          }
+        }
+
+        final double previous = coveredPercent;
+        coveredPercent = methods.isEmpty() ? 100 : 100.0 * count(covered) / methods.size();
+        final double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        final double gain = (coveredPercent - previous) / seconds;
+        getLog().info(String.format(Locale.ROOT,
+            "Coverage round %d: %.1f%% of %d methods covered (+%.2f points/s)",
+            round, coveredPercent, methods.size(), gain));
+
+        final Set<String> uncovered = testable.values().stream()
+            .filter(m -> !covered[probes.get(m)])
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+        targetMethods = ImmutableList.copyOf(uncovered);
+        targetClasses = testable.keySet().stream()
+            .filter(c -> testable.get(c).stream().anyMatch(uncovered::contains))
+            .collect(Collectors.toList());
+        if (gain < minCoverageGain){
+          getLog().info("Coverage gain below " + minCoverageGain + " points/s; stopping");
+          break;
+        }
+      }
+    } catch (IOException e){
+      getLog().warn("Unable to measure coverage; stopping after this round: " + e.getMessage());
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Interrupted while measuring coverage", e);
+    } finally {
+      Utils.deleteDirQuietly(coverageDir);
+    }
+    getLog().info("Randoop finished.");
+  }
+
+  private static int count(boolean[] flags){
+    int count = 0;
+    for (boolean each : flags){
+      if (each) count++;
+    }
+    return count;
+  }
+
+  private static String groupId(List<String> classNames){
+    return Hashing.sha256()
+        .hashString(String.join(",", classNames), StandardCharsets.UTF_8)
+        .toString()
+        .substring(0, 10);
+  }
+
+  private List<Shard> planShards(List<List<String>> groups, int workers,
+      IntFunction<String> idOf){
+    final int timeLimit = Shards.timeLimitPerShard(timeoutInSeconds, groups.size(), workers);
+    final Path shardsRoot = Paths.get(shardsDirectory);
+
+    budgetScheduler = adaptiveBudget
+        ? new BudgetScheduler(timeoutInSeconds, Math.min(workers, groups.size()))
+        : null;
+    final List<Integer> timeLimits = budgetScheduler == null
+        ? null
+        : budgetScheduler.initialTimeLimits(groups.stream()
+            .map(this::weightOf)
+            .collect(Collectors.toList()));
+
+    final List<Shard> plannedShards = new ArrayList<>();
+    for (int i = 0; i < groups.size(); i++){
+      final String id = idOf.apply(i);
+      final int shardTimeLimit = timeLimits == null ? timeLimit : timeLimits.get(i);
+      plannedShards.add(new Shard(id, groups.get(i), randomSeed + i, shardTimeLimit,
+          shardsRoot.resolve(id), id));
+    }
+
+    return plannedShards;
+  }
+
+  private long weightOf(List<String> classNames){
+    return classNames.stream().mapToLong(classWeights).sum();
+  }
+
+  private Path yieldHistoryFile(){
+    return project.getBasedir().toPath().resolve(".randoop.d").resolve("yield.tsv");
+  }
+
+  /**
+   * Runs the shards, then merges their tests into targetDirectory.
+   *
+   * @param replaceTests whether Randoop tests of earlier runs (e.g., of shards this run does
+   *                     not have) are deleted before merging; not when this run only adds
+   *                     to them
+   */
+  private ListMultimap<String, Path> runShards(List<URL> dependencies, List<Shard> plannedShards,
+      int workers, boolean replaceTests) throws MojoExecutionException, MojoFailureException {
+
+    final Path shardsRoot = Paths.get(shardsDirectory);
+    Utils.deleteDirQuietly(shardsRoot);
+
+    getLog().info(String.format("Running %d Randoop shards on %d parallel JVMs",
+        plannedShards.size(), Math.min(workers, plannedShards.size())));
+
+    final List<Shard> ran = new ArrayList<>(plannedShards);
+    runShardRound(dependencies, plannedShards, workers);
+
+    if (budgetScheduler != null){
+      final List<Shard> followUps = budgetScheduler.followUps(plannedShards);
+      if (!followUps.isEmpty()){
+        getLog().info(String.format("Giving unused time to %d productive shards: %s",
+            followUps.size(), followUps.stream()
+                .map(f -> f.getId() + "=" + f.getTimeLimitInSeconds() + "s")
+                .collect(Collectors.joining(", "))));
+        runShardRound(dependencies, followUps, workers);
+        ran.addAll(followUps);
+      }
+
+      final YieldHistory history = YieldHistory.load(yieldHistoryFile());
+      budgetScheduler.updateHistory(history, ran);
+      try {
+        history.save(yieldHistoryFile());
+      } catch (IOException e){
+        getLog().warn("Unable to save Randoop yield history: " + e.getMessage());
+      }
+    }
+
+    if (replaceTests){
+      final Path packageDir = Paths.get(targetDirectory).resolve(packageName.replace('.', '/'));
+      final TreeCleaner.Result cleaned = new TreeCleaner()
+          .clean(packageDir, TreeCleaner.RANDOOP_TEST_FILE);
+      getLog().debug("Cleaned " + packageDir + ": " + cleaned);
+    }
+
+    try {
+      final ListMultimap<String, Path> merged = Shards.merge(ran, Paths.get(targetDirectory));
+      getLog().info("Merged " + merged.size() + " generated files into " + targetDirectory);
+      if (budgetScheduler == null){
+        return merged;
+      }
+
+      // Follow-up runs extend the tests of the shard they continue
+      final ListMultimap<String, Path> byParent = ArrayListMultimap.create();
+      merged.forEach((id, file) -> byParent.put(budgetScheduler.parentOf(id), file));
+      return byParent;
+    } catch (IOException e){
+      throw new MojoFailureException("Unable to merge Randoop shards!", e);
+    } finally {
+      Utils.deleteDirQuietly(shardsRoot);
+    }
+  }
+
+  private void runShardRound(List<URL> dependencies, List<Shard> roundShards, int workers)
+      throws MojoExecutionException, MojoFailureException {
+
+    // Longest shards first, so the short ones fill the gaps at the end
+    final List<Shard> ordered = roundShards.stream()
+        .sorted(Comparator.comparingInt(Shard::getTimeLimitInSeconds).reversed())
+        .collect(Collectors.toList());
+
+    final ExecutorService pool = Executors.newFixedThreadPool(
+        Math.min(workers, ordered.size()));
+    final List<Future<Integer>> exitCodes = new ArrayList<>();
+    try {
+      for (Shard each : ordered){
+        final List<String> args = buildArgs(dependencies, each);
+        getLog().debug("Call outside Maven (" + each.getId() + "): " + String.join(" ", args));
+        exitCodes.add(pool.submit(() -> {
+          final RandoopProgress progress = new RandoopProgress();
+          final int exitCode = runWithinMemory(
+              each.getId(), each, dependencies, args, progress);
+          if (budgetScheduler != null){
+            budgetScheduler.record(each, progress.getElapsedSeconds(),
+                progress.getRegressionTests());
+          }
+          return exitCode;
+        }));
+      }
+
+      final List<String> failedShards = new ArrayList<>();
+      for (int i = 0; i < exitCodes.size(); i++){
+        try {
+          exitCodes.get(i).get();
+        } catch (ExecutionException e){
+          getLog().warn(ordered.get(i).getId() + ": " + e.getCause().getMessage());
+          failedShards.add(ordered.get(i).getId());
+        }
+      }
+
+      if (!failedShards.isEmpty()){
+        throw new MojoFailureException(
+            this,
+            "Randoop encountered an error!",
+            "Test generation failure in shards " + failedShards);
+      }
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Interrupted while waiting for Randoop shards", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /** @return Randoop's regression test classes in targetDirectory, but not rebalanced ones */
+  private List<Path> generatedRegressionTests(){
+    final Path packageDir = Paths.get(targetDirectory).resolve(packageName.replace('.', '/'));
+    return Utils.findFiles(packageDir, Utils.JAVA_MATCHER).stream()
+        .filter(f -> f.getParent().equals(packageDir))
+        .filter(f -> f.getFileName().toString().startsWith("RegressionTest"))
+        .filter(f -> !BALANCED_TEST_CLASS.matcher(f.getFileName().toString()).matches())
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Screens, deduplicates, then rebalances, freshly generated regression tests, as requested.
+   *
+   * @return the test classes now holding the tests
+   */
+  private List<Path> landTests(List<Path> regressionTests, String prefix){
+    List<Path> landed = regressionTests;
+    if (screeningRuns > 1 && !landed.isEmpty()){
+      try (PerformanceReport.Phase ignored = report.phase("screenTests")){
+        landed = screenTests(landed, prefix);
+      }
+    }
+    if (deduplicateTests && !landed.isEmpty()){
+      try (PerformanceReport.Phase ignored = report.phase("deduplicateTests")){
+        landed = deduplicateTests(landed);
+      }
+    }
+    if (balancedTestClasses > 0 && !landed.isEmpty()){
+      try (PerformanceReport.Phase ignored = report.phase("rebalanceTests")){
+        landed = rebalanceTests(landed, prefix);
+      }
+    }
+    return landed;
+  }
+
+  /**
+   * Compiles the tests on the side, runs them screeningRuns times, and quarantines those
+   * that failed at least once. Tests that do not compile are deleted.
+   *
+   * @return the test classes left; all of them if the tests cannot be run
+   */
+  private List<Path> screenTests(List<Path> regressionTests, String prefix){
+    final String name = prefix.replaceFirst("_$", "");
+    final Path screeningDir = Paths.get(project.getBuild().getDirectory())
+        .resolve("randoop-screening").resolve(name);
+    Utils.deleteDirQuietly(screeningDir);
+    try (TestCompiler compiler = new TestCompiler(
+        ImmutableList.of(Paths.get(targetDirectory)),
+        screeningDir,
+        LaunchFiles.toPaths(testClasspath),
+        compilerRelease(),
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 4),
+        getLog()::warn)){
+      final TestCompiler.Result compiled = compiler.finish(regressionTests);
+      final List<Path> compiledTests = regressionTests.stream()
+          .filter(Files::exists)
+          .collect(Collectors.toList());
+      if (!compiled.getRejected().isEmpty()){
+        getLog().warn(String.format("Deleted %d generated test classes that do not compile",
+            compiled.getRejected().size()));
+      }
+
+      final Map<String, List<String>> tests = new LinkedHashMap<>();
+      for (Path each : compiledTests){
+        final TestSource source = TestSource.read(each);
+        if (!source.isSuite()){
+          tests.put(source.getQualifiedName(), source.getTests().stream()
+              .map(TestSource.Member::getName)
+              .collect(Collectors.toList()));
+        }
+      }
+
+      final List<URL> classpath = new ArrayList<>(testClasspath);
+      classpath.add(screeningDir.toUri().toURL());
+      final int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+      final FlakinessScreening.Result result = FlakinessScreening.screen(
+          classpath, tests, screeningRuns, threads, randomSeed);
+      result.writeJson(Paths.get(performanceReportDirectory)
+          .resolve("gentests-flakiness-" + name + ".json"));
+
+      if (!result.getOutcomes().isEmpty()
+          && result.getFailing().size() == result.getOutcomes().size()){
+        // Tests that never even load say more about the classpath than about the tests
+        getLog().warn("No generated test passed in any screening run; keeping them all."
+            + " Check that the project's test dependencies are complete.");
+        return compiledTests;
+      }
+
+      final Set<String> quarantined = new HashSet<>(result.getFlaky());
+      quarantined.addAll(result.getFailing());
+      getLog().info(String.format(
+          "Screened %d generated tests over %d runs: %d flaky, %d failing every time",
+          result.getOutcomes().size(), screeningRuns, result.getFlaky().size(),
+          result.getFailing().size()));
+      if (quarantined.isEmpty()){
+        return compiledTests;
+      }
+
+      getLog().warn(String.format("Moved %d unstable tests to %s",
+          quarantined.size(), quarantineDirectory));
+      return FlakinessScreening.quarantine(
+          compiledTests, quarantined, Paths.get(quarantineDirectory));
+    } catch (IOException | IllegalStateException e){
+      getLog().warn("Unable to screen generated tests; keeping them all: " + e.getMessage());
+      return regressionTests.stream().filter(Files::exists).collect(Collectors.toList());
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      return regressionTests.stream().filter(Files::exists).collect(Collectors.toList());
+    } finally {
+      Utils.deleteDirQuietly(screeningDir);
+    }
+  }
+
+  /** @return the test classes left; all of them if the tests cannot be parsed */
+  private List<Path> deduplicateTests(List<Path> regressionTests){
+    final TestHistory history = openTestHistory();
+    final TestDeduplicator.Result result;
+    try {
+      result = TestDeduplicator.deduplicate(regressionTests, test -> history == null
+          ? Double.NaN
+          : history.statsOf(test).map(TestStats::getMeanMillis).orElse(Double.NaN));
+    } catch (IOException | RuntimeException e){
+      getLog().warn("Unable to deduplicate generated tests; keeping them all: "
+          + e.getMessage());
+      return regressionTests;
+    }
+
+    final double runMillis = result.getRunMillisSaved();
+    getLog().info(String.format(
+        "Removed %d of %d generated tests (%d duplicates, %d subsumed): %d KB of source,"
+            + " about %d ms of compile time and %s of test time saved",
+        result.getRemoved(), result.getTests(), result.getDuplicates(), result.getSubsumed(),
+        result.getRemovedBytes() / 1024, result.getCompileMillisSaved(),
+        Double.isNaN(runMillis) ? "an unknown amount" : Math.round(runMillis) + " ms"));
+    return result.getFiles();
+  }
+
+  /** @return the test history, if one was recorded and can be read; otherwise null */
+  private TestHistory openTestHistory(){
+    final Path historyDir = project.getBasedir().toPath().resolve(".randoop.d").resolve("history");
+    if (!Files.isDirectory(historyDir)){
+      return null;
+    }
+
+    try {
+      return TestHistory.open(historyDir);
+    } catch (IOException e){
+      getLog().debug("Unable to read test history: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Rewrites Randoop's regression tests into balancedTestClasses classes named
+   * {@code <prefix>B<i>Test}, and deletes stale classes with those names. If the tests
+   * cannot be parsed, Randoop's classes are kept as they are.
+   *
+   * @return the test classes now holding the tests
+   */
+  private List<Path> rebalanceTests(List<Path> regressionTests, String prefix){
+    if (regressionTests.isEmpty()){
+      return regressionTests;
+    }
+
+    final TestHistory history = openTestHistory();
+    // Tests that ran after an earlier rebalancing were recorded under their moved name
+    final Map<String, Double> movedDurations = new HashMap<>();
+    if (history != null){
+      history.all().stream()
+          .filter(s -> s.getClassName().substring(s.getClassName().lastIndexOf('.') + 1)
+              .startsWith(prefix + "B"))
+          .forEach(s -> movedDurations.put(s.getMethodName(), s.getMeanMillis()));
+    }
+
+    final List<Path> balanced;
+    try {
+      balanced = TestRebalancer.rebalance(regressionTests, balancedTestClasses,
+          i -> prefix + "B" + i + "Test",
+          (test, movedName) -> history == null
+              ? Double.NaN
+              : history.statsOf(test).map(TestStats::getMeanMillis)
+                  .orElse(movedDurations.getOrDefault(movedName, Double.NaN)));
+    } catch (IOException | RuntimeException e){
+      getLog().warn("Unable to rebalance generated tests; keeping them as they are: "
+          + e.getMessage());
+      return regressionTests;
+    }
+
+    // Tests in classes from an earlier, larger rebalancing were regenerated
+    final Path packageDir = regressionTests.get(0).getParent();
+    Utils.findFiles(packageDir, Utils.JAVA_MATCHER).stream()
+        .filter(f -> f.getParent().equals(packageDir))
+        .filter(f -> f.getFileName().toString().startsWith(prefix + "B"))
+        .filter(f -> BALANCED_TEST_CLASS.matcher(f.getFileName().toString()).matches())
+        .filter(f -> !balanced.contains(f))
+        .forEach(Utils::deleteFileQuietly);
+
+    getLog().info(String.format("Rebalanced %d Randoop test classes into %d",
+        regressionTests.size(), balanced.size()));
+    return balanced;
+  }
+
+  /** Watches Randoop's output directories, if a compiler is available. */
+  private void startTestCompilation(List<URL> testClasspath){
+    final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    try {
+      testCompiler = new TestCompiler(
+          ImmutableList.of(Paths.get(targetDirectory), Paths.get(shardsDirectory)),
+          Paths.get(testOutputDirectory),
+          LaunchFiles.toPaths(testClasspath),
+          compilerRelease(),
+          threads,
+          getLog()::warn);
+      testCompiler.start();
+    } catch (IllegalStateException | IOException e){
+      getLog().warn("Unable to compile tests during generation: " + e.getMessage());
+      closeTestCompiler();
+    }
+  }
+
+  private void finishTestCompilation() throws MojoFailureException {
+    if (testCompiler == null){
+      return;
+    }
+
+    final TestCompiler.Result result;
+    try (PerformanceReport.Phase ignored = report.phase("compileTests")){
+      result = testCompiler.finish(Utils.findRandoopTests(Paths.get(targetDirectory)));
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Interrupted while compiling generated tests", e);
+    }
+
+    getLog().info(String.format(
+        "Compiled %d generated test classes while Randoop ran and %d after it",
+        result.getOverlapped(), result.getCompiledAtFinish()));
+    if (!result.getRejected().isEmpty() && result.getKept() == 0){
+      // Likely the classpath (e.g., no JUnit) rather than the tests
+      throw new MojoFailureException(String.format(
+          "None of the %d generated test classes compiles against the test classpath;"
+              + " see the compiler errors above", result.getRejected().size()));
+    }
+    if (!result.getRejected().isEmpty()){
+      getLog().warn(String.format("Deleted %d generated test classes that do not compile: %s",
+          result.getRejected().size(), result.getRejected().stream()
+              .map(p -> p.getFileName().toString())
+              .collect(Collectors.joining(", "))));
+    }
+  }
+
+  private void closeTestCompiler(){
+    if (testCompiler == null){
+      return;
+    }
+
+    try {
+      testCompiler.close();
+    } catch (IOException e){
+      getLog().debug("Unable to close test compiler: " + e.getMessage());
+    }
+    testCompiler = null;
+  }
+
+  /** @return the release tests are compiled for, from the compiler plugin's properties */
+  private String compilerRelease(){
+    final String release = project.getProperties().getProperty("maven.compiler.release");
+    if (!Strings.isNullOrEmpty(release)){
+      return release;
+    }
+
+    // --release takes 8, not 1.8
+    final String target = project.getProperties().getProperty("maven.compiler.target", "");
+    return target.startsWith("1.") ? target.substring(2) : target;
+  }
+
   private List<URL> resolveCommonPluginDependencies() throws MojoExecutionException {
     final List<URL> urls = new LinkedList<>(resolveProjectClasses());
     urls.addAll(resolveProjectDependencies(project));
@@ -134,7 +1172,7 @@ public class RandoopMojo extends AbstractMojo {
 
   private List<URL> resolveRandoopDependencies() throws MojoExecutionException {
     // Add randoop plugin Jar and randoop dependency here
-    return new LinkedList<>(resolvePluginJarWithRandoop());
+    return new LinkedList<>(resolvePluginJarWithRandoop(project, getLog()));
   }
 
   private void cleanupStep() throws MojoFailureException {
@@ -148,18 +1186,18 @@ public class RandoopMojo extends AbstractMojo {
     final Path junitOutputDir = javaDir.resolve(String.join(
         "/", packageName.split("\\.")));
 
-    if (cleanBefore && Files.exists(junitOutputDir)){
-      final Set<Path> generatedUnitTests = Utils.findRandoopTests(junitOutputDir);
-      if (generatedUnitTests.isEmpty()){
+    if (cleanBefore && (!incremental || forgetPriorExecutions) && Files.exists(junitOutputDir)){
+      // One walk deletes the generated tests and the directories they leave empty,
+      // including the JUnit output directory itself
+      final TreeCleaner.Result cleaned = new TreeCleaner()
+          .clean(junitOutputDir, TreeCleaner.RANDOOP_TEST_FILE);
+      if (cleaned.getFilesDeleted() == 0){
         getLog().debug("Found no JUnit tests generated by Randoop");
       }
 
-      generatedUnitTests.forEach(Utils::deleteFileQuietly);
-      getLog().debug("Deleted JUnit tests generated by Randoop");
-    }
-
-    // delete the JUnit output directory if empty
-    if (Utils.isDirEmpty(junitOutputDir)){
+      getLog().info("Cleanup of JUnit tests generated by Randoop: " + cleaned);
+    } else if (Utils.isDirEmpty(junitOutputDir)){
+      // delete the JUnit output directory if empty
       Utils.deleteDirQuietly(junitOutputDir);
 
       getLog().debug(String.format("Deleted empty directory: %s", junitOutputDir));
@@ -168,6 +1206,7 @@ public class RandoopMojo extends AbstractMojo {
     final Path surefireCopyPath = baseDir.resolve(".surefire.d");
     if (forgetPriorExecutions){
       Utils.deleteDirQuietly(surefireCopyPath);
+      Utils.deleteDirQuietly(baseDir.resolve(".randoop.d"));
     }
   }
 
@@ -198,6 +1237,222 @@ public class RandoopMojo extends AbstractMojo {
         }
       }
     } // Otherwise, Run Randoop as usual
+
+    recordTestHistory(surefirePath, baseDir.resolve(".randoop.d").resolve("history"));
+  }
+
+  private OutputCache outputCache() throws MojoExecutionException {
+    try {
+      return new OutputCache(Paths.get(outputCacheDirectory),
+          Utils.parseBytes(outputCacheSize));
+    } catch (IllegalArgumentException e){
+      throw new MojoExecutionException("Invalid outputCacheSize: " + outputCacheSize, e);
+    }
+  }
+
+  /** @return hash of everything the tests of this execution depend on */
+  private String outputCacheKey() throws MojoExecutionException {
+    final List<Path> jars = new ArrayList<>();
+    project.getArtifacts().stream()
+        .filter(a -> a.getFile() != null)
+        .forEach(a -> jars.add(a.getFile().toPath()));
+    jars.addAll(LaunchFiles.toPaths(resolvePluginJarWithRandoop(project, getLog())));
+
+    final int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    final Map<String, String> parameters = new TreeMap<>();
+    parameters.put("packageName", packageName);
+    parameters.put("timeoutInSeconds", String.valueOf(timeoutInSeconds));
+    parameters.put("randomSeed", String.valueOf(randomSeed));
+    parameters.put("shards", String.valueOf(shards > 0 ? shards : workers));
+    parameters.put("parallelism", String.valueOf(workers));
+    parameters.put("adaptiveBudget", String.valueOf(adaptiveBudget));
+    parameters.put("coverageRounds", String.valueOf(coverageRounds));
+    parameters.put("minCoverageGain", String.valueOf(minCoverageGain));
+    parameters.put("screeningRuns", String.valueOf(screeningRuns));
+    parameters.put("deduplicate", String.valueOf(deduplicateTests));
+    parameters.put("balancedClasses", String.valueOf(balancedTestClasses));
+    parameters.put("literals", harvestLiterals ? String.valueOf(maxLiteralsPerClass) : "");
+    parameters.put("prune", String.valueOf(pruneUntestable));
+    parameters.put("testClassIncludes", String.valueOf(testClassIncludes));
+    parameters.put("testClassExcludes", String.valueOf(testClassExcludes));
+    parameters.put("discoveryJars", String.valueOf(discoveryJars));
+    parameters.put("permitNonZeroExitStatus", String.valueOf(permitNonZeroExitStatus));
+    parameters.put("maxHeap", Strings.nullToEmpty(maxHeap));
+    parameters.put("memoryLimit", Strings.nullToEmpty(memoryLimit));
+    parameters.put("jvmProfile", jvmProfile);
+    parameters.put("jvmArgs", String.valueOf(jvmArgs));
+
+    try {
+      return OutputCache.key(
+          ImpactIndex.fingerprintAll(Paths.get(sourceDirectory)), jars, parameters);
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to compute the cache key of generated tests", e);
+    }
+  }
+
+  /** @return true if the tests of {@code key} were restored into targetDirectory */
+  private boolean restoreFromCache(String key) throws MojoExecutionException {
+    final Path targetDir = Paths.get(targetDirectory);
+    try {
+      final OutputCache cache = outputCache();
+      if (!cache.contains(key)){
+        getLog().info("No cached tests for key " + key.substring(0, 16));
+        return false;
+      }
+
+      // Tests of other keys (e.g., of another branch) must not mix with those restored
+      Utils.findRandoopTests(targetDir.resolve(packageName.replace('.', '/')))
+          .forEach(Utils::deleteFileQuietly);
+      final Optional<List<Path>> restored = cache.restore(key, targetDir);
+      if (!restored.isPresent()) return false;
+
+      getLog().info(String.format("Restored %d cached test files for key %s",
+          restored.get().size(), key.substring(0, 16)));
+      return true;
+    } catch (IOException e){
+      getLog().warn("Unable to restore cached tests: " + e.getMessage());
+      return false;
+    }
+  }
+
+  private void storeInCache(String key) throws MojoExecutionException {
+    final Path targetDir = Paths.get(targetDirectory);
+    final Set<Path> files = Utils.findRandoopTests(
+        targetDir.resolve(packageName.replace('.', '/')));
+    try {
+      outputCache().store(key, targetDir, files);
+      getLog().info(String.format("Cached %d test files for key %s",
+          files.size(), key.substring(0, 16)));
+    } catch (IOException e){
+      getLog().warn("Unable to cache generated tests: " + e.getMessage());
+    }
+  }
+
+  private Path impactIndexFile(){
+    return project.getBasedir().toPath().resolve(".randoop.d").resolve("impact.tsv");
+  }
+
+  /**
+   * Compares the project's class files with those the generated tests were generated
+   * against. Unless a class of packageName changed, keeps the tests and lists those
+   * referring to a changed class in impactDirectory, for surefire to run only them.
+   *
+   * @return true if generation can be skipped
+   */
+  private boolean selectImpactedTests() throws MojoExecutionException {
+    final ImpactIndex index = ImpactIndex.load(impactIndexFile());
+    if (index.isEmpty()){
+      getLog().warn("Warm start: no impact index at " + impactIndexFile()
+          + "; generating tests again");
+      return false;
+    }
+
+    final Path targetDir = Paths.get(targetDirectory);
+    final Map<String, Path> testFiles = new TreeMap<>();
+    for (Path each : Utils.findRandoopTests(targetDir)){
+      final String relative = targetDir.relativize(each).toString().replace('\\', '/');
+      testFiles.put(relative.replaceFirst("\\.java$", "").replace('/', '.'), each);
+    }
+    if (testFiles.isEmpty()){
+      getLog().info("Warm start: no earlier generated tests in " + targetDir);
+      return false;
+    }
+
+    try {
+      final Map<String, String> current = ImpactIndex.fingerprintAll(Paths.get(sourceDirectory));
+      final Set<String> changed = index.changedClasses(current);
+      final List<String> changedUnderTest = changed.stream()
+          .filter(c -> c.lastIndexOf('.') > 0
+              && c.substring(0, c.lastIndexOf('.')).equals(packageName))
+          .collect(Collectors.toList());
+      if (!changedUnderTest.isEmpty()){
+        getLog().info(String.format("Warm start: %d classes of %s changed; generating again",
+            changedUnderTest.size(), packageName));
+        return false;
+      }
+
+      // Suites run every test; they are never selected
+      final Map<String, Path> tests = new LinkedHashMap<>();
+      for (Map.Entry<String, Path> each : testFiles.entrySet()){
+        if (!TestSource.read(each.getValue()).isSuite()){
+          tests.put(each.getKey(), each.getValue());
+        }
+      }
+      // Sources, as the tests are not compiled yet at this phase
+      index.indexTestSources(tests, current.keySet());
+      index.save(impactIndexFile());
+
+      final Set<String> affected = index.affectedTests(changed, tests.keySet());
+      final List<String> includes = new ArrayList<>();
+      final List<String> excludes = new ArrayList<>();
+      testFiles.keySet().forEach(t -> (affected.contains(t) ? includes : excludes)
+          .add(t.replace('.', '/') + ".java"));
+      final Path excludesFile = writeTestSelection(includes, excludes);
+      getLog().info(String.format(
+          "Warm start: %d project classes changed, none in %s; keeping generated tests, "
+              + "%d of %d of which refer to changed classes. To run only those, set "
+              + "surefire's excludesFile to %s",
+          changed.size(), packageName, affected.size(), tests.size(), excludesFile));
+      return true;
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to select generated tests to run", e);
+    }
+  }
+
+  /**
+   * Lists the generated tests surefire should run (includes.txt), and those it should not
+   * (excludes.txt), in impactDirectory.
+   *
+   * @return the excludes file
+   */
+  private Path writeTestSelection(List<String> includes, List<String> excludes)
+      throws IOException {
+    final Path impactDir = Paths.get(impactDirectory);
+    Files.createDirectories(impactDir);
+    Files.write(impactDir.resolve("includes.txt"), includes, StandardCharsets.UTF_8);
+    final Path excludesFile = impactDir.resolve("excludes.txt");
+    Files.write(excludesFile, excludes, StandardCharsets.UTF_8);
+    return excludesFile;
+  }
+
+  /** Records the class files the tests just generated are generated against. */
+  private void recordImpactCheckpoint() throws MojoExecutionException {
+    try {
+      final ImpactIndex index = ImpactIndex.empty();
+      index.recordClasses(ImpactIndex.fingerprintAll(Paths.get(sourceDirectory)));
+      index.save(impactIndexFile());
+      // New tests all run
+      final Path targetDir = Paths.get(targetDirectory);
+      writeTestSelection(Utils.findRandoopTests(targetDir).stream()
+          .map(f -> targetDir.relativize(f).toString().replace('\\', '/'))
+          .sorted()
+          .collect(Collectors.toList()), ImmutableList.of());
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to record warm start checkpoint", e);
+    }
+  }
+
+  private void recordTestHistory(Path surefirePath, Path historyDir){
+    try {
+      final List<Path> reports = SurefireReports.list(surefirePath);
+      if (reports.isEmpty()) return;
+
+      final TestHistory history = TestHistory.open(historyDir);
+      final List<TestOutcome> outcomes = new ArrayList<>();
+      SurefireReports.read(reports, outcomes::add);
+      final int run = history.appendRun(outcomes, SurefireReports.fingerprint(reports));
+      if (run < 0){
+        getLog().debug("Surefire reports already recorded in the test history");
+        return;
+      }
+
+      getLog().info(String.format(
+          "Recorded test run %d: %d tests; %d newly failing, %d flaky overall",
+          run, outcomes.size(), history.failingSince(run).size(),
+          history.flaky(2, Integer.MAX_VALUE).size()));
+    } catch (IOException e){
+      getLog().warn("Unable to record surefire reports in the test history: " + e.getMessage());
+    }
   }
 
   private void removesRandoopLeftovers() {
@@ -207,78 +1462,164 @@ public class RandoopMojo extends AbstractMojo {
     Path pathToBeDeleted = project.getBasedir().toPath().resolve(rootJavaPackage);
     if (!Files.exists(pathToBeDeleted))
       return;
-    try (Stream<Path> walk = Files.walk(pathToBeDeleted)) {
-      walk.sorted(Comparator.reverseOrder())
-          .forEach(Utils::deleteDirQuietly);
-    } catch (IOException e){
-      getLog().warn("Could not delete " + pathToBeDeleted + " Error details: " + e.getMessage());
+    final TreeCleaner.Result cleaned = new TreeCleaner().clean(pathToBeDeleted, f -> true);
+    if (cleaned.getFailures() > 0){
+      getLog().warn("Could not delete " + pathToBeDeleted + ": " + cleaned);
+    } else {
+      getLog().debug("Deleted " + pathToBeDeleted + ": " + cleaned);
     }
   }
 
-  private List<String> buildArgs(final List<URL> urls) throws MojoExecutionException {
-    Preconditions.checkNotNull(urls);
-    final String classpath = urls.stream()
-        .map(URL::toString)
-        .collect(Collectors.joining(File.pathSeparator));
-
-    final List<String> args = Lists.newLinkedList();
-
-    // Build up Randoop command line
-    args.add("java");
-    args.add("-ea");
-    args.add("-classpath");
-    args.add(classpath);
-    args.add("randoop.main.Main");
-    args.add("gentests");
-    args.add("--time-limit=" + timeoutInSeconds);
-    args.add("--debug-checks=true");
-    args.add("--junit-package-name=" + packageName);
-    args.add("--junit-output-dir=" + targetDirectory);
-
-    // Add project classes
-    try(URLClassLoader classLoader = new URLClassLoader(Utils.toURLArray(urls))) {
-      final Set<Class<?>> inPackageClasses = Utils.classesLookup(packageName, classLoader);
-      for (Class<?> eachClass : inPackageClasses){
-        getLog().info("Add class " + eachClass.getName());
-        args.add("--testclass=" + eachClass.getName());
+  private List<ClassFile> lookupClasses() throws MojoExecutionException {
+    // Add project classes; read from their class files, so none of them is loaded here
+    try {
+      final List<ClassFile> candidates = ClassDiscovery.discover(
+              Paths.get(sourceDirectory), packageName, resolveDiscoveryJars()).stream()
+          .filter(ClassDiscovery.RANDOOP_CANDIDATE)
+          .collect(ImmutableList.toImmutableList());
+      final List<Testability.Verdict> verdicts = Testability.assess(candidates,
+          testClassIncludes == null ? ImmutableList.of() : testClassIncludes,
+          testClassExcludes == null ? ImmutableList.of() : testClassExcludes,
+          pruneUntestable);
+      Testability.writeReport(verdicts,
+          Paths.get(performanceReportDirectory).resolve("gentests-testability.json"));
+
+      final Set<String> kept = new HashSet<>();
+      for (Testability.Verdict each : verdicts){
+        if (each.isKept()){
+          kept.add(each.getClassName());
+        } else if (each.isPruned()){
+          getLog().warn("Not testing " + each.getClassName() + ": " + each.getReason());
+        } else {
+          getLog().info("Not testing " + each.getClassName() + ": " + each.getReason());
+        }
       }
+      if (kept.isEmpty() && !candidates.isEmpty()){
+        getLog().warn("No testable classes left in " + packageName
+            + "; see gentests-testability.json");
+      }
+
+      return candidates.stream()
+          .filter(c -> kept.contains(c.getName()))
+          .collect(ImmutableList.toImmutableList());
     } catch (IOException io){
       throw new MojoExecutionException("Could add testclass!", io);
     }
+  }
+
+  /** @return the Randoop literals file of {@code classes}, or null if they have no literals */
+  private Path harvestLiterals(List<ClassFile> classes) throws MojoExecutionException {
+    final Path cacheDir = project.getBasedir().toPath().resolve(".randoop.d").resolve("literals");
+    try {
+      final Map<String, List<String>> literals = new LiteralHarvester(cacheDir)
+          .harvest(classes, maxLiteralsPerClass);
+      if (literals.isEmpty()) return null;
 
-    return args;
+      getLog().info(String.format("Harvested %d literals of %d classes",
+          literals.values().stream().mapToInt(List::size).sum(), literals.size()));
+      return launchFiles.literalsFile(LiteralHarvester.toLiteralsFile(literals));
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to harvest literals!", e);
+    }
   }
 
+  private List<Path> resolveDiscoveryJars() {
+    if (discoveryJars == null || discoveryJars.isEmpty()){
+      return ImmutableList.of();
+    }
 
-  public int executeRandoop(final List<String> args) throws IOException, InterruptedException{
-    final ProcessBuilder processBuilder = new ProcessBuilder()
-        .command(args)
-        .redirectErrorStream(true);
-    final Process process = processBuilder.start();
+    return project.getArtifacts().stream()
+        .filter(a -> a.getFile() != null)
+        .filter(a -> discoveryJars.contains(a.getGroupId() + ":" + a.getArtifactId()))
+        .map(a -> a.getFile().toPath())
+        .collect(ImmutableList.toImmutableList());
+  }
 
-    int exitCode;
-    try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-      String outputLine;
-      while ((outputLine = bufferedReader.readLine()) != null) {
-        getLog().info(outputLine);
-      }
+  private List<String> buildArgs(final List<URL> urls, final Shard shard)
+      throws MojoExecutionException {
+    Preconditions.checkNotNull(urls);
+    Preconditions.checkNotNull(shard);
 
-      process.waitFor(timeoutInSeconds + 3, TimeUnit.SECONDS);
+    try (PerformanceReport.Phase ignored = report.phase("buildArgs")){
+      shard.getClassNames().forEach(c -> getLog().info("Add class " + c));
+      return launcher.buildArgs(LaunchFiles.toPaths(urls), shard, packageName, literalsFile);
+    } catch (IOException e){
+      throw new MojoExecutionException("Unable to write Randoop launch files!", e);
+    }
+  }
 
-      exitCode = process.exitValue();
-      if (exitCode != 0 && !permitNonZeroExitStatus){
-        throw new IOException("Randoop process returned " + exitCode);
+  /**
+   * Runs Randoop in the daemon if there is one, and in a forked JVM (i.e., {@code args})
+   * otherwise, or if the daemon fails to run the job.
+   */
+  private int runRandoop(final String label, final Shard shard, final List<URL> dependencies,
+      final List<String> args, final RandoopProgress progress)
+      throws IOException, InterruptedException {
+    if (daemonClient != null){
+      final String prefix = label == null ? "" : "[" + label + "] ";
+      final ThrottledLog output = new ThrottledLog(getLog(), prefix, maxLogLinesPerSecond);
+      try {
+        final int exitCode = daemonClient.run(
+            LaunchFiles.toPaths(dependencies),
+            RandoopLauncher.randoopArgs(args),
+            line -> {
+              if (!progress.update(line)){
+                output.info(line);
+              }
+            },
+            TimeUnit.SECONDS.toMillis(shard.getTimeLimitInSeconds() + processGraceInSeconds));
+        output.reportSuppressed();
+        launcher.finishCdsRecording(prefix, args);
+        getLog().info(prefix + "Randoop: " + progress);
+        launcher.recordRun(label, "daemon", exitCode, false,
+            Math.round(progress.getElapsedSeconds() * 1000), -1, -1, progress);
+        if (exitCode != 0 && !permitNonZeroExitStatus){
+          throw new IOException(prefix + "Randoop daemon job returned " + exitCode);
+        }
+        return exitCode;
+      } catch (DaemonClient.UnavailableException e){
+        // The job never ran; one that did (e.g., and timed out) fails the shard instead
+        getLog().warn(prefix + e.getMessage() + "; forking Randoop instead");
       }
     }
 
-    return exitCode;
+    return executeRandoop(label, args, progress);
+  }
+
+  /**
+   * Runs a shard with {@link #runRandoop}; with a memoryLimit, in parts if it needs more.
+   *
+   * @return exit code of the last run
+   * @see RandoopLauncher#runWithinMemory
+   */
+  private int runWithinMemory(final String label, final Shard shard,
+      final List<URL> dependencies, final List<String> args, final RandoopProgress progress)
+      throws IOException, InterruptedException {
+    return launcher.runWithinMemory(label, shard, args, progress, classWeights,
+        part -> {
+          try {
+            return buildArgs(dependencies, part);
+          } catch (MojoExecutionException e){
+            throw new IOException(e.getMessage(), e);
+          }
+        },
+        (l, s, a, p) -> runRandoop(l, s, dependencies, a, p));
+  }
+
+  public int executeRandoop(final List<String> args) throws IOException, InterruptedException{
+    return executeRandoop(null, args, new RandoopProgress());
+  }
 
+  public int executeRandoop(final String label, final List<String> args,
+      final RandoopProgress progress) throws IOException, InterruptedException{
+    return launcher.execute(label, args, progress);
   }
 
 
-  private Set<URL> resolvePluginJarWithRandoop() throws MojoExecutionException {
+  static Set<URL> resolvePluginJarWithRandoop(final MavenProject project, final Log log)
+      throws MojoExecutionException {
     final List<URL> pluginJarUrls = new ArrayList<>();
-    final URL pluginJar = Optional.ofNullable(getClass()
+    final URL pluginJar = Optional.ofNullable(RandoopMojo.class
         .getProtectionDomain().getCodeSource()
         .getLocation())
         .orElseThrow(() -> new MojoExecutionException("The Plugin Jar URL or file does not exist."));
@@ -287,20 +1628,20 @@ public class RandoopMojo extends AbstractMojo {
       throw new MojoExecutionException("The Plugin Jar URL or file does not exist.");
     }
 
-    getLog().debug("Plugin Jar found at: " + pluginJar.getFile());
+    log.debug("Plugin Jar found at: " + pluginJar.getFile());
     pluginJarUrls.add(pluginJar);
-    getLog().debug("Parent dir of Plugin Jar: " + Paths.get(pluginJar.getFile()).getParent());
+    log.debug("Parent dir of Plugin Jar: " + Paths.get(pluginJar.getFile()).getParent());
 
     final Optional<String> optionalRandoopVersion = Optional.ofNullable(project.getProperties().getProperty("revision"));
     final String randoopVersion = optionalRandoopVersion.orElse("4.3.2");
-    getLog().debug("Current Randoop version: " + randoopVersion);
+    log.debug("Current Randoop version: " + randoopVersion);
 
     final Optional<Path> randoopJar = Utils.findRandoopJar(pluginJar.getFile(), randoopVersion);
     if (randoopJar.isPresent() && Files.exists(randoopJar.get())){
       try {
         pluginJarUrls.add(Utils.newURL(randoopJar.get().toString()));
       } catch (MalformedURLException e) {
-        getLog().warn("Unable to find Randoop Jar", e);
+        log.warn("Unable to find Randoop Jar", e);
       }
     }
 
@@ -0,0 +1,116 @@
+package randoop.maven.bytecode;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the classes of a single package by reading their class files. Unlike
+ * {@link randoop.maven.utils.Utils#classesLookup(String, ClassLoader)}, it only looks at the
+ * package's own directory (and the given jars), and never loads a class; thus, no static
+ * initializer of the project runs inside the Maven JVM.
+ */
+public class ClassDiscovery {
+
+  /** Drops class files Randoop can never use as a {@code --testclass}. */
+  public static final Predicate<ClassFile> RANDOOP_CANDIDATE = c -> !c.isDescriptor()
+      && !c.isSynthetic()
+      && !c.isAnonymous();
+
+  private ClassDiscovery(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * Reads, in parallel, every class file directly in {@code packageName}; i.e., classes
+   * of sub-packages are not included. Classes in {@code classesDir} shadow those in jars.
+   *
+   * @param classesDir  directory with compiled classes; e.g., target/classes
+   * @param packageName package to look into
+   * @param jars        additional jars to look into
+   * @return the parsed class files, sorted by class name
+   * @throws IOException if a class file cannot be read or is malformed
+   */
+  public static List<ClassFile> discover(Path classesDir, String packageName,
+      Collection<Path> jars) throws IOException {
+    Preconditions.checkNotNull(classesDir);
+    Preconditions.checkNotNull(packageName);
+    Preconditions.checkNotNull(jars);
+
+    final String packagePath = packageName.replace('.', '/');
+    final Map<String, ClassFile> results = new LinkedHashMap<>();
+
+    final Path packageDir = classesDir.resolve(packagePath);
+    if (Files.isDirectory(packageDir)) {
+      final List<Path> classFiles;
+      try (Stream<Path> files = Files.list(packageDir)) {
+        classFiles = files.filter(f -> f.getFileName().toString().endsWith(".class"))
+            .filter(Files::isRegularFile)
+            .collect(Collectors.toList());
+      }
+
+      parseAll(classFiles.parallelStream().map(ClassDiscovery::read))
+          .forEach(c -> results.putIfAbsent(c.getName(), c));
+    }
+
+    for (Path each : jars) {
+      try (ZipFile jar = new ZipFile(each.toFile())) {
+        final List<ZipEntry> entries = jar.stream()
+            .filter(e -> isClassInPackage(e.getName(), packagePath))
+            .collect(Collectors.toList());
+
+        parseAll(entries.parallelStream().map(e -> read(jar, e)))
+            .forEach(c -> results.putIfAbsent(c.getName(), c));
+      }
+    }
+
+    return results.values().stream()
+        .sorted(Comparator.comparing(ClassFile::getName))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  private static List<ClassFile> parseAll(Stream<ClassFile> classFiles) throws IOException {
+    try {
+      return classFiles.collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  static boolean isClassInPackage(String entryName, String packagePath) {
+    return entryName.endsWith(".class")
+        && entryName.startsWith(packagePath + "/")
+        && entryName.indexOf('/', packagePath.length() + 1) < 0;
+  }
+
+  private static ClassFile read(Path file) {
+    try {
+      return ClassFile.parse(Files.readAllBytes(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException(new IOException("Unable to read " + file, e));
+    }
+  }
+
+  private static ClassFile read(ZipFile jar, ZipEntry entry) {
+    try (InputStream in = jar.getInputStream(entry)) {
+      return ClassFile.parse(in.readAllBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          new IOException("Unable to read " + entry.getName() + " in " + jar.getName(), e));
+    }
+  }
+}
@@ -0,0 +1,358 @@
+package randoop.maven.bytecode;
+
+import static randoop.maven.bytecode.ConstantPool.u2;
+import static randoop.maven.bytecode.ConstantPool.u4;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A class file read straight from its bytes (JVMS §4), without loading, linking, or
+ * initializing the class it describes. Only the parts this plugin needs are decoded:
+ * the header, the constant pool, method signatures, and the class attributes that tell
+ * nested, local and anonymous classes apart.
+ */
+public class ClassFile {
+
+  public static final int ACC_PUBLIC = 0x0001;
+  public static final int ACC_PRIVATE = 0x0002;
+  public static final int ACC_PROTECTED = 0x0004;
+  public static final int ACC_STATIC = 0x0008;
+  public static final int ACC_FINAL = 0x0010;
+  public static final int ACC_INTERFACE = 0x0200;
+  public static final int ACC_ABSTRACT = 0x0400;
+  public static final int ACC_SYNTHETIC = 0x1000;
+  public static final int ACC_ANNOTATION = 0x2000;
+  public static final int ACC_ENUM = 0x4000;
+  public static final int ACC_MODULE = 0x8000;
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private final ConstantPool constantPool;
+  private final int accessFlags;
+  private final String name;
+  private final String superName;
+  private final List<String> interfaces;
+  private final List<Member> fields;
+  private final List<Member> methods;
+  // Flags from this class' own InnerClasses entry; -1 for top level classes
+  private final int innerAccessFlags;
+  private final boolean memberClass;
+  private final boolean anonymous;
+
+  private ClassFile(ConstantPool constantPool, int accessFlags, String name,
+      String superName, List<String> interfaces, List<Member> fields, List<Member> methods,
+      int innerAccessFlags, boolean memberClass, boolean anonymous) {
+    this.constantPool = constantPool;
+    this.accessFlags = accessFlags;
+    this.name = name;
+    this.superName = superName;
+    this.interfaces = interfaces;
+    this.fields = fields;
+    this.methods = methods;
+    this.innerAccessFlags = innerAccessFlags;
+    this.memberClass = memberClass;
+    this.anonymous = anonymous;
+  }
+
+  public static ClassFile read(Path classFile) throws IOException {
+    return parse(Files.readAllBytes(classFile));
+  }
+
+  /**
+   * @param bytes content of a class file
+   * @return the parsed class file
+   * @throws IOException if bytes are not a well-formed class file
+   */
+  public static ClassFile parse(byte[] bytes) throws IOException {
+    if (bytes.length < 10 || u4(bytes, 0) != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+
+    try {
+      final ConstantPool pool = ConstantPool.read(bytes, 8);
+      int cursor = pool.end();
+
+      final int accessFlags = u2(bytes, cursor);
+      final int thisClass = u2(bytes, cursor + 2);
+      final int superClass = u2(bytes, cursor + 4);
+      final int interfacesCount = u2(bytes, cursor + 6);
+      cursor += 8;
+
+      final ImmutableList.Builder<String> interfaces = ImmutableList.builder();
+      for (int i = 0; i < interfacesCount; i++, cursor += 2) {
+        interfaces.add(toBinaryName(pool.className(u2(bytes, cursor))));
+      }
+
+      final ImmutableList.Builder<Member> fields = ImmutableList.builder();
+      cursor = readMembers(bytes, pool, cursor, fields);
+      final ImmutableList.Builder<Member> methods = ImmutableList.builder();
+      cursor = readMembers(bytes, pool, cursor, methods);
+
+      int innerAccessFlags = -1;
+      boolean memberClass = false;
+      boolean anonymous = false;
+
+      final int attributesCount = u2(bytes, cursor);
+      cursor += 2;
+      for (int i = 0; i < attributesCount; i++) {
+        final String attribute = pool.utf8(u2(bytes, cursor));
+        final int length = u4(bytes, cursor + 2);
+        final int body = cursor + 6;
+
+        if ("InnerClasses".equals(attribute)) {
+          final int classes = u2(bytes, body);
+          for (int c = 0; c < classes; c++) {
+            final int entry = body + 2 + c * 8;
+            if (u2(bytes, entry) != thisClass) continue;
+
+            // Local and anonymous classes have no outer_class_info_index
+            memberClass = u2(bytes, entry + 2) != 0;
+            anonymous = u2(bytes, entry + 4) == 0;
+            innerAccessFlags = u2(bytes, entry + 6);
+          }
+        }
+
+        cursor = body + length;
+      }
+
+      return new ClassFile(
+          pool,
+          accessFlags,
+          toBinaryName(pool.className(thisClass)),
+          superClass == 0 ? null : toBinaryName(pool.className(superClass)),
+          interfaces.build(),
+          fields.build(),
+          methods.build(),
+          innerAccessFlags,
+          memberClass,
+          anonymous);
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Malformed class file", e);
+    }
+  }
+
+  private static int readMembers(byte[] bytes, ConstantPool pool, int cursor,
+      ImmutableList.Builder<Member> members) {
+    final int count = u2(bytes, cursor);
+    cursor += 2;
+    for (int i = 0; i < count; i++) {
+      final int access = u2(bytes, cursor);
+      final int nameIndex = u2(bytes, cursor + 2);
+      final int descriptorIndex = u2(bytes, cursor + 4);
+      final int attributesCount = u2(bytes, cursor + 6);
+      cursor += 8;
+
+      int codeOffset = -1;
+      int codeLength = 0;
+      for (int a = 0; a < attributesCount; a++) {
+        final int length = u4(bytes, cursor + 2);
+        if ("Code".equals(pool.utf8(u2(bytes, cursor)))) {
+          codeOffset = cursor + 6;
+          codeLength = length;
+        }
+        cursor += 6 + length;
+      }
+
+      members.add(new Member(pool, access, nameIndex, descriptorIndex, codeOffset, codeLength));
+    }
+
+    return cursor;
+  }
+
+  static String toBinaryName(String internalName) {
+    return internalName.replace('/', '.');
+  }
+
+  public ConstantPool getConstantPool() {
+    return constantPool;
+  }
+
+  /** @return binary name; e.g., {@code a.b.Outer$Inner} */
+  public String getName() {
+    return name;
+  }
+
+  public String getPackageName() {
+    final int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(0, dot);
+  }
+
+  public String getSimpleBinaryName() {
+    return name.substring(name.lastIndexOf('.') + 1);
+  }
+
+  public Optional<String> getSuperName() {
+    return Optional.ofNullable(superName);
+  }
+
+  public List<String> getInterfaces() {
+    return interfaces;
+  }
+
+  public List<Member> getFields() {
+    return fields;
+  }
+
+  public List<Member> getMethods() {
+    return methods;
+  }
+
+  public int getAccessFlags() {
+    return accessFlags;
+  }
+
+  /**
+   * @return access flags as declared in the source; for nested classes, these come
+   * from the InnerClasses attribute since the class file header can't express
+   * private, protected or static.
+   */
+  public int getDeclaredAccessFlags() {
+    return innerAccessFlags >= 0 ? innerAccessFlags : accessFlags;
+  }
+
+  public boolean isPublic() {
+    return (getDeclaredAccessFlags() & ACC_PUBLIC) != 0;
+  }
+
+  public boolean isInterface() {
+    return (accessFlags & ACC_INTERFACE) != 0;
+  }
+
+  public boolean isAbstract() {
+    return (accessFlags & ACC_ABSTRACT) != 0;
+  }
+
+  public boolean isAnnotation() {
+    return (accessFlags & ACC_ANNOTATION) != 0;
+  }
+
+  public boolean isEnum() {
+    return (accessFlags & ACC_ENUM) != 0;
+  }
+
+  public boolean isSynthetic() {
+    return (accessFlags & ACC_SYNTHETIC) != 0;
+  }
+
+  /** @return true for module-info and package-info */
+  public boolean isDescriptor() {
+    return (accessFlags & ACC_MODULE) != 0 || name.endsWith("package-info");
+  }
+
+  /** @return true if this is a nested (i.e., member, local, or anonymous) class */
+  public boolean isNested() {
+    return innerAccessFlags >= 0;
+  }
+
+  /** @return true for a nested class declared as a member of another class */
+  public boolean isMemberClass() {
+    return isNested() && memberClass;
+  }
+
+  /** @return true for inner classes that need an instance of their outer class */
+  public boolean isInner() {
+    return isNested() && (innerAccessFlags & ACC_STATIC) == 0;
+  }
+
+  public boolean isAnonymous() {
+    return isNested() && anonymous;
+  }
+
+  /** @return true for classes declared inside a method body, anonymous or not */
+  public boolean isLocal() {
+    return isNested() && !memberClass;
+  }
+
+  public List<Member> getConstructors() {
+    return methods.stream()
+        .filter(Member::isConstructor)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  public List<Member> getPublicConstructors() {
+    return methods.stream()
+        .filter(Member::isConstructor)
+        .filter(Member::isPublic)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  public Optional<Member> getStaticInitializer() {
+    return methods.stream().filter(m -> "<clinit>".equals(m.getName())).findFirst();
+  }
+
+  @Override public String toString() {
+    return name + methods.stream().map(Member::toString)
+        .collect(Collectors.joining(", ", "{", "}"));
+  }
+
+  /** A field or a method. */
+  public static class Member {
+    private final ConstantPool pool;
+    private final int accessFlags;
+    private final int nameIndex;
+    private final int descriptorIndex;
+    private final int codeOffset;
+    private final int codeLength;
+
+    Member(ConstantPool pool, int accessFlags, int nameIndex, int descriptorIndex,
+        int codeOffset, int codeLength) {
+      this.pool = pool;
+      this.accessFlags = accessFlags;
+      this.nameIndex = nameIndex;
+      this.descriptorIndex = descriptorIndex;
+      this.codeOffset = codeOffset;
+      this.codeLength = codeLength;
+    }
+
+    public int getAccessFlags() {
+      return accessFlags;
+    }
+
+    public String getName() {
+      return pool.utf8(nameIndex);
+    }
+
+    public String getDescriptor() {
+      return pool.utf8(descriptorIndex);
+    }
+
+    public boolean isPublic() {
+      return (accessFlags & ACC_PUBLIC) != 0;
+    }
+
+    public boolean isStatic() {
+      return (accessFlags & ACC_STATIC) != 0;
+    }
+
+    public boolean isAbstract() {
+      return (accessFlags & ACC_ABSTRACT) != 0;
+    }
+
+    public boolean isSynthetic() {
+      return (accessFlags & ACC_SYNTHETIC) != 0;
+    }
+
+    public boolean isConstructor() {
+      return "<init>".equals(getName());
+    }
+
+    /** @return offset of this method's Code attribute body, or -1 if it has no code */
+    int getCodeOffset() {
+      return codeOffset;
+    }
+
+    int getCodeLength() {
+      return codeLength;
+    }
+
+    @Override public String toString() {
+      return getName() + getDescriptor();
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package randoop.maven.bytecode;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constant pool of a class file (JVMS §4.4). Entries are indexed from 1; UTF-8
+ * entries are only decoded when asked for.
+ */
+public class ConstantPool {
+
+  public static final int UTF8 = 1;
+  public static final int INTEGER = 3;
+  public static final int FLOAT = 4;
+  public static final int LONG = 5;
+  public static final int DOUBLE = 6;
+  public static final int CLASS = 7;
+  public static final int STRING = 8;
+  public static final int FIELD_REF = 9;
+  public static final int METHOD_REF = 10;
+  public static final int INTERFACE_METHOD_REF = 11;
+  public static final int NAME_AND_TYPE = 12;
+  public static final int METHOD_HANDLE = 15;
+  public static final int METHOD_TYPE = 16;
+  public static final int DYNAMIC = 17;
+  public static final int INVOKE_DYNAMIC = 18;
+  public static final int MODULE = 19;
+  public static final int PACKAGE = 20;
+
+  private final byte[] bytes;
+  private final byte[] tags;
+  // Offset of each entry's payload (i.e., right after its tag) in 'bytes'
+  private final int[] offsets;
+  private final String[] utf8Cache;
+  private final int end;
+
+  private ConstantPool(byte[] bytes, byte[] tags, int[] offsets, int end) {
+    this.bytes = bytes;
+    this.tags = tags;
+    this.offsets = offsets;
+    this.utf8Cache = new String[tags.length];
+    this.end = end;
+  }
+
+  /**
+   * Indexes the constant pool starting at {@code offset} (i.e., at constant_pool_count).
+   *
+   * @throws IOException if an unknown constant tag is found
+   */
+  static ConstantPool read(byte[] bytes, int offset) throws IOException {
+    final int count = u2(bytes, offset);
+    final byte[] tags = new byte[count];
+    final int[] offsets = new int[count];
+
+    int cursor = offset + 2;
+    for (int i = 1; i < count; i++) {
+      final int tag = bytes[cursor] & 0xFF;
+      tags[i] = (byte) tag;
+      offsets[i] = cursor + 1;
+      switch (tag) {
+        case UTF8:
+          cursor += 3 + u2(bytes, cursor + 1);
+          break;
+        case INTEGER:
+        case FLOAT:
+        case FIELD_REF:
+        case METHOD_REF:
+        case INTERFACE_METHOD_REF:
+        case NAME_AND_TYPE:
+        case DYNAMIC:
+        case INVOKE_DYNAMIC:
+          cursor += 5;
+          break;
+        case LONG:
+        case DOUBLE:
+          cursor += 9;
+          i++; // 8-byte constants take up two entries
+          break;
+        case CLASS:
+        case STRING:
+        case METHOD_TYPE:
+        case MODULE:
+        case PACKAGE:
+          cursor += 3;
+          break;
+        case METHOD_HANDLE:
+          cursor += 4;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag + " at entry " + i);
+      }
+    }
+
+    return new ConstantPool(bytes, tags, offsets, cursor);
+  }
+
+  /** @return the whole class file this pool is part of */
+  byte[] bytes() {
+    return bytes;
+  }
+
+  /** @return the offset right after the constant pool */
+  int end() {
+    return end;
+  }
+
+  public int size() {
+    return tags.length;
+  }
+
+  public int tag(int index) {
+    return tags[index] & 0xFF;
+  }
+
+  public String utf8(int index) {
+    checkTag(index, UTF8);
+    String value = utf8Cache[index];
+    if (value == null) {
+      value = decodeUtf8(offsets[index]);
+      utf8Cache[index] = value;
+    }
+    return value;
+  }
+
+  /** @return the internal name (e.g., {@code java/lang/String}) of a CONSTANT_Class entry */
+  public String className(int index) {
+    checkTag(index, CLASS);
+    return utf8(u2(bytes, offsets[index]));
+  }
+
+  public String string(int index) {
+    checkTag(index, STRING);
+    return utf8(u2(bytes, offsets[index]));
+  }
+
+  public int intValue(int index) {
+    checkTag(index, INTEGER);
+    return u4(bytes, offsets[index]);
+  }
+
+  public float floatValue(int index) {
+    checkTag(index, FLOAT);
+    return Float.intBitsToFloat(u4(bytes, offsets[index]));
+  }
+
+  public long longValue(int index) {
+    checkTag(index, LONG);
+    return u8(bytes, offsets[index]);
+  }
+
+  public double doubleValue(int index) {
+    checkTag(index, DOUBLE);
+    return Double.longBitsToDouble(u8(bytes, offsets[index]));
+  }
+
+  /** @return the class index of a field, method or interface method reference */
+  public int refClass(int index) {
+    return u2(bytes, offsets[index]);
+  }
+
+  /** @return the name of a field, method or interface method reference */
+  public String refName(int index) {
+    final int nameAndType = u2(bytes, offsets[index] + 2);
+    return utf8(u2(bytes, offsets[nameAndType]));
+  }
+
+  /** @return the descriptor of a field, method or interface method reference */
+  public String refDescriptor(int index) {
+    final int nameAndType = u2(bytes, offsets[index] + 2);
+    return utf8(u2(bytes, offsets[nameAndType] + 2));
+  }
+
+  private void checkTag(int index, int expected) {
+    if (index <= 0 || index >= tags.length || tag(index) != expected) {
+      throw new IllegalArgumentException(
+          "Constant #" + index + " is not of expected tag " + expected);
+    }
+  }
+
+  private String decodeUtf8(int offset) {
+    final int length = u2(bytes, offset);
+    boolean ascii = true;
+    for (int i = offset + 2; i < offset + 2 + length && ascii; i++) {
+      ascii = bytes[i] > 0;
+    }
+
+    if (ascii) {
+      return new String(bytes, offset + 2, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // Modified UTF-8; see DataInput#readUTF
+    try {
+      return new DataInputStream(new ByteArrayInputStream(bytes, offset, length + 2)).readUTF();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static int u2(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+  }
+
+  static int u4(byte[] bytes, int offset) {
+    return ((bytes[offset] & 0xFF) << 24)
+        | ((bytes[offset + 1] & 0xFF) << 16)
+        | ((bytes[offset + 2] & 0xFF) << 8)
+        | (bytes[offset + 3] & 0xFF);
+  }
+
+  static long u8(byte[] bytes, int offset) {
+    return ((long) u4(bytes, offset) << 32) | (u4(bytes, offset + 4) & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,187 @@
+package randoop.maven.bytecode;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects the string, int, long, float and double literals in the constant pools of
+ * classes under test, for Randoop's {@code --literals-file}. Literals of a class are
+ * cached under the hash of its class file, so only classes that changed are read again.
+ * The cache may be shared by packages and modules; entries are touched whenever they are
+ * used, and deleted once unused for {@link #MAX_UNUSED_DAYS}.
+ * <p>
+ * Small ints (i.e., those fitting {@code sipush}) are not in the constant pool, and so
+ * are not collected; Randoop's default literals cover the most common ones.
+ */
+public class LiteralHarvester {
+
+  /** Longer strings (e.g., messages) are not worth a place among a class's literals. */
+  static final int MAX_STRING_LENGTH = 200;
+  static final int MAX_UNUSED_DAYS = 30;
+
+  private final Path cacheDir;
+
+  /** @param cacheDir where literals of each class file are kept, by hash */
+  public LiteralHarvester(Path cacheDir) {
+    this.cacheDir = Preconditions.checkNotNull(cacheDir);
+  }
+
+  /**
+   * Reads, in parallel, the literals of {@code classes} and ranks them, most frequent in
+   * the package first. Cache entries unused for {@link #MAX_UNUSED_DAYS} are deleted.
+   *
+   * @param maxPerClass literals kept for each class
+   * @return class name to its literals, in Randoop's {@code type:value} format
+   */
+  public Map<String, List<String>> harvest(List<ClassFile> classes, int maxPerClass)
+      throws IOException {
+    Preconditions.checkArgument(maxPerClass > 0);
+
+    final Map<String, List<String>> literals = new ConcurrentHashMap<>();
+    try {
+      classes.parallelStream().forEach(c -> {
+        final String hash = Hashing.sha256()
+            .hashBytes(c.getConstantPool().bytes()).toString();
+        literals.put(c.getName(), cached(hash, c));
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    evictUnused();
+
+    // Frequency of a literal is the number of classes whose constant pool has it
+    final Map<String, Integer> frequencies = new ConcurrentHashMap<>();
+    literals.values().forEach(l -> l.forEach(v -> frequencies.merge(v, 1, Integer::sum)));
+
+    final Map<String, List<String>> results = new LinkedHashMap<>();
+    for (ClassFile each : classes) {
+      final List<String> ranked = literals.get(each.getName()).stream()
+          .sorted(Comparator.comparing(frequencies::get).reversed())
+          .limit(maxPerClass)
+          .collect(ImmutableList.toImmutableList());
+      if (!ranked.isEmpty()) {
+        results.put(each.getName(), ranked);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @param literals class name to its literals
+   * @return lines of a Randoop literals file giving each class its own literals
+   */
+  public static List<String> toLiteralsFile(Map<String, List<String>> literals) {
+    final List<String> lines = new ArrayList<>();
+    literals.forEach((className, values) -> {
+      lines.add("START CLASSLITERALS");
+      lines.add("CLASSNAME");
+      lines.add(className);
+      lines.add("LITERALS");
+      lines.addAll(values);
+      lines.add("END CLASSLITERALS");
+    });
+    return lines;
+  }
+
+  /** @return literals of {@code classFile}, in constant pool order, without duplicates */
+  public static List<String> literals(ClassFile classFile) {
+    final ConstantPool pool = classFile.getConstantPool();
+    final Set<String> results = new LinkedHashSet<>();
+    for (int i = 1; i < pool.size(); i++) {
+      switch (pool.tag(i)) {
+        case ConstantPool.STRING: {
+          final String value = pool.string(i);
+          if (value.length() <= MAX_STRING_LENGTH && isPrintable(value)) {
+            results.add("java.lang.String:\"" + escape(value) + "\"");
+          }
+          break;
+        }
+        case ConstantPool.INTEGER:
+          results.add("int:" + pool.intValue(i));
+          break;
+        case ConstantPool.LONG:
+          results.add("long:" + pool.longValue(i));
+          break;
+        case ConstantPool.FLOAT:
+          if (Float.isFinite(pool.floatValue(i))) results.add("float:" + pool.floatValue(i));
+          break;
+        case ConstantPool.DOUBLE:
+          if (Double.isFinite(pool.doubleValue(i))) results.add("double:" + pool.doubleValue(i));
+          break;
+        default:
+          break;
+      }
+    }
+    return ImmutableList.copyOf(results);
+  }
+
+  private List<String> cached(String hash, ClassFile classFile) {
+    final Path file = cacheDir.resolve(hash + ".txt");
+    try {
+      if (Files.isRegularFile(file)) {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+      }
+
+      final List<String> results = literals(classFile);
+      Files.createDirectories(cacheDir);
+      final Path tmp = Files.createTempFile(cacheDir, hash, ".tmp");
+      Files.write(tmp, results, StandardCharsets.UTF_8);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      return results;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Deletes entries (and leftover temporary files) unused for {@link #MAX_UNUSED_DAYS}. */
+  void evictUnused() throws IOException {
+    if (!Files.isDirectory(cacheDir)) return;
+
+    final long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+    final List<Path> stale = new ArrayList<>();
+    try (Stream<Path> files = Files.list(cacheDir)) {
+      for (Path each : files.collect(Collectors.toList())) {
+        if (Files.getLastModifiedTime(each).toMillis() < oldest) {
+          stale.add(each);
+        }
+      }
+    }
+    for (Path each : stale) {
+      Files.deleteIfExists(each);
+    }
+  }
+
+  private static boolean isPrintable(String value) {
+    return value.chars().allMatch(c -> (c >= 0x20 && c < 0x7F)
+        || c == '\n' || c == '\r' || c == '\t');
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\")
+        .replace("\"", "\\\"")
+        .replace("\n", "\\n")
+        .replace("\r", "\\r")
+        .replace("\t", "\\t");
+  }
+}
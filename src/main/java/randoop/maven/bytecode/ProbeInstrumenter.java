@@ -0,0 +1,416 @@
+package randoop.maven.bytecode;
+
+import static randoop.maven.bytecode.ConstantPool.u2;
+import static randoop.maven.bytecode.ConstantPool.u4;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds a method coverage probe to the start of each method of a class file: the method
+ * sets its own entry of a shared {@code boolean[]} when it runs. Nothing else in the
+ * method changes; its code is only shifted by the size of the probe, so branch offsets
+ * stay valid and only tables of absolute code offsets (exceptions, line numbers, local
+ * variables, stack map frames) are adjusted. Type annotations on code are dropped.
+ * <p>
+ * The array lives in a class of its own, {@link #PROBES_CLASS}, which must be defined
+ * (see {@link #probesClass()}) by the class loader of the instrumented classes, and its
+ * {@link #PROBES_FIELD} set, before any of them runs.
+ */
+public class ProbeInstrumenter {
+
+  /** Binary name of the class holding the probes. */
+  public static final String PROBES_CLASS = "randoop.coverage.Probes";
+  /** Name of its {@code public static boolean[]} field. */
+  public static final String PROBES_FIELD = "HITS";
+
+  private static final String PROBES_INTERNAL = PROBES_CLASS.replace('.', '/');
+  private static final int ACC_BRIDGE = 0x0040;
+  // getstatic, sipush or ldc_w, iconst_1, bastore: a multiple of 4, so switch padding holds
+  private static final int PROBE_LENGTH = 8;
+  private static final int MAX_CODE_LENGTH = 65535;
+
+  private ProbeInstrumenter(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /** @return the class file of {@link #PROBES_CLASS}: one public static field, no code */
+  public static byte[] probesClass() {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(52);
+      out.writeShort(7);
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF(PROBES_INTERNAL);
+      out.writeByte(ConstantPool.CLASS);
+      out.writeShort(1);
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF("java/lang/Object");
+      out.writeByte(ConstantPool.CLASS);
+      out.writeShort(3);
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF(PROBES_FIELD);
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF("[Z");
+      out.writeShort(0x0021); // public super
+      out.writeShort(2);
+      out.writeShort(4);
+      out.writeShort(0);
+      out.writeShort(1);
+      out.writeShort(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC);
+      out.writeShort(5);
+      out.writeShort(6);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(0);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param bytes      a class file
+   * @param firstProbe probe index of the first method instrumented
+   * @return the instrumented class file, and the methods given a probe, in probe order
+   * @throws IOException if {@code bytes} is not a class file this can instrument
+   */
+  public static Instrumented instrument(byte[] bytes, int firstProbe) throws IOException {
+    try {
+      return new Rewriter(bytes, firstProbe).rewrite();
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Malformed class file", e);
+    }
+  }
+
+  public static class Instrumented {
+    private final byte[] bytes;
+    private final List<String> methods;
+
+    Instrumented(byte[] bytes, List<String> methods) {
+      this.bytes = bytes;
+      this.methods = ImmutableList.copyOf(methods);
+    }
+
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /** @return name plus descriptor of each probed method; e.g., {@code size()I} */
+    public List<String> getMethods() {
+      return methods;
+    }
+  }
+
+  private static class Rewriter {
+    private final byte[] in;
+    private final int firstProbe;
+    private final ConstantPool pool;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    private final List<String> methods = new ArrayList<>();
+    private int fieldRef;
+    private int nextInteger;
+
+    Rewriter(byte[] in, int firstProbe) throws IOException {
+      if (in.length < 10 || u4(in, 0) != 0xCAFEBABE) {
+        throw new IOException("Not a class file");
+      }
+      this.in = in;
+      this.firstProbe = firstProbe;
+      this.pool = ConstantPool.read(in, 8);
+    }
+
+    Instrumented rewrite() throws IOException {
+      // Which methods get a probe, to size the constant pool first
+      final int fieldsStart = pool.end() + 8 + 2 * u2(in, pool.end() + 6);
+      final int methodsStart = skipMembers(fieldsStart);
+      int cursor = methodsStart + 2;
+      final List<Boolean> probed = new ArrayList<>();
+      for (int i = 0; i < u2(in, methodsStart); i++) {
+        final int code = codeAttribute(cursor);
+        final boolean probe = code >= 0 && isProbed(cursor)
+            && u4(in, code + 10) + PROBE_LENGTH <= MAX_CODE_LENGTH;
+        probed.add(probe);
+        if (probe) {
+          methods.add(pool.utf8(u2(in, cursor + 2)) + pool.utf8(u2(in, cursor + 4)));
+        }
+        cursor = skipMember(cursor);
+      }
+
+      final int probes = methods.size();
+      final int lastProbe = firstProbe + probes - 1;
+      final int integers = Math.max(0, lastProbe - Math.max(firstProbe, Short.MAX_VALUE + 1) + 1);
+      final int added = 6 + integers;
+      if (pool.size() + added > 0xFFFF) {
+        throw new IOException("Constant pool too large to instrument");
+      }
+
+      out.write(in, 0, 8);
+      out.writeShort(pool.size() + added);
+      out.write(in, 10, pool.end() - 10);
+      final int first = pool.size();
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF(PROBES_INTERNAL);
+      out.writeByte(ConstantPool.CLASS);
+      out.writeShort(first);
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF(PROBES_FIELD);
+      out.writeByte(ConstantPool.UTF8);
+      out.writeUTF("[Z");
+      out.writeByte(ConstantPool.NAME_AND_TYPE);
+      out.writeShort(first + 2);
+      out.writeShort(first + 3);
+      out.writeByte(ConstantPool.FIELD_REF);
+      out.writeShort(first + 1);
+      out.writeShort(first + 4);
+      fieldRef = first + 5;
+      nextInteger = first + 6;
+      for (int i = 0; i < integers; i++) {
+        out.writeByte(ConstantPool.INTEGER);
+        out.writeInt(lastProbe - integers + 1 + i);
+      }
+
+      // Header and fields as they are
+      out.write(in, pool.end(), methodsStart - pool.end());
+
+      out.writeShort(u2(in, methodsStart));
+      cursor = methodsStart + 2;
+      int probe = firstProbe;
+      for (boolean each : probed) {
+        final int end = skipMember(cursor);
+        if (!each) {
+          out.write(in, cursor, end - cursor);
+        } else {
+          writeMethod(cursor, probe++);
+        }
+        cursor = end;
+      }
+
+      // Class attributes as they are
+      out.write(in, cursor, in.length - cursor);
+      out.flush();
+      return new Instrumented(buffer.toByteArray(), methods);
+    }
+
+    private boolean isProbed(int method) {
+      final int access = u2(in, method);
+      return (access & (ClassFile.ACC_SYNTHETIC | ACC_BRIDGE)) == 0
+          && !"<clinit>".equals(pool.utf8(u2(in, method + 2)));
+    }
+
+    private int skipMembers(int cursor) {
+      final int count = u2(in, cursor);
+      cursor += 2;
+      for (int i = 0; i < count; i++) {
+        cursor = skipMember(cursor);
+      }
+      return cursor;
+    }
+
+    private int skipMember(int cursor) {
+      final int attributes = u2(in, cursor + 6);
+      cursor += 8;
+      for (int i = 0; i < attributes; i++) {
+        cursor += 6 + u4(in, cursor + 2);
+      }
+      return cursor;
+    }
+
+    /** @return offset of the method's Code attribute (at its name), or -1 */
+    private int codeAttribute(int method) {
+      final int attributes = u2(in, method + 6);
+      int cursor = method + 8;
+      for (int i = 0; i < attributes; i++) {
+        if ("Code".equals(pool.utf8(u2(in, cursor)))) {
+          return cursor;
+        }
+        cursor += 6 + u4(in, cursor + 2);
+      }
+      return -1;
+    }
+
+    private void writeMethod(int method, int probe) throws IOException {
+      out.write(in, method, 8);
+      final int attributes = u2(in, method + 6);
+      int cursor = method + 8;
+      for (int i = 0; i < attributes; i++) {
+        final int end = cursor + 6 + u4(in, cursor + 2);
+        if ("Code".equals(pool.utf8(u2(in, cursor)))) {
+          final byte[] code = code(cursor + 6, probe);
+          out.write(in, cursor, 2);
+          out.writeInt(code.length);
+          out.write(code);
+        } else {
+          out.write(in, cursor, end - cursor);
+        }
+        cursor = end;
+      }
+    }
+
+    /** @return the body of the Code attribute at {@code body}, with the probe */
+    private byte[] code(int body, int probe) throws IOException {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final DataOutputStream code = new DataOutputStream(bytes);
+      final int codeLength = u4(in, body + 4);
+      code.writeShort(Math.max(3, u2(in, body)));
+      code.writeShort(u2(in, body + 2));
+      code.writeInt(codeLength + PROBE_LENGTH);
+
+      code.writeByte(0xB2); // getstatic
+      code.writeShort(fieldRef);
+      if (probe <= Short.MAX_VALUE) {
+        code.writeByte(0x11); // sipush
+        code.writeShort(probe);
+      } else {
+        code.writeByte(0x13); // ldc_w
+        code.writeShort(nextInteger++);
+      }
+      code.writeByte(0x04); // iconst_1
+      code.writeByte(0x54); // bastore
+      code.write(in, body + 8, codeLength);
+
+      int cursor = body + 8 + codeLength;
+      final int handlers = u2(in, cursor);
+      code.writeShort(handlers);
+      cursor += 2;
+      for (int i = 0; i < handlers; i++, cursor += 8) {
+        code.writeShort(u2(in, cursor) + PROBE_LENGTH);
+        code.writeShort(u2(in, cursor + 2) + PROBE_LENGTH);
+        code.writeShort(u2(in, cursor + 4) + PROBE_LENGTH);
+        code.writeShort(u2(in, cursor + 6));
+      }
+
+      final int attributes = u2(in, cursor);
+      cursor += 2;
+      final ByteArrayOutputStream kept = new ByteArrayOutputStream();
+      final DataOutputStream attrs = new DataOutputStream(kept);
+      int keptCount = 0;
+      for (int i = 0; i < attributes; i++) {
+        final String name = pool.utf8(u2(in, cursor));
+        final int length = u4(in, cursor + 2);
+        final int start = cursor + 6;
+        cursor = start + length;
+        if (name.endsWith("TypeAnnotations")) continue;
+
+        keptCount++;
+        attrs.write(in, start - 6, 2);
+        final byte[] attribute;
+        switch (name) {
+          case "LineNumberTable":
+            attribute = shiftEntries(start, 4);
+            break;
+          case "LocalVariableTable":
+          case "LocalVariableTypeTable":
+            attribute = shiftEntries(start, 10);
+            break;
+          case "StackMapTable":
+            attribute = stackMapTable(start);
+            break;
+          default:
+            attribute = new byte[length];
+            System.arraycopy(in, start, attribute, 0, length);
+        }
+        attrs.writeInt(attribute.length);
+        attrs.write(attribute);
+      }
+      code.writeShort(keptCount);
+      attrs.flush();
+      code.write(kept.toByteArray());
+      code.flush();
+      return bytes.toByteArray();
+    }
+
+    /** A table of entries starting with a start_pc; e.g., LineNumberTable. */
+    private byte[] shiftEntries(int start, int entrySize) {
+      final int count = u2(in, start);
+      final byte[] table = new byte[2 + count * entrySize];
+      System.arraycopy(in, start, table, 0, table.length);
+      for (int i = 0; i < count; i++) {
+        final int entry = 2 + i * entrySize;
+        final int pc = u2(table, entry) + PROBE_LENGTH;
+        table[entry] = (byte) (pc >> 8);
+        table[entry + 1] = (byte) pc;
+      }
+      return table;
+    }
+
+    /**
+     * Frames are at offsets relative to the previous frame, so only the first one moves;
+     * so do the offsets of {@code new} instructions in Uninitialized types (JVMS §4.7.4).
+     */
+    private byte[] stackMapTable(int start) throws IOException {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final DataOutputStream table = new DataOutputStream(bytes);
+      final int frames = u2(in, start);
+      table.writeShort(frames);
+      int cursor = start + 2;
+      for (int i = 0; i < frames; i++) {
+        final int shift = i == 0 ? PROBE_LENGTH : 0;
+        final int type = in[cursor++] & 0xFF;
+        if (type <= 63) {
+          final int delta = type + shift;
+          if (delta <= 63) {
+            table.writeByte(delta);
+          } else {
+            table.writeByte(251); // same_frame_extended
+            table.writeShort(delta);
+          }
+        } else if (type <= 127) {
+          final int delta = type - 64 + shift;
+          if (delta <= 63) {
+            table.writeByte(64 + delta);
+          } else {
+            table.writeByte(247); // same_locals_1_stack_item_frame_extended
+            table.writeShort(delta);
+          }
+          cursor = copyType(cursor, table);
+        } else if (type >= 247) {
+          table.writeByte(type);
+          table.writeShort(u2(in, cursor) + shift);
+          cursor += 2;
+          if (type == 247) {
+            cursor = copyType(cursor, table);
+          } else if (type >= 252 && type <= 254) {
+            for (int t = 0; t < type - 251; t++) {
+              cursor = copyType(cursor, table);
+            }
+          } else if (type == 255) {
+            for (int section = 0; section < 2; section++) {
+              final int types = u2(in, cursor);
+              table.writeShort(types);
+              cursor += 2;
+              for (int t = 0; t < types; t++) {
+                cursor = copyType(cursor, table);
+              }
+            }
+          }
+        } else {
+          throw new IOException("Unknown stack map frame type " + type);
+        }
+      }
+      table.flush();
+      return bytes.toByteArray();
+    }
+
+    private int copyType(int cursor, DataOutputStream table) throws IOException {
+      final int tag = in[cursor] & 0xFF;
+      table.writeByte(tag);
+      if (tag == 7) { // Object
+        table.writeShort(u2(in, cursor + 1));
+        return cursor + 3;
+      }
+      if (tag == 8) { // Uninitialized
+        table.writeShort(u2(in, cursor + 1) + PROBE_LENGTH);
+        return cursor + 3;
+      }
+      return cursor + 1;
+    }
+  }
+}
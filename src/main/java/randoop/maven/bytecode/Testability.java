@@ -0,0 +1,380 @@
+package randoop.maven.bytecode;
+
+import static randoop.maven.bytecode.ConstantPool.u2;
+import static randoop.maven.bytecode.ConstantPool.u4;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Tells, from class files alone, which classes Randoop can do something with. Generated
+ * tests live in the package under test, so Randoop can call any member that is not
+ * private. A class is hopeless if Randoop cannot get an instance of it (no usable
+ * constructor, and no method of the package returns it) and it has no static method
+ * either; if it is private, synthetic, anonymous or local; or if its static initializer
+ * reads or writes files, opens connections, or starts processes. The others are ranked by the number of methods
+ * and constructors Randoop can call.
+ * <p>
+ * Include and exclude patterns match simple or binary class names; {@code *} matches any
+ * characters, {@code ?} one.
+ */
+public class Testability {
+
+  // Calls in a static initializer that make a class unsafe to load in tests; as owner.name
+  private static final Set<String> SIDE_EFFECT_METHODS = ImmutableSet.of(
+      "java/io/FileInputStream.<init>", "java/io/FileOutputStream.<init>",
+      "java/io/FileReader.<init>", "java/io/FileWriter.<init>",
+      "java/io/RandomAccessFile.<init>",
+      "java/nio/file/Files.newInputStream", "java/nio/file/Files.newOutputStream",
+      "java/nio/file/Files.newBufferedReader", "java/nio/file/Files.newBufferedWriter",
+      "java/nio/file/Files.newByteChannel", "java/nio/file/Files.readAllBytes",
+      "java/nio/file/Files.readAllLines", "java/nio/file/Files.readString",
+      "java/nio/file/Files.lines", "java/nio/file/Files.write",
+      "java/nio/file/Files.writeString", "java/nio/file/Files.copy",
+      "java/nio/file/Files.move", "java/nio/file/Files.delete",
+      "java/nio/file/Files.deleteIfExists", "java/nio/file/Files.createFile",
+      "java/nio/file/Files.createDirectory", "java/nio/file/Files.createDirectories",
+      "java/nio/file/Files.createTempFile", "java/nio/file/Files.createTempDirectory",
+      "java/net/Socket.<init>", "java/net/ServerSocket.<init>",
+      "java/net/DatagramSocket.<init>", "java/net/URL.openConnection",
+      "java/net/URL.openStream", "java/lang/ProcessBuilder.start", "java/lang/Runtime.exec",
+      "java/lang/System.exit", "java/lang/System.load", "java/lang/System.loadLibrary",
+      "java/lang/System.console", "java/lang/Thread.start");
+
+  private Testability(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * @param classes  the classes of a package
+   * @param includes if not empty, only classes matching one of these are kept
+   * @param excludes classes matching one of these are dropped
+   * @param prune    whether hopeless classes are dropped
+   * @return a verdict for every class, kept ones first, by decreasing score
+   */
+  public static List<Verdict> assess(List<ClassFile> classes, List<String> includes,
+      List<String> excludes, boolean prune) {
+    Preconditions.checkNotNull(includes);
+    Preconditions.checkNotNull(excludes);
+
+    // Types some callable method in the package returns
+    final Set<String> returned = new HashSet<>();
+    for (ClassFile each : classes) {
+      if (!isAccessible(each)) continue;
+      each.getMethods().stream()
+          .filter(Testability::isCallable)
+          .map(m -> returnType(m.getDescriptor()))
+          .forEach(returned::add);
+    }
+
+    final Map<String, Pattern> includePatterns = compile(includes);
+    final Map<String, Pattern> excludePatterns = compile(excludes);
+    final List<Verdict> verdicts = new ArrayList<>();
+    for (ClassFile each : classes) {
+      final int score = score(each);
+      final Optional<String> pattern = firstMatch(each, excludePatterns);
+      if (pattern.isPresent()) {
+        verdicts.add(new Verdict(each.getName(), false, false, score,
+            "excluded by " + pattern.get()));
+      } else if (!includes.isEmpty() && !firstMatch(each, includePatterns).isPresent()) {
+        verdicts.add(new Verdict(each.getName(), false, false, score, "not included"));
+      } else {
+        final Optional<String> hopeless = prune
+            ? whyHopeless(each, returned)
+            : Optional.empty();
+        verdicts.add(new Verdict(each.getName(), !hopeless.isPresent(), hopeless.isPresent(),
+            score, hopeless.orElse("")));
+      }
+    }
+
+    return verdicts.stream()
+        .sorted(Comparator.comparing(Verdict::isKept).reversed()
+            .thenComparing(Comparator.comparingInt(Verdict::getScore).reversed())
+            .thenComparing(Verdict::getClassName))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** Writes {@code verdicts} as a JSON report. */
+  public static void writeReport(List<Verdict> verdicts, Path file) throws IOException {
+    final StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"kept\": ").append(verdicts.stream().filter(Verdict::isKept).count())
+        .append(",\n");
+    json.append("  \"excluded\": ").append(verdicts.stream().filter(v -> !v.isKept()).count())
+        .append(",\n");
+    json.append("  \"classes\": [");
+    json.append(verdicts.stream()
+        .map(v -> String.format(Locale.ROOT,
+            "\n    {\"class\": \"%s\", \"kept\": %b, \"score\": %d, \"reason\": \"%s\"}",
+            v.getClassName(), v.isKept(), v.getScore(), v.getReason().replace("\"", "\\\"")))
+        .collect(Collectors.joining(",")));
+    json.append(verdicts.isEmpty() ? "]\n" : "\n  ]\n");
+    json.append("}\n");
+
+    Files.createDirectories(file.getParent());
+    Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** @return number of methods and constructors Randoop can call */
+  static int score(ClassFile classFile) {
+    return (int) classFile.getMethods().stream()
+        .filter(Testability::isCallable)
+        .count();
+  }
+
+  private static boolean isAccessible(ClassFile classFile) {
+    return (classFile.getDeclaredAccessFlags() & ClassFile.ACC_PRIVATE) == 0;
+  }
+
+  private static boolean isCallable(ClassFile.Member method) {
+    return (method.getAccessFlags() & ClassFile.ACC_PRIVATE) == 0
+        && !method.isSynthetic()
+        && !"<clinit>".equals(method.getName());
+  }
+
+  static Optional<String> whyHopeless(ClassFile classFile, Set<String> returned) {
+    if (classFile.isDescriptor()) return Optional.of("module or package descriptor");
+    if (classFile.isSynthetic()) return Optional.of("synthetic class");
+    if (classFile.isAnonymous()) return Optional.of("anonymous class");
+    if (classFile.isLocal()) return Optional.of("local class");
+    if (classFile.isAnnotation()) return Optional.of("annotation type");
+    if (!isAccessible(classFile)) return Optional.of("private class");
+
+    final boolean staticMethods = classFile.getMethods().stream()
+        .anyMatch(m -> isCallable(m) && m.isStatic());
+    final boolean constructible = !classFile.isInterface() && !classFile.isAbstract()
+        && !classFile.isInner()
+        && classFile.getConstructors().stream().anyMatch(Testability::isCallable);
+    final boolean factory = returned.contains(classFile.getName());
+    if (!staticMethods && !constructible && !factory) {
+      final String kind = classFile.isInterface() ? "interface"
+          : classFile.isAbstract() ? "abstract class"
+          : classFile.isInner() ? "inner class"
+          : "class with only private constructors";
+      return Optional.of(kind + " that no method returns, and without static methods");
+    }
+
+    final boolean instanceMethods = classFile.getMethods().stream()
+        .anyMatch(m -> isCallable(m) && !m.isStatic() && !m.isConstructor());
+    if (!staticMethods && !instanceMethods) {
+      return Optional.of("no methods to call");
+    }
+
+    return sideEffectInStaticInitializer(classFile)
+        .map(c -> "static initializer uses " + c);
+  }
+
+  /**
+   * Scans the static initializer, and the static methods of the class it calls, for calls
+   * to {@link #SIDE_EFFECT_METHODS}.
+   *
+   * @return the first one found; e.g., {@code java.io.FileInputStream.<init>}
+   */
+  static Optional<String> sideEffectInStaticInitializer(ClassFile classFile) {
+    final Optional<ClassFile.Member> clinit = classFile.getStaticInitializer();
+    if (!clinit.isPresent()) return Optional.empty();
+
+    final ConstantPool pool = classFile.getConstantPool();
+    final String self = classFile.getName().replace('.', '/');
+    final Deque<ClassFile.Member> pending = new ArrayDeque<>();
+    final Set<String> seen = new HashSet<>();
+    pending.add(clinit.get());
+    seen.add(clinit.get().toString());
+    while (!pending.isEmpty()) {
+      final ClassFile.Member method = pending.poll();
+      for (int ref : references(method, pool)) {
+        if (pool.tag(ref) == ConstantPool.CLASS) continue;
+
+        final String owner = pool.className(pool.refClass(ref));
+        final String name = pool.refName(ref);
+        if (SIDE_EFFECT_METHODS.contains(owner + "." + name)) {
+          return Optional.of(owner.replace('/', '.') + "." + name);
+        }
+        if (owner.equals(self)) {
+          final String descriptor = pool.refDescriptor(ref);
+          classFile.getMethods().stream()
+              .filter(m -> m.isStatic() && m.getName().equals(name)
+                  && m.getDescriptor().equals(descriptor))
+              .filter(m -> seen.add(m.toString()))
+              .forEach(pending::add);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @return constant pool indexes of the classes (new) and members (field accesses and
+   * method calls, but not invokedynamic) the code of {@code method} refers to
+   */
+  static List<Integer> references(ClassFile.Member method, ConstantPool pool) {
+    if (method.getCodeOffset() < 0) return ImmutableList.of();
+
+    final byte[] bytes = pool.bytes();
+    final int start = method.getCodeOffset() + 8;
+    final int end = start + u4(bytes, method.getCodeOffset() + 4);
+    final List<Integer> results = new ArrayList<>();
+    int pc = start;
+    while (pc < end) {
+      final int opcode = bytes[pc] & 0xFF;
+      if ((opcode >= 0xB2 && opcode <= 0xB9) || opcode == 0xBB) {
+        results.add(u2(bytes, pc + 1));
+      }
+      pc += instructionLength(bytes, pc, start);
+    }
+    return results;
+  }
+
+  /** @return length of the instruction at {@code pc} (JVMS §6.5) */
+  static int instructionLength(byte[] bytes, int pc, int codeStart) {
+    final int opcode = bytes[pc] & 0xFF;
+    switch (opcode) {
+      case 0xAA: { // tableswitch
+        final int operands = pc + 1 + (3 - (pc - codeStart) % 4);
+        final int low = u4(bytes, operands + 4);
+        final int high = u4(bytes, operands + 8);
+        return operands - pc + 12 + (high - low + 1) * 4;
+      }
+      case 0xAB: { // lookupswitch
+        final int operands = pc + 1 + (3 - (pc - codeStart) % 4);
+        return operands - pc + 8 + u4(bytes, operands + 4) * 8;
+      }
+      case 0xC4: // wide
+        return (bytes[pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+      default:
+        return LENGTHS[opcode];
+    }
+  }
+
+  private static final int[] LENGTHS = new int[256];
+
+  static {
+    java.util.Arrays.fill(LENGTHS, 1);
+    LENGTHS[0x10] = 2; // bipush
+    LENGTHS[0x11] = 3; // sipush
+    LENGTHS[0x12] = 2; // ldc
+    LENGTHS[0x13] = 3;
+    LENGTHS[0x14] = 3;
+    for (int i = 0x15; i <= 0x19; i++) LENGTHS[i] = 2; // loads
+    for (int i = 0x36; i <= 0x3A; i++) LENGTHS[i] = 2; // stores
+    LENGTHS[0x84] = 3; // iinc
+    for (int i = 0x99; i <= 0xA8; i++) LENGTHS[i] = 3; // branches, jsr
+    LENGTHS[0xA9] = 2; // ret
+    for (int i = 0xB2; i <= 0xB8; i++) LENGTHS[i] = 3; // fields, invokes
+    LENGTHS[0xB9] = 5; // invokeinterface
+    LENGTHS[0xBA] = 5; // invokedynamic
+    LENGTHS[0xBB] = 3; // new
+    LENGTHS[0xBC] = 2; // newarray
+    LENGTHS[0xBD] = 3; // anewarray
+    LENGTHS[0xC0] = 3; // checkcast
+    LENGTHS[0xC1] = 3; // instanceof
+    LENGTHS[0xC5] = 4; // multianewarray
+    LENGTHS[0xC6] = 3; // ifnull
+    LENGTHS[0xC7] = 3;
+    LENGTHS[0xC8] = 5; // goto_w
+    LENGTHS[0xC9] = 5; // jsr_w
+  }
+
+  /** @return each glob, in order, to its regex */
+  private static Map<String, Pattern> compile(List<String> globs) {
+    final Map<String, Pattern> results = new LinkedHashMap<>();
+    globs.forEach(g -> results.computeIfAbsent(g, Testability::toRegex));
+    return results;
+  }
+
+  /** @return the first glob of {@code patterns} matching {@code classFile} */
+  private static Optional<String> firstMatch(ClassFile classFile,
+      Map<String, Pattern> patterns) {
+    return patterns.entrySet().stream()
+        .filter(p -> p.getValue().matcher(classFile.getName()).matches()
+            || p.getValue().matcher(classFile.getSimpleBinaryName()).matches())
+        .map(Map.Entry::getKey)
+        .findFirst();
+  }
+
+  static Pattern toRegex(String glob) {
+    final StringBuilder regex = new StringBuilder();
+    for (char each : glob.trim().toCharArray()) {
+      if (each == '*') {
+        regex.append(".*");
+      } else if (each == '?') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(each)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /** @return the binary name of a method's return type; e.g., {@code a.B}, or {@code V} */
+  private static String returnType(String descriptor) {
+    final String type = descriptor.substring(descriptor.indexOf(')') + 1);
+    return type.startsWith("L")
+        ? type.substring(1, type.length() - 1).replace('/', '.')
+        : type;
+  }
+
+  public static class Verdict {
+    private final String className;
+    private final boolean kept;
+    private final boolean pruned;
+    private final int score;
+    private final String reason;
+
+    Verdict(String className, boolean kept, boolean pruned, int score, String reason) {
+      this.className = className;
+      this.kept = kept;
+      this.pruned = pruned;
+      this.score = score;
+      this.reason = reason;
+    }
+
+    public String getClassName() {
+      return className;
+    }
+
+    public boolean isKept() {
+      return kept;
+    }
+
+    /** @return true if the class was left out as hopeless, rather than by a pattern */
+    public boolean isPruned() {
+      return pruned;
+    }
+
+    /**
+     * @return non-private, non-synthetic methods and constructors; i.e., those Randoop can
+     * call from tests in the class's own package
+     */
+    public int getScore() {
+      return score;
+    }
+
+    /** @return why the class was excluded; empty if it was kept */
+    public String getReason() {
+      return reason;
+    }
+
+    @Override public String toString() {
+      return className + (kept ? "" : " (" + reason + ")");
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package randoop.maven.coverage;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import randoop.maven.bytecode.ProbeInstrumenter;
+
+/**
+ * Measures which methods of a package generated tests run. The package's class files are
+ * instrumented once, in memory (see {@link ProbeInstrumenter}); each {@link #run} then
+ * loads them, the tests, and JUnit in a class loader of its own, so the project's classes
+ * on disk are never touched.
+ */
+public class CoverageRunner {
+
+  private static final Map<Character, String> PRIMITIVES =
+      ImmutableMap.<Character, String>builder()
+      .put('B', "byte").put('C', "char").put('D', "double").put('F', "float")
+      .put('I', "int").put('J', "long").put('S', "short").put('Z', "boolean")
+      .build();
+
+  /** A test running longer than this is abandoned; the methods it reached still count. */
+  public static final long TEST_TIMEOUT_MILLIS = 10_000;
+
+  private final Map<String, byte[]> instrumented = new LinkedHashMap<>();
+  private final List<String> methods = new ArrayList<>();
+
+  /**
+   * @param classesDir  the project's class files
+   * @param packageName package whose classes (nested ones included, not sub-packages)
+   *                    are measured
+   */
+  public CoverageRunner(Path classesDir, String packageName) throws IOException {
+    final Path packageDir = classesDir.resolve(packageName.replace('.', '/'));
+    final List<Path> classFiles;
+    try (Stream<Path> files = Files.list(packageDir)) {
+      classFiles = files.filter(f -> f.getFileName().toString().endsWith(".class"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+
+    for (Path each : classFiles) {
+      final String simpleName = each.getFileName().toString().replaceFirst("\\.class$", "");
+      if ("module-info".equals(simpleName) || "package-info".equals(simpleName)) continue;
+
+      final String className = packageName + "." + simpleName;
+      try {
+        final ProbeInstrumenter.Instrumented result = ProbeInstrumenter.instrument(
+            Files.readAllBytes(each), methods.size());
+        instrumented.put(className, result.getBytes());
+        result.getMethods().forEach(m -> methods.add(className + "#" + m));
+      } catch (IOException e) {
+        // Measured as not covered; the class itself loads from disk
+      }
+    }
+  }
+
+  /**
+   * @param method a method as {@code class#name(descriptor)}
+   * @return its signature in Randoop's {@code --methodlist} format; e.g.,
+   * {@code a.B.m(int,java.lang.String[])}, or {@code a.B(int)} for a constructor
+   */
+  public static String toRandoopSignature(String method) {
+    final int hash = method.indexOf('#');
+    final int paren = method.indexOf('(', hash);
+    final String className = method.substring(0, hash);
+    final String name = method.substring(hash + 1, paren);
+    final String descriptor = method.substring(paren + 1, method.indexOf(')', paren));
+
+    final List<String> parameters = new ArrayList<>();
+    int dimensions = 0;
+    for (int i = 0; i < descriptor.length(); i++) {
+      final char each = descriptor.charAt(i);
+      final String type;
+      if (each == '[') {
+        dimensions++;
+        continue;
+      } else if (each == 'L') {
+        final int end = descriptor.indexOf(';', i);
+        type = descriptor.substring(i + 1, end).replace('/', '.');
+        i = end;
+      } else {
+        type = PRIMITIVES.get(each);
+      }
+      parameters.add(type + Strings.repeat("[]", dimensions));
+      dimensions = 0;
+    }
+
+    return ("<init>".equals(name) ? className : className + "." + name)
+        + "(" + String.join(",", parameters) + ")";
+  }
+
+  /** @return measured methods, as {@code class#name(descriptor)}, in the order of hits */
+  public List<String> getMethods() {
+    return ImmutableList.copyOf(methods);
+  }
+
+  /**
+   * Runs the tests of test classes with JUnit 4, one at a time, and reports the methods
+   * they reached. A test that does not end within {@link #TEST_TIMEOUT_MILLIS} is
+   * abandoned, and tests not started within {@code timeoutMillis} are skipped; methods
+   * reached so far still count.
+   *
+   * @param classpath   the compiled tests, the project's classes and dependencies, JUnit
+   * @param testClasses qualified names of the test classes
+   * @return one flag per method of {@link #getMethods()}
+   * @throws IOException if JUnit or the probes cannot be loaded
+   */
+  public boolean[] run(List<URL> classpath, List<String> testClasses, long timeoutMillis)
+      throws IOException, InterruptedException {
+    final boolean[] hits = new boolean[methods.size()];
+    if (testClasses.isEmpty()) return hits;
+
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    final CoverageClassLoader loader = new CoverageClassLoader(
+        classpath.toArray(new URL[0]), instrumented);
+    final Object core;
+    final Method requestMethod;
+    final Method runRequest;
+    final Class<? extends Annotation> test;
+    try {
+      loader.loadClass(ProbeInstrumenter.PROBES_CLASS)
+          .getField(ProbeInstrumenter.PROBES_FIELD)
+          .set(null, hits);
+      final Class<?> request = loader.loadClass("org.junit.runner.Request");
+      core = loader.loadClass("org.junit.runner.JUnitCore").getConstructor().newInstance();
+      requestMethod = request.getMethod("method", Class.class, String.class);
+      runRequest = core.getClass().getMethod("run", request);
+      test = loader.loadClass("org.junit.Test").asSubclass(Annotation.class);
+    } catch (ReflectiveOperationException e) {
+      loader.close();
+      throw new IOException("JUnit 4 is not on the test classpath", e);
+    }
+
+    boolean abandoned = false;
+    ExecutorService runner = newRunner(loader);
+    try {
+      for (String each : testClasses) {
+        final Class<?> testClass;
+        try {
+          testClass = loader.loadClass(each);
+        } catch (ClassNotFoundException | LinkageError e) {
+          continue; // Its tests reach nothing
+        }
+        // Randoop's tests run in name order
+        final List<String> tests = Arrays.stream(testClass.getMethods())
+            .filter(m -> m.isAnnotationPresent(test))
+            .map(Method::getName)
+            .sorted()
+            .collect(Collectors.toList());
+
+        for (String name : tests) {
+          final long millisLeft = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (millisLeft <= 0) return hits.clone();
+
+          final Future<?> outcome = runner.submit(() ->
+              runRequest.invoke(core, requestMethod.invoke(null, testClass, name)));
+          try {
+            outcome.get(Math.min(TEST_TIMEOUT_MILLIS, millisLeft), TimeUnit.MILLISECONDS);
+          } catch (TimeoutException e) {
+            // The test may never stop; later tests get a new thread
+            abandoned = true;
+            runner.shutdownNow();
+            runner = newRunner(loader);
+          } catch (ExecutionException e) {
+            // JUnit could not run the test; it reached what it reached
+          }
+        }
+      }
+    } finally {
+      runner.shutdownNow();
+      // Hung tests keep the loader busy; it is left to the garbage collector
+      if (!abandoned) {
+        loader.close();
+      }
+    }
+    return abandoned ? hits.clone() : hits;
+  }
+
+  private static ExecutorService newRunner(ClassLoader loader) {
+    return Executors.newSingleThreadExecutor(r -> {
+      final Thread thread = new Thread(r, "randoop-coverage");
+      thread.setDaemon(true);
+      thread.setContextClassLoader(loader);
+      return thread;
+    });
+  }
+
+  /** Defines the instrumented classes and the probes itself; the rest comes from the URLs. */
+  private static class CoverageClassLoader extends URLClassLoader {
+
+    static {
+      ClassLoader.registerAsParallelCapable();
+    }
+
+    private final Map<String, byte[]> classes;
+    private final byte[] probes = ProbeInstrumenter.probesClass();
+
+    CoverageClassLoader(URL[] classpath, Map<String, byte[]> classes) {
+      super(classpath, ClassLoader.getPlatformClassLoader());
+      this.classes = classes;
+    }
+
+    @Override protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded == null) {
+          try {
+            loaded = getParent().loadClass(name);
+          } catch (ClassNotFoundException ignored) {
+            final byte[] bytes = ProbeInstrumenter.PROBES_CLASS.equals(name)
+                ? probes
+                : classes.get(name);
+            loaded = bytes != null
+                ? defineClass(name, bytes, 0, bytes.length)
+                : findClass(name);
+          }
+        }
+
+        if (resolve) {
+          resolveClass(loaded);
+        }
+        return loaded;
+      }
+    }
+  }
+}
@@ -0,0 +1,305 @@
+package randoop.maven.daemon;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Connection to a {@link RandoopDaemon}, started on demand. A daemon is only reused if
+ * it was started for the same Randoop classpath; otherwise it is told to shut down and a
+ * new one takes its place.
+ */
+public class DaemonClient {
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+  private static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+
+  private final int port;
+  private final String token;
+  private final String fingerprint;
+  private final boolean trapsExit;
+
+  private DaemonClient(int port, String token, String fingerprint, boolean trapsExit) {
+    this.port = port;
+    this.token = token;
+    this.fingerprint = fingerprint;
+    this.trapsExit = trapsExit;
+  }
+
+  /** Daemon could not be reached, or did not take a job. */
+  public static class UnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    UnavailableException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  /**
+   * Connects to the running daemon, starting a new one if needed.
+   *
+   * @param daemonDir          where the daemon keeps its state file and log
+   * @param daemonClasspath    jars the daemon runs from; i.e., the plugin and Randoop jars
+   * @param fingerprint        fingerprint of {@code daemonClasspath}
+   * @param idleTimeoutSeconds idle time after which a new daemon shuts itself down
+   * @param log                receives progress messages
+   * @return a healthy daemon, or empty if none could be started, or if the daemon could
+   * not survive a job calling System.exit (see {@link ExitTrap})
+   */
+  public static Optional<DaemonClient> connect(Path daemonDir, List<Path> daemonClasspath,
+      String fingerprint, int idleTimeoutSeconds, Consumer<String> log) {
+    Preconditions.checkNotNull(daemonDir);
+    Preconditions.checkArgument(!daemonClasspath.isEmpty());
+
+    if (Runtime.version().feature() >= 24) {
+      log.accept("System.exit cannot be trapped from JDK 24 on; forking Randoop instead");
+      return Optional.empty();
+    }
+
+    final Path stateFile = daemonDir.resolve("daemon.properties");
+    final Optional<DaemonClient> running = readState(stateFile)
+        .filter(c -> fingerprint.equals(c.fingerprint));
+    if (running.isPresent() && running.get().isHealthy()) {
+      log.accept("Reusing Randoop daemon on port " + running.get().port);
+      return trappingExit(running.get(), log);
+    }
+
+    // Stale or foreign daemon; ask it to leave (it may already be gone)
+    readState(stateFile).ifPresent(DaemonClient::shutdownQuietly);
+
+    final List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-ea");
+    final int feature = Runtime.version().feature();
+    if (feature >= 12 && feature < 24) {
+      // Lets the daemon trap System.exit of its jobs; see ExitTrap
+      command.add("-Djava.security.manager=allow");
+    }
+    command.add("-classpath");
+    command.add(daemonClasspath.stream().map(Path::toString)
+        .collect(Collectors.joining(File.pathSeparator)));
+    command.add(RandoopDaemon.class.getName());
+    command.add(stateFile.toString());
+    command.add(String.valueOf(idleTimeoutSeconds));
+    command.add(fingerprint);
+    daemonClasspath.forEach(p -> command.add(p.toString()));
+
+    try {
+      Files.createDirectories(daemonDir);
+      Files.deleteIfExists(stateFile);
+      new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .redirectOutput(ProcessBuilder.Redirect.appendTo(
+              daemonDir.resolve("daemon.log").toFile()))
+          .start();
+    } catch (IOException e) {
+      log.accept("Unable to start Randoop daemon: " + e.getMessage());
+      return Optional.empty();
+    }
+
+    final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+    while (System.currentTimeMillis() < deadline) {
+      final Optional<DaemonClient> started = readState(stateFile)
+          .filter(c -> fingerprint.equals(c.fingerprint));
+      if (started.isPresent() && started.get().isHealthy()) {
+        log.accept("Started Randoop daemon on port " + started.get().port);
+        return trappingExit(started.get(), log);
+      }
+
+      try {
+        TimeUnit.MILLISECONDS.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return Optional.empty();
+      }
+    }
+
+    log.accept("Randoop daemon did not start in time; see " + daemonDir.resolve("daemon.log"));
+    return Optional.empty();
+  }
+
+  // A job calling System.exit would take down the daemon and the jobs of other builds
+  private static Optional<DaemonClient> trappingExit(DaemonClient daemon,
+      Consumer<String> log) {
+    if (daemon.trapsExit) {
+      return Optional.of(daemon);
+    }
+
+    log.accept("Randoop daemon cannot trap System.exit on this JVM; forking Randoop instead");
+    shutdownQuietly(daemon);
+    return Optional.empty();
+  }
+
+  private static Optional<DaemonClient> readState(Path stateFile) {
+    if (!Files.isRegularFile(stateFile)) {
+      return Optional.empty();
+    }
+
+    final Properties state = new Properties();
+    try (InputStream in = Files.newInputStream(stateFile)) {
+      state.load(in);
+      return Optional.of(new DaemonClient(
+          Integer.parseInt(state.getProperty(RandoopDaemon.PORT_KEY)),
+          state.getProperty(RandoopDaemon.TOKEN_KEY),
+          state.getProperty(RandoopDaemon.FINGERPRINT_KEY, ""),
+          Boolean.parseBoolean(state.getProperty(RandoopDaemon.EXIT_TRAP_KEY))));
+    } catch (IOException | RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** @return true if the daemon answers a PING */
+  public boolean isHealthy() {
+    try (Socket socket = open(CONNECT_TIMEOUT_MILLIS)) {
+      final String reply = request(socket, RandoopDaemon.PING + " " + token);
+      return reply != null && reply.startsWith(RandoopDaemon.PONG);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Runs Randoop in the daemon. The job is cancelled if it does not end within
+   * {@code timeoutMillis}, printing or not.
+   *
+   * @param classpath project classes and dependencies; Randoop is provided by the daemon
+   * @param args      Randoop arguments, starting with the command; e.g., gentests
+   * @param output    receives each line Randoop prints
+   * @param timeoutMillis max time the job may take; 0 means no limit
+   * @return Randoop's exit code
+   * @throws UnavailableException if the daemon could not take the job, which therefore
+   *                              did not run
+   * @throws IOException          if the job timed out, or the daemon went away while
+   *                              running it
+   */
+  public int run(List<Path> classpath, List<String> args, Consumer<String> output,
+      long timeoutMillis) throws IOException {
+    final long deadline = timeoutMillis > 0
+        ? System.currentTimeMillis() + timeoutMillis
+        : Long.MAX_VALUE;
+    final long startDeadline = Math.min(deadline,
+        System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS);
+    final Socket socket;
+    try {
+      socket = open(CONNECT_TIMEOUT_MILLIS);
+    } catch (IOException e) {
+      throw new UnavailableException("Randoop daemon unreachable: " + e.getMessage(), e);
+    }
+
+    try (Socket ignored = socket) {
+      final Writer writer = new BufferedWriter(
+          new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+      final BufferedReader reader;
+      try {
+        writer.write(RandoopDaemon.RUN + " " + token + "\n");
+        for (Path each : classpath) {
+          writer.write(RandoopDaemon.CP + " " + each.toAbsolutePath() + "\n");
+        }
+        for (String each : args) {
+          writer.write(RandoopDaemon.ARG + " " + each + "\n");
+        }
+        writer.write(RandoopDaemon.GO + "\n");
+        writer.flush();
+
+        reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        final String reply = readLine(socket, reader, startDeadline);
+        if (reply == null || !reply.startsWith(RandoopDaemon.STARTED)) {
+          throw new UnavailableException(reply == null
+              ? "Randoop daemon closed the connection"
+              : "Randoop daemon did not take the job: " + reply, null);
+        }
+      } catch (SocketTimeoutException e) {
+        // Closing the connection cancels the job, should it start after all
+        throw new UnavailableException("Randoop daemon did not start the job in time", e);
+      } catch (UnavailableException e) {
+        throw e;
+      } catch (IOException e) {
+        throw new UnavailableException("Randoop daemon failed: " + e.getMessage(), e);
+      }
+
+      try {
+        String line;
+        while ((line = readLine(socket, reader, deadline)) != null) {
+          if (line.startsWith(RandoopDaemon.OUT + " ")) {
+            output.accept(line.substring(RandoopDaemon.OUT.length() + 1));
+          } else if (line.startsWith(RandoopDaemon.EXIT + " ")) {
+            return Integer.parseInt(line.substring(RandoopDaemon.EXIT.length() + 1).trim());
+          } else if (line.startsWith(RandoopDaemon.ERROR)) {
+            throw new IOException("Randoop daemon job failed: " + line);
+          }
+        }
+      } catch (SocketTimeoutException e) {
+        writer.write(RandoopDaemon.CANCEL + "\n");
+        writer.flush();
+        throw new IOException("Randoop daemon job did not end within " + timeoutMillis
+            + " ms; cancelled", e);
+      } catch (NumberFormatException e) {
+        throw new IOException("Randoop daemon sent a bad exit code", e);
+      }
+
+      throw new IOException("Randoop daemon closed the connection in the middle of the job");
+    }
+  }
+
+  /** Reads a line, waiting until {@code deadline} at most. */
+  private static String readLine(Socket socket, BufferedReader reader, long deadline)
+      throws IOException {
+    final long remaining = deadline - System.currentTimeMillis();
+    if (remaining <= 0) {
+      throw new SocketTimeoutException("Deadline passed");
+    }
+    socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remaining));
+    return reader.readLine();
+  }
+
+  private static void shutdownQuietly(DaemonClient daemon) {
+    try (Socket socket = daemon.open(CONNECT_TIMEOUT_MILLIS)) {
+      request(socket, RandoopDaemon.SHUTDOWN + " " + daemon.token);
+    } catch (IOException ignored) {
+    }
+  }
+
+  private Socket open(int readTimeoutMillis) throws IOException {
+    final Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+          CONNECT_TIMEOUT_MILLIS);
+      socket.setSoTimeout(readTimeoutMillis);
+      return socket;
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private static String request(Socket socket, String line) throws IOException {
+    final Writer writer = new OutputStreamWriter(
+        socket.getOutputStream(), StandardCharsets.UTF_8);
+    writer.write(line + "\n");
+    writer.flush();
+    return new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+  }
+}
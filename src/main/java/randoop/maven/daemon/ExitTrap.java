@@ -0,0 +1,75 @@
+package randoop.maven.daemon;
+
+import java.security.Permission;
+
+/**
+ * Security manager that turns {@code System.exit} calls of daemon jobs (i.e., of threads
+ * started by a job, or by threads it started) into an {@link ExitException}, so a job
+ * that exits does not take the daemon and every other job with it. Everything else is
+ * permitted.
+ * <p>
+ * Security managers are deprecated; JVMs from 18 on need {@code -Djava.security.manager=allow}
+ * to install one, and those from 24 on cannot install one at all. There, {@link #install}
+ * fails, the daemon records so in its state file, and clients fork Randoop instead.
+ */
+@SuppressWarnings("removal")
+class ExitTrap extends SecurityManager {
+
+  private static final InheritableThreadLocal<Boolean> IN_JOB = new InheritableThreadLocal<>();
+
+  /** Thrown instead of exiting the daemon's JVM. */
+  static class ExitException extends SecurityException {
+    private static final long serialVersionUID = 1L;
+    private final int status;
+
+    ExitException(int status) {
+      super("System.exit(" + status + ") in a daemon job");
+      this.status = status;
+    }
+
+    int getStatus() {
+      return status;
+    }
+  }
+
+  /** @return true if {@code System.exit} of jobs is trapped from now on */
+  static boolean install() {
+    try {
+      System.setSecurityManager(new ExitTrap());
+      return true;
+    } catch (SecurityException | UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  /** Marks the current thread, and the threads it starts from now on, as part of a job. */
+  static void enterJob() {
+    IN_JOB.set(Boolean.TRUE);
+  }
+
+  static void leaveJob() {
+    IN_JOB.remove();
+  }
+
+  /** @return the exit status if {@code failure}, or one of its causes, is a trapped exit */
+  static Integer exitStatus(Throwable failure) {
+    for (Throwable each = failure; each != null; each = each.getCause()) {
+      if (each instanceof ExitException) return ((ExitException) each).getStatus();
+    }
+    return null;
+  }
+
+  @Override public void checkExit(int status) {
+    if (Boolean.TRUE.equals(IN_JOB.get())) {
+      throw new ExitException(status);
+    }
+  }
+
+  @Override public void checkPermission(Permission perm) {
+    // Allowed
+  }
+
+  @Override public void checkPermission(Permission perm, Object context) {
+    // Allowed
+  }
+}
@@ -0,0 +1,136 @@
+package randoop.maven.daemon;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class loader of generation jobs. JDK classes come from the platform class loader;
+ * Randoop classes are defined from bytes the daemon keeps in memory; everything else
+ * (i.e., the project's classes and dependencies) is read from the job's own classpath.
+ * <p>
+ * Randoop finds the classes under test through the loader of its own classes, which then
+ * keeps them; so Randoop classes cannot be shared by jobs whose project classes differ.
+ * Instead, a loader is reused by later jobs with the same classpath (i.e., with the same
+ * {@link #getFingerprint fingerprint}), one job at a time. Randoop keeps its options in
+ * static fields; those are set back to their defaults between jobs.
+ */
+class JobClassLoader extends URLClassLoader {
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  private final Map<String, byte[]> randoopClasses;
+  private final String fingerprint;
+  private final Map<Field, Object> optionDefaults = new LinkedHashMap<>();
+  private final AtomicInteger defined = new AtomicInteger();
+  private final AtomicLong defineNanos = new AtomicLong();
+  private int jobs;
+
+  /**
+   * @param fingerprint of {@code classpath}, including the contents of its directories
+   */
+  JobClassLoader(URL[] classpath, Map<String, byte[]> randoopClasses, String fingerprint) {
+    super(classpath, ClassLoader.getPlatformClassLoader());
+    this.randoopClasses = randoopClasses;
+    this.fingerprint = fingerprint;
+  }
+
+  String getFingerprint() {
+    return fingerprint;
+  }
+
+  /** @return jobs that ran with this loader, including the running one */
+  int getJobs() {
+    return jobs;
+  }
+
+  /**
+   * Starts a job with this loader. The first job records the defaults of the options
+   * Randoop keeps in the static fields of {@code optionHolders}.
+   */
+  void startJob(Collection<String> optionHolders) {
+    defined.set(0);
+    defineNanos.set(0);
+    if (jobs++ > 0) return;
+
+    for (String each : optionHolders) {
+      try {
+        for (Field field : Class.forName(each, true, this).getDeclaredFields()) {
+          final int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+              && isOption(field)) {
+            field.setAccessible(true);
+            optionDefaults.put(field, copy(field.get(null)));
+          }
+        }
+      } catch (ReflectiveOperationException | LinkageError | RuntimeException ignored) {
+        // Randoop will fail on it too, and the loader will not be reused
+      }
+    }
+  }
+
+  /** Sets the options of the last job back to their defaults, for the next job. */
+  void resetOptions() throws IllegalAccessException {
+    for (Map.Entry<Field, Object> each : optionDefaults.entrySet()) {
+      each.getKey().set(null, copy(each.getValue()));
+    }
+  }
+
+  /** @return Randoop classes the running job had to define, and the time it took */
+  String describeJob() {
+    return String.format("%d Randoop classes defined in %d ms", defined.get(),
+        TimeUnit.NANOSECONDS.toMillis(defineNanos.get()));
+  }
+
+  // Randoop's option annotation may be relocated; it is recognized by its simple name
+  private static boolean isOption(Field field) {
+    for (Annotation each : field.getDeclaredAnnotations()) {
+      if ("Option".equals(each.annotationType().getSimpleName())) return true;
+    }
+    return false;
+  }
+
+  // List options are appended to, so each job gets a copy of the default list
+  private static Object copy(Object value) {
+    return value instanceof List ? new ArrayList<>((List<?>) value) : value;
+  }
+
+  @Override protected Class<?> loadClass(String name, boolean resolve)
+      throws ClassNotFoundException {
+    synchronized (getClassLoadingLock(name)) {
+      Class<?> loaded = findLoadedClass(name);
+      if (loaded == null) {
+        try {
+          loaded = getParent().loadClass(name);
+        } catch (ClassNotFoundException ignored) {
+          final byte[] bytes = randoopClasses.get(name);
+          if (bytes != null) {
+            final long started = System.nanoTime();
+            loaded = defineClass(name, bytes, 0, bytes.length);
+            defineNanos.addAndGet(System.nanoTime() - started);
+            defined.incrementAndGet();
+          } else {
+            loaded = findClass(name);
+          }
+        }
+      }
+
+      if (resolve) {
+        resolveClass(loaded);
+      }
+      return loaded;
+    }
+  }
+}
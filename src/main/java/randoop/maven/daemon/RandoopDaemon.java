@@ -0,0 +1,620 @@
+package randoop.maven.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Long-lived local JVM that runs Randoop generation jobs on behalf of the 'gentests'
+ * goal, so that builds do not pay for JVM startup and for reading the Randoop jar on
+ * every run. It only listens on the loopback interface, and only accepts requests
+ * carrying the secret token it writes to its state file. It shuts itself down once it
+ * has been idle for a while.
+ * <p>
+ * Requests and replies are UTF-8 lines:
+ * <pre>
+ *   PING token                 -&gt; PONG pid
+ *   SHUTDOWN token             -&gt; BYE
+ *   RUN token
+ *   CP path   (one per entry)
+ *   ARG arg   (one per Randoop argument)
+ *   GO                         -&gt; STARTED, OUT line ... then EXIT code; or ERROR message
+ *   CANCEL    (after STARTED; so does closing the connection)
+ * </pre>
+ * Jobs run in the daemon's JVM, with the Randoop classes of an earlier job with the same
+ * classpath when one is idle (see {@link JobClassLoader}). A job calling
+ * {@code System.exit} only ends that job (see {@link ExitTrap}); where the JVM cannot trap
+ * it, the state file says so, and clients fork Randoop instead. A cancelled job is
+ * interrupted, then stopped; if it still runs, the daemon takes no more jobs and exits
+ * once the others are done.
+ * This class must only depend on the JDK, as the daemon's classpath is just the plugin
+ * jar and the Randoop jar.
+ */
+public class RandoopDaemon {
+
+  static final String PING = "PING";
+  static final String PONG = "PONG";
+  static final String RUN = "RUN";
+  static final String CP = "CP";
+  static final String ARG = "ARG";
+  static final String GO = "GO";
+  static final String STARTED = "STARTED";
+  static final String CANCEL = "CANCEL";
+  static final String OUT = "OUT";
+  static final String EXIT = "EXIT";
+  static final String ERROR = "ERROR";
+  static final String SHUTDOWN = "SHUTDOWN";
+  static final String BYE = "BYE";
+
+  static final String PORT_KEY = "port";
+  static final String TOKEN_KEY = "token";
+  static final String PID_KEY = "pid";
+  static final String FINGERPRINT_KEY = "fingerprint";
+  static final String EXIT_TRAP_KEY = "exitTrap";
+
+  // Loaders kept for later jobs; e.g., for the shards of a build running at once
+  private static final int MAX_IDLE_LOADERS = 4;
+  // How Randoop's option fields are annotated, in the class file
+  private static final String OPTION_DESCRIPTOR = "options/Option;";
+
+  private final ServerSocket server;
+  private final Path stateFile;
+  private final String token;
+  private final Map<String, byte[]> randoopClasses;
+  private final List<URL> randoopJars;
+  private final List<String> optionHolders;
+  private final Deque<JobClassLoader> idleLoaders = new ArrayDeque<>();
+  private final long idleTimeoutMillis;
+  private final AtomicInteger activeJobs = new AtomicInteger();
+  // Cancelled jobs that could not be stopped
+  private final AtomicInteger hungJobs = new AtomicInteger();
+  private final ScheduledExecutorService monitor;
+  private final RoutingPrintStream out;
+  private final RoutingPrintStream err;
+  private volatile long lastActivity = System.currentTimeMillis();
+
+  private RandoopDaemon(ServerSocket server, Path stateFile, String token,
+      Map<String, byte[]> randoopClasses, List<URL> randoopJars, long idleTimeoutMillis) {
+    this.server = server;
+    this.stateFile = stateFile;
+    this.token = token;
+    this.randoopClasses = randoopClasses;
+    this.randoopJars = randoopJars;
+    this.optionHolders = randoopClasses.entrySet().stream()
+        .filter(e -> new String(e.getValue(), StandardCharsets.ISO_8859_1)
+            .contains(OPTION_DESCRIPTOR))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.out = new RoutingPrintStream(System.out);
+    this.err = new RoutingPrintStream(System.err);
+    this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "randoop-daemon-monitor");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @param args state file, idle timeout in seconds, fingerprint of the Randoop classpath,
+   *             followed by the jars whose classes are shared by all jobs (i.e., Randoop)
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 4) {
+      System.err.println(
+          "Usage: RandoopDaemon <state-file> <idle-timeout> <fingerprint> <jar>...");
+      System.exit(2);
+    }
+
+    final Path stateFile = Paths.get(args[0]);
+    final long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(args[1]));
+    final String fingerprint = args[2];
+
+    final Map<String, byte[]> randoopClasses = new HashMap<>();
+    final List<URL> randoopJars = new ArrayList<>();
+    for (int i = 3; i < args.length; i++) {
+      readClasses(Paths.get(args[i]), randoopClasses);
+      randoopJars.add(Paths.get(args[i]).toUri().toURL());
+    }
+
+    final byte[] secret = new byte[24];
+    new SecureRandom().nextBytes(secret);
+    final StringBuilder token = new StringBuilder();
+    for (byte each : secret) {
+      token.append(String.format("%02x", each));
+    }
+
+    final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    final RandoopDaemon daemon = new RandoopDaemon(
+        server, stateFile, token.toString(), randoopClasses, randoopJars, idleTimeoutMillis);
+
+    final boolean exitTrapped = ExitTrap.install();
+    final Properties state = new Properties();
+    state.setProperty(PORT_KEY, String.valueOf(server.getLocalPort()));
+    state.setProperty(TOKEN_KEY, token.toString());
+    state.setProperty(PID_KEY, String.valueOf(ProcessHandle.current().pid()));
+    state.setProperty(FINGERPRINT_KEY, fingerprint);
+    state.setProperty(EXIT_TRAP_KEY, String.valueOf(exitTrapped));
+    writeState(stateFile, state);
+
+    System.out.println("Randoop daemon listening on port " + server.getLocalPort()
+        + " with " + randoopClasses.size() + " shared classes");
+    if (!exitTrapped) {
+      System.out.println("System.exit cannot be trapped on this JVM; clients will fork"
+          + " Randoop instead");
+    }
+    daemon.serve();
+    // Threads left behind by jobs must not keep the daemon alive
+    System.exit(0);
+  }
+
+  private static void readClasses(Path jar, Map<String, byte[]> classes) throws IOException {
+    try (ZipFile zip = new ZipFile(jar.toFile())) {
+      for (ZipEntry each : Collections.list(zip.entries())) {
+        final String name = each.getName();
+        // Skip the plugin's own classes; those are not needed by Randoop
+        if (!name.endsWith(".class") || name.startsWith("randoop/maven/")
+            || name.endsWith("module-info.class") || name.startsWith("META-INF/")) {
+          continue;
+        }
+
+        final String className = name.substring(0, name.length() - ".class".length())
+            .replace('/', '.');
+        try (InputStream in = zip.getInputStream(each)) {
+          classes.putIfAbsent(className, in.readAllBytes());
+        }
+      }
+    }
+  }
+
+  private static void writeState(Path stateFile, Properties state) throws IOException {
+    Files.createDirectories(stateFile.toAbsolutePath().getParent());
+    final Path tmp = Files.createTempFile(
+        stateFile.toAbsolutePath().getParent(), "daemon", ".tmp");
+    try {
+      Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+    } catch (UnsupportedOperationException ignored) {
+      // Not a POSIX file system
+    }
+
+    try (OutputStream stream = Files.newOutputStream(tmp)) {
+      state.store(stream, "Randoop daemon");
+    }
+    Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void serve() {
+    System.setOut(out);
+    System.setErr(err);
+
+    monitor.scheduleWithFixedDelay(this::shutdownIfIdle, 5, 5, TimeUnit.SECONDS);
+
+    final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+      final Thread thread = new Thread(r, "randoop-daemon-job");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      while (!server.isClosed()) {
+        final Socket socket = server.accept();
+        lastActivity = System.currentTimeMillis();
+        connections.execute(() -> handle(socket));
+      }
+    } catch (IOException closed) {
+      // Server socket closed; we are shutting down
+    } finally {
+      shutdown();
+      // Jobs running elsewhere must not be cut short by this one
+      while (activeJobs.get() > hungJobs.get()) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(100);
+        } catch (InterruptedException e) {
+          break;
+        }
+      }
+      connections.shutdownNow();
+      monitor.shutdownNow();
+    }
+  }
+
+  private void shutdownIfIdle() {
+    if (activeJobs.get() == 0
+        && System.currentTimeMillis() - lastActivity > idleTimeoutMillis) {
+      err.fallback().println("Randoop daemon idle; shutting down");
+      shutdown();
+    }
+  }
+
+  private void shutdown() {
+    try {
+      server.close();
+    } catch (IOException ignored) {
+    }
+
+    try {
+      // Only delete the state file if it is still ours
+      final Properties state = new Properties();
+      try (InputStream in = Files.newInputStream(stateFile)) {
+        state.load(in);
+      }
+      if (token.equals(state.getProperty(TOKEN_KEY))) {
+        Files.deleteIfExists(stateFile);
+      }
+    } catch (IOException ignored) {
+    }
+  }
+
+  private void handle(Socket socket) {
+    try (Socket ignored = socket;
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+      final String request = reader.readLine();
+      if (request == null) return;
+
+      final int space = request.indexOf(' ');
+      final String command = space < 0 ? request : request.substring(0, space);
+      final String requestToken = space < 0 ? "" : request.substring(space + 1);
+      if (!token.equals(requestToken)) {
+        reply(writer, ERROR + " unauthorized");
+        return;
+      }
+
+      switch (command) {
+        case PING:
+          reply(writer, PONG + " " + ProcessHandle.current().pid());
+          break;
+        case SHUTDOWN:
+          reply(writer, BYE);
+          shutdown();
+          break;
+        case RUN:
+          runJob(reader, writer);
+          break;
+        default:
+          reply(writer, ERROR + " unknown command " + command);
+      }
+    } catch (IOException e) {
+      err.fallback().println("Lost connection: " + e.getMessage());
+    } finally {
+      lastActivity = System.currentTimeMillis();
+    }
+  }
+
+  private void runJob(BufferedReader reader, Writer writer) throws IOException {
+    final List<URL> classpath = new ArrayList<>();
+    final List<String> args = new ArrayList<>();
+    String line;
+    while ((line = reader.readLine()) != null && !GO.equals(line)) {
+      if (line.startsWith(CP + " ")) {
+        classpath.add(Paths.get(line.substring(CP.length() + 1)).toUri().toURL());
+      } else if (line.startsWith(ARG + " ")) {
+        args.add(line.substring(ARG.length() + 1));
+      }
+    }
+
+    if (line == null) return;
+    final String fingerprint;
+    try {
+      fingerprint = fingerprint(classpath);
+    } catch (IOException | URISyntaxException e) {
+      reply(writer, ERROR + " cannot read the classpath: " + e);
+      return;
+    }
+    // Randoop's own resources (e.g., its JDK specifications) are read from its jar
+    classpath.addAll(randoopJars);
+
+    JobClassLoader idle = takeIdleLoader(fingerprint);
+    if (idle == null) {
+      idle = new JobClassLoader(classpath.toArray(new URL[0]), randoopClasses, fingerprint);
+      idle.setDefaultAssertionStatus(true);
+    }
+    final JobClassLoader loader = idle;
+
+    activeJobs.incrementAndGet();
+    final PrintStream jobOutput = new PrintStream(new LineForwarder(writer), true,
+        StandardCharsets.UTF_8);
+    out.bind(jobOutput);
+    err.bind(jobOutput);
+
+    final Thread current = Thread.currentThread();
+    final ClassLoader previous = current.getContextClassLoader();
+    final AtomicBoolean finished = new AtomicBoolean();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    boolean reusable = false;
+    int exitCode = 0;
+    ExitTrap.enterJob();
+    try {
+      current.setContextClassLoader(loader);
+      loader.startJob(optionHolders);
+
+      final Class<?> main = Class.forName("randoop.main.Main", true, loader);
+      final Object instance = main.getConstructor().newInstance();
+      final Method nonStaticMain = main.getMethod("nonStaticMain", String[].class);
+      reply(writer, STARTED);
+      watchForCancel(reader, current, finished, cancelled);
+      nonStaticMain.invoke(instance, (Object) args.toArray(new String[0]));
+      reusable = true;
+    } catch (InvocationTargetException e) {
+      final Integer status = ExitTrap.exitStatus(e.getCause());
+      if (status == null) {
+        e.getCause().printStackTrace(jobOutput);
+      }
+      exitCode = status == null ? 1 : status;
+    } catch (ReflectiveOperationException | LinkageError e) {
+      reply(writer, ERROR + " cannot start Randoop: " + e);
+      return;
+    } finally {
+      finished.set(true);
+      // A cancellation that came too late must not hit the next job of this thread
+      Thread.interrupted();
+      ExitTrap.leaveJob();
+      current.setContextClassLoader(previous);
+      // Tells the build what the daemon saved it
+      jobOutput.println(String.format("[daemon] Job %d of its class loader: %s",
+          loader.getJobs(), loader.describeJob()));
+      jobOutput.close();
+      out.unbind();
+      err.unbind();
+      release(loader, reusable && !cancelled.get());
+      activeJobs.decrementAndGet();
+    }
+
+    reply(writer, EXIT + " " + exitCode);
+  }
+
+  /** @return an idle loader for jobs with the classpath of {@code fingerprint}, or null */
+  private JobClassLoader takeIdleLoader(String fingerprint) {
+    synchronized (idleLoaders) {
+      for (Iterator<JobClassLoader> each = idleLoaders.iterator(); each.hasNext(); ) {
+        final JobClassLoader loader = each.next();
+        if (loader.getFingerprint().equals(fingerprint)) {
+          each.remove();
+          return loader;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Keeps the loader of a job that ended normally for later jobs, with Randoop's options
+   * reset; closes it otherwise, or when it is the least recently used of too many.
+   */
+  private void release(JobClassLoader loader, boolean reusable) {
+    JobClassLoader evicted = loader;
+    if (reusable) {
+      try {
+        loader.resetOptions();
+        synchronized (idleLoaders) {
+          idleLoaders.addFirst(loader);
+          evicted = idleLoaders.size() > MAX_IDLE_LOADERS ? idleLoaders.removeLast() : null;
+        }
+      } catch (IllegalAccessException | RuntimeException e) {
+        err.fallback().println("Unable to reset Randoop options: " + e);
+      }
+    }
+
+    if (evicted != null) {
+      try {
+        evicted.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  /**
+   * @return hash of the classpath entries, and of the names, sizes and modification times
+   * of the files in its directories
+   */
+  private static String fingerprint(List<URL> classpath) throws IOException, URISyntaxException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+
+    final List<String> lines = new ArrayList<>();
+    for (URL each : classpath) {
+      final Path entry = Paths.get(each.toURI());
+      lines.add(entry.toString());
+      if (Files.isDirectory(entry)) {
+        try (Stream<Path> files = Files.walk(entry)) {
+          for (Path file : files.filter(Files::isRegularFile).sorted()
+              .collect(Collectors.toList())) {
+            lines.add(entry.relativize(file) + "\t" + Files.size(file) + "\t"
+                + Files.getLastModifiedTime(file).toMillis());
+          }
+        }
+      } else if (Files.isRegularFile(entry)) {
+        lines.add(Files.size(entry) + "\t" + Files.getLastModifiedTime(entry).toMillis());
+      }
+    }
+    lines.forEach(l -> digest.update((l + "\n").getBytes(StandardCharsets.UTF_8)));
+
+    final StringBuilder hex = new StringBuilder();
+    for (byte each : digest.digest()) {
+      hex.append(String.format("%02x", each));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Cancels the job running on {@code job} when its client sends CANCEL or goes away.
+   */
+  private void watchForCancel(BufferedReader reader, Thread job, AtomicBoolean finished,
+      AtomicBoolean cancelled) {
+    final Thread watcher = new Thread(() -> {
+      try {
+        String request;
+        do {
+          request = reader.readLine();
+        } while (request != null && !CANCEL.equals(request));
+      } catch (IOException ignored) {
+        // Connection closed
+      }
+      if (!finished.get()) {
+        cancelled.set(true);
+        cancel(job, finished);
+      }
+    }, "randoop-daemon-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  private void cancel(Thread job, AtomicBoolean finished) {
+    err.fallback().println("Cancelling job on " + job.getName());
+    job.interrupt();
+    monitor.schedule(() -> {
+      if (finished.get()) return;
+      try {
+        // Deprecated, and gone from recent JVMs; the daemon quits below if it fails
+        Thread.class.getMethod("stop").invoke(job);
+      } catch (ReflectiveOperationException | RuntimeException ignored) {
+      }
+    }, 5, TimeUnit.SECONDS);
+    monitor.schedule(() -> {
+      if (finished.get()) return;
+      err.fallback().println("Job on " + job.getName() + " cannot be stopped; shutting down");
+      hungJobs.incrementAndGet();
+      shutdown();
+    }, 10, TimeUnit.SECONDS);
+  }
+
+  private static void reply(Writer writer, String line) throws IOException {
+    synchronized (writer) {
+      writer.write(line);
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+
+  /** Sends each line written to it as an OUT reply. */
+  private static class LineForwarder extends OutputStream {
+    private final Writer writer;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    LineForwarder(Writer writer) {
+      this.writer = writer;
+    }
+
+    @Override public synchronized void write(int b) throws IOException {
+      if (b == '\n') {
+        flushLine();
+      } else if (b != '\r') {
+        line.write(b);
+      }
+    }
+
+    @Override public void flush() {
+      // Lines are sent as they complete; autoflush must not split them
+    }
+
+    @Override public synchronized void close() throws IOException {
+      if (line.size() > 0) {
+        flushLine();
+      }
+    }
+
+    private void flushLine() throws IOException {
+      try {
+        reply(writer, OUT + " " + line.toString(StandardCharsets.UTF_8));
+      } catch (SocketException ignored) {
+        // Client went away; keep the job going so it can finish cleanly
+      } finally {
+        line.reset();
+      }
+    }
+  }
+
+  /**
+   * System.out (and System.err) replacement that sends what a job prints to that job's
+   * client. Threads started by a job inherit its destination.
+   */
+  private static class RoutingPrintStream extends PrintStream {
+    private final InheritableThreadLocal<PrintStream> target = new InheritableThreadLocal<>();
+    private final PrintStream fallback;
+
+    RoutingPrintStream(PrintStream fallback) {
+      super(fallback, true, StandardCharsets.UTF_8);
+      this.fallback = fallback;
+    }
+
+    PrintStream fallback() {
+      return fallback;
+    }
+
+    void bind(PrintStream stream) {
+      target.set(stream);
+    }
+
+    void unbind() {
+      target.remove();
+    }
+
+    private PrintStream current() {
+      final PrintStream stream = target.get();
+      return stream == null ? fallback : stream;
+    }
+
+    @Override public void write(int b) {
+      current().write(b);
+    }
+
+    @Override public void write(byte[] buf, int off, int len) {
+      current().write(buf, off, len);
+    }
+
+    @Override public void flush() {
+      current().flush();
+    }
+  }
+}
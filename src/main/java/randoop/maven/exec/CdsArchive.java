@@ -0,0 +1,182 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * A cached AppCDS archive of Randoop's classes, so forked JVMs map them from the archive
+ * rather than loading and verifying them from randoop-all every time. The archive is
+ * named after a fingerprint of the Randoop classpath and of the {@code java} on the PATH;
+ * it is built once, in two steps:
+ * <ol>
+ *   <li>one Randoop run records the classes it loads ({@code -XX:DumpLoadedClassList});</li>
+ *   <li>right after it, {@code java -Xshare:dump} archives those classes.</li>
+ * </ol>
+ * Only one process at a time builds an archive; the others run without one. An archive
+ * the JVM cannot use is ignored ({@code -Xshare:auto}), never an error.
+ * <p>
+ * The JVM only uses an archive if the classpath it was built for is a prefix of the
+ * runtime classpath, so {@link #classpath(List)} puts the Randoop classpath first.
+ */
+public class CdsArchive {
+
+  // A build that died while holding the lock should not block archives forever
+  private static final long STALE_LOCK_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long DUMP_DEADLINE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final Path cacheDir;
+  private final List<Path> classpath;
+  private final String key;
+  private boolean recording;
+
+  /**
+   * @param cacheDir  where archives are kept
+   * @param classpath Randoop's classpath; jars only, as the JVM does not archive classes
+   *                  from directories
+   */
+  public CdsArchive(Path cacheDir, List<Path> classpath) {
+    Preconditions.checkArgument(!classpath.isEmpty());
+    Preconditions.checkArgument(classpath.stream().noneMatch(Files::isDirectory),
+        "Only jars can be archived");
+    this.cacheDir = Preconditions.checkNotNull(cacheDir);
+    this.classpath = ImmutableList.copyOf(classpath);
+
+    final List<Path> fingerprinted = new ArrayList<>(classpath);
+    javaOnPath().ifPresent(fingerprinted::add);
+    this.key = LaunchFiles.fingerprint(fingerprinted).substring(0, 16);
+  }
+
+  public Path getArchive() {
+    return cacheDir.resolve("randoop-" + key + ".jsa");
+  }
+
+  public boolean isAvailable() {
+    return Files.isRegularFile(getArchive());
+  }
+
+  /** @return {@code fullClasspath}, with the archived classpath first */
+  public List<Path> classpath(List<Path> fullClasspath) {
+    final List<Path> results = new ArrayList<>(classpath);
+    fullClasspath.stream().filter(p -> !classpath.contains(p)).forEach(results::add);
+    return results;
+  }
+
+  /**
+   * @return JVM options for the next run: either using the archive, or recording the
+   * classes the run loads (if no other run does), or none
+   */
+  public synchronized List<String> jvmOptions() {
+    if (isAvailable()) {
+      return ImmutableList.of("-XX:SharedArchiveFile=" + getArchive(), "-Xshare:auto");
+    }
+    if (!recording && tryLock()) {
+      recording = true;
+      return ImmutableList.of("-XX:DumpLoadedClassList=" + classListFile());
+    }
+    return ImmutableList.of();
+  }
+
+  /** @return true if {@code jvmOptions} are those of the run recording the class list */
+  public static boolean isRecording(List<String> jvmOptions) {
+    return jvmOptions.stream().anyMatch(o -> o.startsWith("-XX:DumpLoadedClassList="));
+  }
+
+  /**
+   * Builds the archive from the class list the recording run left, if any, and lets
+   * other processes build archives again.
+   *
+   * @param output receives the output of {@code java -Xshare:dump}
+   * @return the archive, if it was built
+   */
+  public synchronized Optional<Path> dump(Consumer<String> output)
+      throws IOException, InterruptedException {
+    if (!recording) return Optional.empty();
+
+    final Path classList = classListFile();
+    final Path tmp = cacheDir.resolve("randoop-" + key + ".jsa.tmp");
+    try {
+      if (!Files.isRegularFile(classList) || Files.size(classList) == 0) {
+        return Optional.empty();
+      }
+
+      final List<String> command = ImmutableList.of(
+          "java",
+          "-Xshare:dump",
+          "-XX:SharedClassListFile=" + classList,
+          "-XX:SharedArchiveFile=" + tmp,
+          "-classpath",
+          classpath.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator)));
+      final ProcessSupervisor.Result result = new ProcessSupervisor(DUMP_DEADLINE_MILLIS, 256)
+          .run(command, output);
+      if (result.isTimedOut() || result.getExitCode() != 0 || !Files.isRegularFile(tmp)) {
+        return Optional.empty();
+      }
+
+      Files.move(tmp, getArchive(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      return Optional.of(getArchive());
+    } finally {
+      recording = false;
+      Files.deleteIfExists(tmp);
+      Files.deleteIfExists(classList);
+      Files.deleteIfExists(lockFile());
+    }
+  }
+
+  private Path classListFile() {
+    return cacheDir.resolve("randoop-" + key + ".classlist");
+  }
+
+  private Path lockFile() {
+    return cacheDir.resolve("randoop-" + key + ".lock");
+  }
+
+  private boolean tryLock() {
+    final Path lock = lockFile();
+    try {
+      Files.createDirectories(cacheDir);
+      if (Files.exists(lock) && System.currentTimeMillis()
+          - Files.getLastModifiedTime(lock).toMillis() > STALE_LOCK_MILLIS) {
+        Files.deleteIfExists(lock);
+      }
+      Files.createFile(lock);
+      return true;
+    } catch (IOException e) {
+      // Including FileAlreadyExistsException: another run is recording
+      return false;
+    }
+  }
+
+  /** @return the java executable forked runs start, symbolic links resolved */
+  private static Optional<Path> javaOnPath() {
+    final String path = System.getenv("PATH");
+    if (path == null) return Optional.empty();
+
+    for (String each : Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(path)) {
+      for (String name : ImmutableList.of("java", "java.exe")) {
+        final Path candidate = Paths.get(each, name);
+        if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+          try {
+            return Optional.of(candidate.toRealPath());
+          } catch (IOException e) {
+            return Optional.of(candidate);
+          }
+        }
+      }
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,57 @@
+package randoop.maven.exec;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * JVM options for forked Randoop processes. Randoop runs are short-lived and mostly
+ * single-threaded, so the JVM's defaults (a concurrent GC, a full JIT warm-up) pay off
+ * late, if at all.
+ */
+public enum JvmProfile {
+  /** The JVM's defaults. */
+  DEFAULT,
+  /** Fast startup, for runs of a few seconds: C1 only, serial GC. */
+  STARTUP("-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xshare:auto"),
+  /** Most tests per second for long runs: parallel GC; with a max heap, a fixed-size heap. */
+  THROUGHPUT("-XX:+UseParallelGC", "-Xshare:auto"),
+  /** STARTUP for runs of up to {@link #SHORT_RUN_SECONDS}, THROUGHPUT otherwise. */
+  AUTO;
+
+  /** Longest run AUTO treats as short. */
+  public static final int SHORT_RUN_SECONDS = 30;
+
+  private final List<String> options;
+
+  JvmProfile(String... options) {
+    this.options = ImmutableList.copyOf(options);
+  }
+
+  /** @throws IllegalArgumentException if {@code name} is no profile, ignoring case */
+  public static JvmProfile of(String name) {
+    return valueOf(name.trim().toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * @param timeLimitInSeconds time limit of the run
+   * @param maxHeap            -Xmx value (e.g., 2g); empty for the JVM's default
+   * @return JVM options for a run
+   */
+  public List<String> options(int timeLimitInSeconds, String maxHeap) {
+    final JvmProfile profile = this != AUTO
+        ? this
+        : timeLimitInSeconds <= SHORT_RUN_SECONDS ? STARTUP : THROUGHPUT;
+    final ImmutableList.Builder<String> results = ImmutableList.builder();
+    results.addAll(profile.options);
+
+    if (maxHeap != null && !maxHeap.trim().isEmpty()) {
+      results.add("-Xmx" + maxHeap.trim());
+      if (profile == THROUGHPUT) {
+        // No pauses to grow the heap
+        results.add("-Xms" + maxHeap.trim());
+      }
+    }
+    return results.build();
+  }
+}
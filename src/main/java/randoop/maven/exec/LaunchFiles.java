@@ -0,0 +1,181 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+/**
+ * Files that keep the forked Randoop command line short: a JVM {@code @argfile}
+ * with the classpath, an optional manifest-only "pathing" jar that carries the
+ * classpath in its {@code Class-Path} attribute, and Randoop {@code --classlist},
+ * {@code --methodlist} and {@code --literals-file} files. Files are named after a
+ * fingerprint of their content, so they are only written when the resolved classpath
+ * (or list of classes) changes.
+ */
+public class LaunchFiles {
+
+  private final Path cacheDir;
+
+  public LaunchFiles(Path cacheDir) {
+    this.cacheDir = Preconditions.checkNotNull(cacheDir);
+  }
+
+  /** @return local file system paths of {@code urls}, instead of {@code file:} URIs */
+  public static List<Path> toPaths(Collection<URL> urls) {
+    return urls.stream().map(LaunchFiles::toPath).collect(ImmutableList.toImmutableList());
+  }
+
+  static Path toPath(URL url) {
+    try {
+      return Paths.get(url.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return Paths.get(url.getFile());
+    }
+  }
+
+  /**
+   * Fingerprints a classpath. Entries are identified by their absolute path; files
+   * (i.e., jars) also by their size and last modified time.
+   *
+   * @return hex digest of the classpath
+   */
+  public static String fingerprint(List<Path> classpath) {
+    final Hasher hasher = Hashing.sha256().newHasher();
+    for (Path each : classpath) {
+      final Path absolute = each.toAbsolutePath();
+      hasher.putString(absolute.toString(), StandardCharsets.UTF_8).putChar(';');
+      if (Files.isRegularFile(absolute)) {
+        try {
+          hasher.putLong(Files.size(absolute))
+              .putLong(Files.getLastModifiedTime(absolute).toMillis());
+        } catch (IOException ignored) {
+        }
+      }
+    }
+
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Writes (or reuses) the JVM options file for the forked process.
+   *
+   * @param classpath  resolved classpath
+   * @param pathingJar true if the classpath should go through a pathing jar
+   * @return the argument file; pass it to java as {@code @file}
+   */
+  public Path jvmArgFile(List<Path> classpath, boolean pathingJar) throws IOException {
+    final String fingerprint = fingerprint(classpath).substring(0, 16);
+    final Path argFile = cacheDir.resolve(
+        "jvm-" + fingerprint + (pathingJar ? "-pj" : "") + ".args");
+    if (Files.exists(argFile)) {
+      return argFile;
+    }
+
+    final String effectiveClasspath = pathingJar
+        ? pathingJar(classpath, fingerprint).toString()
+        : classpath.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+
+    writeAtomically(argFile, String.join("\n",
+        "-ea",
+        "-classpath",
+        quote(effectiveClasspath)) + "\n");
+    return argFile;
+  }
+
+  private Path pathingJar(List<Path> classpath, String fingerprint) throws IOException {
+    final Path jar = cacheDir.resolve("classpath-" + fingerprint + ".jar");
+    if (Files.exists(jar)) {
+      return jar;
+    }
+
+    final Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    // Class-Path entries are URLs; directories need a trailing slash
+    manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classpath.stream()
+        .map(p -> p.toAbsolutePath().toUri().toString())
+        .collect(Collectors.joining(" ")));
+
+    Files.createDirectories(cacheDir);
+    final Path tmp = Files.createTempFile(cacheDir, "classpath", ".tmp");
+    try (OutputStream out = Files.newOutputStream(tmp);
+        JarOutputStream ignored = new JarOutputStream(out, manifest)) {
+      // manifest only
+    }
+    Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return jar;
+  }
+
+  /**
+   * Writes (or reuses) a Randoop class list file; i.e., one class name per line.
+   *
+   * @return the file; pass it to Randoop as {@code --classlist=file}
+   */
+  public Path classList(Collection<String> classNames) throws IOException {
+    return listFile("classes-", classNames);
+  }
+
+  /**
+   * Writes (or reuses) a Randoop method list file; i.e., one method signature per line.
+   *
+   * @return the file; pass it to Randoop as {@code --methodlist=file}
+   */
+  public Path methodList(Collection<String> methodNames) throws IOException {
+    return listFile("methods-", methodNames);
+  }
+
+  /**
+   * Writes (or reuses) a Randoop literals file.
+   *
+   * @return the file; pass it to Randoop as {@code --literals-file=file}
+   */
+  public Path literalsFile(Collection<String> lines) throws IOException {
+    return listFile("literals-", lines);
+  }
+
+  private Path listFile(String prefix, Collection<String> lines) throws IOException {
+    final String content = String.join("\n", lines) + "\n";
+    final String fingerprint = Hashing.sha256()
+        .hashString(content, StandardCharsets.UTF_8).toString().substring(0, 16);
+    final Path file = cacheDir.resolve(prefix + fingerprint + ".txt");
+    if (!Files.exists(file)) {
+      writeAtomically(file, content);
+    }
+    return file;
+  }
+
+  private void writeAtomically(Path file, String content) throws IOException {
+    Files.createDirectories(cacheDir);
+    final Path tmp = Files.createTempFile(cacheDir, file.getFileName().toString(), ".tmp");
+    Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Quotes an argument per the java launcher's @argfile syntax. */
+  static String quote(String arg) {
+    final StringBuilder quoted = new StringBuilder("\"");
+    for (char each : arg.toCharArray()) {
+      if (each == '\\' || each == '"') {
+        quoted.append('\\');
+      }
+      quoted.append(each);
+    }
+    return quoted.append('"').toString();
+  }
+}
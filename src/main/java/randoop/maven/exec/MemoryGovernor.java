@@ -0,0 +1,62 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import java.util.function.Predicate;
+
+/**
+ * Keeps forked Randoop runs within a memory limit (e.g., that of a container). The heap
+ * gets {@link #HEAP_SHARE} of the limit; the rest is left to metaspace, code cache, GC
+ * structures and thread stacks. A run is stopped before it crosses the limit: when its
+ * resident memory reaches {@link #STOP_SHARE} of the limit, or when Randoop keeps
+ * reporting an almost full heap.
+ */
+public class MemoryGovernor {
+
+  /** Share of the limit given to the heap (-Xmx), unless a max heap is configured. */
+  public static final double HEAP_SHARE = 0.7;
+  /** Share of the limit the resident memory of a run may reach. */
+  public static final double STOP_SHARE = 0.95;
+
+  // Randoop's "MB used" includes garbage; only a heap that stays full is a problem
+  private static final double FULL_HEAP_SHARE = 0.95;
+  private static final int FULL_HEAP_UPDATES = 3;
+
+  private final long limitKilobytes;
+
+  public MemoryGovernor(long limitKilobytes) {
+    Preconditions.checkArgument(limitKilobytes > 0);
+    this.limitKilobytes = limitKilobytes;
+  }
+
+  public long getLimitKilobytes() {
+    return limitKilobytes;
+  }
+
+  /** @return resident memory at which a run is stopped, in KB */
+  public long getStopKilobytes() {
+    return (long) (limitKilobytes * STOP_SHARE);
+  }
+
+  /** @return -Xmx value for runs; e.g., 2867m */
+  public String maxHeap() {
+    return Math.max(64, (long) (limitKilobytes * HEAP_SHARE) >> 10) + "m";
+  }
+
+  /**
+   * @param maxHeapMegabytes max heap of the run
+   * @return a test, for one run, of whether Randoop's heap has stayed almost full for its
+   * latest progress updates; call it after each line of output
+   */
+  public static Predicate<RandoopProgress> fullHeap(long maxHeapMegabytes) {
+    final long[] state = {-1, 0}; // last seen steps, consecutive full updates
+    return progress -> {
+      final long steps = progress.getSteps();
+      if (steps == state[0]) return false;
+
+      state[0] = steps;
+      final long used = progress.getUsedMegabytes();
+      state[1] = used >= maxHeapMegabytes * FULL_HEAP_SHARE ? state[1] + 1 : 0;
+      return state[1] >= FULL_HEAP_UPDATES;
+    };
+  }
+}
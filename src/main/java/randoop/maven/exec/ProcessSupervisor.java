@@ -0,0 +1,304 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs a process with a hard wall-clock deadline. A dedicated pump thread (a virtual
+ * thread, on JDKs that have them) copies the process' output into a bounded ring
+ * buffer; the calling thread drains that buffer, and kills the whole process tree
+ * once the deadline passes. If the caller falls behind, the oldest lines are dropped
+ * rather than blocking the process.
+ * <p>
+ * Optionally, the process tree is also killed once the resident memory of the process
+ * goes over a limit (Linux only), or when {@link #requestStop()} is called.
+ */
+public class ProcessSupervisor {
+
+  private static final long POLL_MILLIS = 200;
+
+  private final long deadlineMillis;
+  private final int bufferCapacity;
+  private final long rssLimitKilobytes;
+  private volatile boolean stopRequested;
+
+  /**
+   * @param deadlineMillis max wall-clock time the process may run for
+   * @param bufferCapacity max number of output lines waiting to be consumed
+   */
+  public ProcessSupervisor(long deadlineMillis, int bufferCapacity) {
+    this(deadlineMillis, bufferCapacity, -1);
+  }
+
+  /**
+   * @param rssLimitKilobytes resident memory the process may use, in KB; -1 for no limit
+   */
+  public ProcessSupervisor(long deadlineMillis, int bufferCapacity, long rssLimitKilobytes) {
+    Preconditions.checkArgument(deadlineMillis > 0);
+    Preconditions.checkArgument(bufferCapacity > 0);
+    this.deadlineMillis = deadlineMillis;
+    this.bufferCapacity = bufferCapacity;
+    this.rssLimitKilobytes = rssLimitKilobytes;
+  }
+
+  /**
+   * Kills the running process as soon as possible, as if it had gone over its memory limit;
+   * e.g., from the output consumer, once the process reports its heap is almost full.
+   */
+  public void requestStop() {
+    stopRequested = true;
+  }
+
+  /**
+   * Starts {@code command}, and waits for it to exit or to run out of time.
+   *
+   * @param command command line to run
+   * @param output  receives each output line (stdout and stderr), on the calling thread
+   * @return how the process ended
+   */
+  public Result run(List<String> command, Consumer<String> output)
+      throws IOException, InterruptedException {
+    final Process process = new ProcessBuilder()
+        .command(command)
+        .redirectErrorStream(true)
+        .start();
+
+    try {
+      return supervise(process, output);
+    } catch (InterruptedException e) {
+      destroyProcessTree(process);
+      throw e;
+    }
+  }
+
+  private Result supervise(Process process, Consumer<String> output)
+      throws InterruptedException {
+    final LineRing ring = new LineRing(bufferCapacity);
+    final Thread pump = newPumpThread(() -> pump(process.getInputStream(), ring));
+    pump.start();
+
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    final List<String> lines = new ArrayList<>();
+    final Usage usage = new Usage(process.pid());
+    boolean timedOut = false;
+    boolean memoryLimited = false;
+    boolean killed = false;
+    boolean finished = false;
+    while (!finished) {
+      finished = ring.awaitAndDrain(lines, POLL_MILLIS);
+      lines.forEach(output);
+      lines.clear();
+      if (process.isAlive()) {
+        usage.sample(process);
+      }
+
+      if (!killed && System.nanoTime() > deadline) {
+        // Also reaps descendants that outlived the process, and still hold its output open
+        killed = true;
+        timedOut = process.isAlive();
+        destroyProcessTree(process);
+      } else if (!killed && (stopRequested
+          || (rssLimitKilobytes > 0 && usage.rssKilobytes > rssLimitKilobytes))) {
+        killed = true;
+        memoryLimited = process.isAlive();
+        destroyProcessTree(process);
+      }
+    }
+
+    final int exitCode = process.waitFor();
+    return new Result(exitCode, timedOut, memoryLimited, ring.dropped(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        usage.cpuMillis, usage.peakRssKilobytes);
+  }
+
+  /** Kills a process and all of its descendants. */
+  public static void destroyProcessTree(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  private static void pump(InputStream in, LineRing ring) {
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        ring.add(line);
+      }
+    } catch (IOException ignored) {
+      // Process was destroyed
+    } finally {
+      ring.close();
+    }
+  }
+
+  /** @return a virtual thread if the running JDK supports them; a daemon thread otherwise */
+  static Thread newPumpThread(Runnable task) {
+    try {
+      final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+      final Object builder = ofVirtual.invoke(null);
+      final Method unstarted = Class.forName("java.lang.Thread$Builder")
+          .getMethod("unstarted", Runnable.class);
+      return (Thread) unstarted.invoke(builder, task);
+    } catch (ReflectiveOperationException | RuntimeException notAvailable) {
+      final Thread thread = new Thread(task, "randoop-output-pump");
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * Resource usage of a running process, sampled while it runs: once it exits, the OS
+   * forgets about it. Unknown values are -1; e.g., peak RSS outside Linux.
+   */
+  private static class Usage {
+    private final Path status;
+    private long cpuMillis = -1;
+    private long peakRssKilobytes = -1;
+    private long rssKilobytes = -1;
+
+    Usage(long pid) {
+      this.status = Paths.get("/proc", String.valueOf(pid), "status");
+    }
+
+    void sample(Process process) {
+      process.info().totalCpuDuration().ifPresent(d -> cpuMillis = d.toMillis());
+      if (!Files.isReadable(status)) return;
+
+      try {
+        for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+          if (line.startsWith("VmHWM:")) {
+            peakRssKilobytes = Math.max(peakRssKilobytes,
+                Long.parseLong(line.replaceAll("\\D", "")));
+          } else if (line.startsWith("VmRSS:")) {
+            rssKilobytes = Long.parseLong(line.replaceAll("\\D", ""));
+          }
+        }
+      } catch (IOException | NumberFormatException ignored) {
+        // Process exited while being read
+      }
+    }
+  }
+
+  /** How a supervised process ended. */
+  public static class Result {
+    private final int exitCode;
+    private final boolean timedOut;
+    private final boolean memoryLimited;
+    private final long droppedLines;
+    private final long wallMillis;
+    private final long cpuMillis;
+    private final long peakRssKilobytes;
+
+    Result(int exitCode, boolean timedOut, boolean memoryLimited, long droppedLines,
+        long wallMillis, long cpuMillis, long peakRssKilobytes) {
+      this.exitCode = exitCode;
+      this.timedOut = timedOut;
+      this.memoryLimited = memoryLimited;
+      this.droppedLines = droppedLines;
+      this.wallMillis = wallMillis;
+      this.cpuMillis = cpuMillis;
+      this.peakRssKilobytes = peakRssKilobytes;
+    }
+
+    public int getExitCode() {
+      return exitCode;
+    }
+
+    /** @return true if the process was killed for missing its deadline */
+    public boolean isTimedOut() {
+      return timedOut;
+    }
+
+    /** @return true if the process was killed for its memory use, or on request */
+    public boolean isMemoryLimited() {
+      return memoryLimited;
+    }
+
+    /** @return lines dropped because the ring buffer was full */
+    public long getDroppedLines() {
+      return droppedLines;
+    }
+
+    public long getWallMillis() {
+      return wallMillis;
+    }
+
+    /** @return CPU time of the process, as last sampled; -1 if unknown */
+    public long getCpuMillis() {
+      return cpuMillis;
+    }
+
+    /** @return peak resident set size of the process, in KB; -1 if unknown */
+    public long getPeakRssKilobytes() {
+      return peakRssKilobytes;
+    }
+  }
+
+  /** Bounded ring buffer of lines; when full, new lines overwrite the oldest. */
+  static class LineRing {
+    private final String[] lines;
+    private int head;
+    private int size;
+    private long dropped;
+    private boolean closed;
+
+    LineRing(int capacity) {
+      this.lines = new String[capacity];
+    }
+
+    synchronized void add(String line) {
+      if (size == lines.length) {
+        head = (head + 1) % lines.length;
+        size--;
+        dropped++;
+      }
+      lines[(head + size) % lines.length] = line;
+      size++;
+      notifyAll();
+    }
+
+    synchronized void close() {
+      closed = true;
+      notifyAll();
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for lines, and moves all available lines to
+     * {@code sink}.
+     *
+     * @return true if there are no lines left and none will come
+     */
+    synchronized boolean awaitAndDrain(List<String> sink, long timeoutMillis)
+        throws InterruptedException {
+      if (size == 0 && !closed) {
+        wait(timeoutMillis);
+      }
+
+      while (size > 0) {
+        sink.add(lines[head]);
+        lines[head] = null;
+        head = (head + 1) % lines.length;
+        size--;
+      }
+
+      return closed;
+    }
+
+    synchronized long dropped() {
+      return dropped;
+    }
+  }
+}
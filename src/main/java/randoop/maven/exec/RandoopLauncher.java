@@ -0,0 +1,374 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+import randoop.maven.metrics.PerformanceReport;
+import randoop.maven.schedule.BudgetScheduler;
+import randoop.maven.utils.Utils;
+
+/**
+ * Builds the command lines of forked Randoop runs, and runs them: JVM options (profile,
+ * max heap, extra options, class data sharing), the classpath (on the command line, or
+ * in launch files) and Randoop's arguments; then supervises the forked JVM, within a
+ * memory limit if there is one. Both gentests and gentests-aggregate launch Randoop
+ * through it.
+ */
+public class RandoopLauncher {
+
+  public static final String RANDOOP_MAIN = "randoop.main.Main";
+  // Output lines of a forked Randoop waiting to be logged; older ones are dropped
+  private static final int OUTPUT_BUFFER_LINES = 4096;
+
+  private final Log log;
+  private final LaunchFiles launchFiles;
+  private final JvmProfile jvmProfile;
+  private final String maxHeap;
+  private final List<String> jvmArgs;
+  private final int processGraceInSeconds;
+  private final int maxLogLinesPerSecond;
+  private final boolean permitNonZeroExitStatus;
+  private boolean useArgFiles;
+  private boolean usePathingJar;
+  private CdsArchive cdsArchive;
+  private MemoryGovernor memoryGovernor;
+  private PerformanceReport report;
+
+  /**
+   * @param launchFiles where argument and list files go
+   * @param jvmProfile  JVM profile name; e.g., auto
+   * @param maxHeap     -Xmx value of forked runs; null or empty for the JVM's default
+   * @param jvmArgs     more JVM options; may be null
+   * @throws IllegalArgumentException if {@code jvmProfile} is no profile
+   */
+  public RandoopLauncher(Log log, LaunchFiles launchFiles, String jvmProfile, String maxHeap,
+      List<String> jvmArgs, int processGraceInSeconds, int maxLogLinesPerSecond,
+      boolean permitNonZeroExitStatus) {
+    this.log = Preconditions.checkNotNull(log);
+    this.launchFiles = Preconditions.checkNotNull(launchFiles);
+    this.jvmProfile = JvmProfile.of(jvmProfile);
+    this.maxHeap = Strings.emptyToNull(maxHeap);
+    this.jvmArgs = jvmArgs == null ? ImmutableList.of() : ImmutableList.copyOf(jvmArgs);
+    this.processGraceInSeconds = processGraceInSeconds;
+    this.maxLogLinesPerSecond = maxLogLinesPerSecond;
+    this.permitNonZeroExitStatus = permitNonZeroExitStatus;
+  }
+
+  /**
+   * Passes JVM options through an @argfile, and the classes under test through a
+   * Randoop --classlist file, rather than on the command line.
+   *
+   * @param pathingJar whether the classpath goes in the manifest of a pathing jar
+   */
+  public RandoopLauncher useArgFiles(boolean pathingJar) {
+    this.useArgFiles = true;
+    this.usePathingJar = pathingJar;
+    return this;
+  }
+
+  /**
+   * Starts forked runs from a class data sharing archive of {@code randoopClasspath},
+   * built by the first run, if the classpath allows it.
+   *
+   * @return true if runs use class data sharing
+   */
+  public boolean useCds(Path cdsDirectory, List<Path> randoopClasspath) {
+    if (useArgFiles && usePathingJar) {
+      log.warn("Class data sharing needs the classpath itself; not used with pathingJar");
+      return false;
+    }
+    if (randoopClasspath.isEmpty() || randoopClasspath.stream().anyMatch(Files::isDirectory)) {
+      log.warn("Class data sharing needs Randoop in jars; not used");
+      return false;
+    }
+
+    cdsArchive = new CdsArchive(cdsDirectory, randoopClasspath);
+    log.info(cdsArchive.isAvailable()
+        ? "Using class data sharing archive " + cdsArchive.getArchive()
+        : "The first Randoop run builds class data sharing archive " + cdsArchive.getArchive());
+    return true;
+  }
+
+  /** Keeps forked runs within the limit of {@code governor}. */
+  public RandoopLauncher useMemoryGovernor(MemoryGovernor governor) {
+    this.memoryGovernor = Preconditions.checkNotNull(governor);
+    return this;
+  }
+
+  /** Records every run in {@code report}. */
+  public RandoopLauncher reportTo(PerformanceReport report) {
+    this.report = Preconditions.checkNotNull(report);
+    return this;
+  }
+
+  /**
+   * @param classpath    classpath of the run, with Randoop and the classes under test
+   * @param shard        what to generate tests for
+   * @param packageName  package of the generated tests
+   * @param literalsFile Randoop literals file; null if none
+   * @return the command line of a forked Randoop run
+   */
+  public List<String> buildArgs(List<Path> classpath, Shard shard, String packageName,
+      Path literalsFile) throws IOException {
+    Preconditions.checkNotNull(classpath);
+    Preconditions.checkNotNull(shard);
+    final List<Path> effectiveClasspath = cdsArchive == null
+        ? classpath
+        : cdsArchive.classpath(classpath);
+
+    final List<String> args = Lists.newLinkedList();
+    args.add("java");
+    args.addAll(jvmProfile.options(shard.getTimeLimitInSeconds(), maxHeap()));
+    args.addAll(jvmArgs);
+    if (cdsArchive != null) {
+      args.addAll(cdsArchive.jvmOptions());
+    }
+    if (useArgFiles) {
+      args.add("@" + launchFiles.jvmArgFile(effectiveClasspath, usePathingJar));
+    } else {
+      args.add("-ea");
+      args.add("-classpath");
+      args.add(effectiveClasspath.stream()
+          .map(Path::toString)
+          .collect(Collectors.joining(File.pathSeparator)));
+    }
+    args.add(RANDOOP_MAIN);
+
+    args.add("gentests");
+    args.add("--time-limit=" + shard.getTimeLimitInSeconds());
+    args.add("--randomseed=" + shard.getRandomSeed());
+    args.add("--debug-checks=true");
+    args.add("--junit-package-name=" + packageName);
+    args.add("--junit-output-dir=" + shard.getOutputDir());
+    shard.getRegressionTestBasename().ifPresent(b -> args.add("--regression-test-basename=" + b));
+    shard.getErrorTestBasename().ifPresent(b -> args.add("--error-test-basename=" + b));
+    if (useArgFiles) {
+      args.add("--classlist=" + launchFiles.classList(shard.getClassNames()));
+    } else {
+      for (String eachClass : shard.getClassNames()) {
+        args.add("--testclass=" + eachClass);
+      }
+    }
+    if (!shard.getMethodNames().isEmpty()) {
+      args.add("--methodlist=" + launchFiles.methodList(shard.getMethodNames()));
+    }
+    if (literalsFile != null) {
+      args.add("--literals-file=" + literalsFile);
+      args.add("--literals-level=CLASS");
+    }
+
+    return args;
+  }
+
+  /** @return Randoop's arguments in a command line of {@link #buildArgs} */
+  public static List<String> randoopArgs(List<String> args) {
+    return args.subList(args.indexOf(RANDOOP_MAIN) + 1, args.size());
+  }
+
+  /** @return -Xmx value of forked runs; null for the JVM's default */
+  public String maxHeap() {
+    if (maxHeap != null) return maxHeap;
+    return memoryGovernor == null ? null : memoryGovernor.maxHeap();
+  }
+
+  /**
+   * Runs a shard with {@code runner}. With a memory governor, a run stopped for using too
+   * much memory loses its tests, but not the time it took: its classes are split in halves
+   * that run, one after the other, in the time the shard has left, and so on down to
+   * single classes. Tests of the runs that finished are kept.
+   *
+   * @param args    command line of {@code shard}
+   * @param weights weights of classes, to split them in halves of equal weight
+   * @param argsOf  builds the command line of a part of {@code shard}
+   * @return exit code of the last run
+   */
+  public int runWithinMemory(String label, Shard shard, List<String> args,
+      RandoopProgress progress, ToLongFunction<String> weights, ArgsBuilder argsOf,
+      Runner runner) throws IOException, InterruptedException {
+    if (memoryGovernor == null) {
+      return runner.run(label, shard, args, progress);
+    }
+
+    final long deadline = System.nanoTime()
+        + TimeUnit.SECONDS.toNanos(shard.getTimeLimitInSeconds());
+    final String prefix = label == null ? "" : "[" + label + "] ";
+    final Deque<List<String>> pending = new ArrayDeque<>();
+    final List<String> skipped = new ArrayList<>();
+    Shard current = shard;
+    List<String> currentArgs = args;
+    RandoopProgress currentProgress = progress;
+    int exitCode = 0;
+    int batches = 0;
+    while (true) {
+      try {
+        exitCode = runner.run(label, current, currentArgs, currentProgress);
+      } catch (MemoryLimitException e) {
+        log.warn(e.getMessage());
+        if (current.getClassNames().size() < 2) {
+          skipped.addAll(current.getClassNames());
+        } else {
+          final List<List<String>> halves = Shards.partition(
+              current.getClassNames(), 2, weights);
+          Lists.reverse(halves).forEach(pending::addFirst);
+        }
+      }
+      if (currentProgress != progress) {
+        progress.include(currentProgress);
+      }
+
+      final List<String> next = pending.poll();
+      if (next == null) break;
+
+      final long secondsLeft = TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime());
+      if (secondsLeft < BudgetScheduler.MIN_FOLLOW_UP_SECONDS) {
+        pending.addFirst(next);
+        pending.forEach(skipped::addAll);
+        break;
+      }
+
+      batches++;
+      final String id = shard.getId() + "_m" + batches;
+      current = new Shard(id, next, shard.getRandomSeed() + batches,
+          (int) (secondsLeft / (pending.size() + 1)), shard.getOutputDir(), id,
+          shard.getMethodNamesOf(next));
+      currentArgs = argsOf.build(current);
+      currentProgress = new RandoopProgress();
+      log.info(String.format("%sRestarting on %d classes for %ds within %s",
+          prefix, next.size(), current.getTimeLimitInSeconds(), memoryLimit()));
+    }
+
+    if (!skipped.isEmpty()) {
+      log.warn(String.format("%sNo tests for %d classes that need more than %s: %s",
+          prefix, skipped.size(), memoryLimit(), skipped));
+    }
+    return exitCode;
+  }
+
+  /**
+   * Runs Randoop in a forked JVM.
+   *
+   * @param label prefix of logged lines; null for none
+   * @param args  a command line of {@link #buildArgs}
+   * @return the exit code
+   * @throws MemoryLimitException if the memory governor stopped the run
+   * @throws IOException          if the run timed out or failed
+   */
+  public int execute(String label, List<String> args, RandoopProgress progress)
+      throws IOException, InterruptedException {
+    final String prefix = label == null ? "" : "[" + label + "] ";
+    final ThrottledLog output = new ThrottledLog(log, prefix, maxLogLinesPerSecond);
+    final ProcessSupervisor supervisor = new ProcessSupervisor(
+        TimeUnit.SECONDS.toMillis(timeLimitOf(args) + processGraceInSeconds),
+        OUTPUT_BUFFER_LINES,
+        memoryGovernor == null ? -1 : memoryGovernor.getStopKilobytes());
+    final String heap = maxHeap();
+    final Predicate<RandoopProgress> fullHeap = memoryGovernor == null || heap == null
+        ? p -> false
+        : MemoryGovernor.fullHeap(Utils.parseBytes(heap) >> 20);
+
+    final ProcessSupervisor.Result result = supervisor.run(args, line -> {
+      if (!progress.update(line)) {
+        output.info(line);
+      } else if (fullHeap.test(progress)) {
+        supervisor.requestStop();
+      }
+    });
+    output.reportSuppressed();
+    finishCdsRecording(prefix, args);
+
+    if (result.getDroppedLines() > 0) {
+      log.warn(prefix + result.getDroppedLines() + " lines of Randoop output were dropped");
+    }
+    log.info(prefix + "Randoop: " + progress);
+    recordRun(label, "fork", result.getExitCode(), result.isTimedOut(), result.getWallMillis(),
+        result.getCpuMillis(), result.getPeakRssKilobytes(), progress);
+
+    if (result.isTimedOut()) {
+      throw new IOException(prefix + "Randoop did not finish in time and was killed");
+    }
+    if (result.isMemoryLimited()) {
+      throw new MemoryLimitException(String.format(
+          "%sRandoop was stopped before going over %s (peak RSS %d MB, heap %d MB used)",
+          prefix, memoryLimit(), result.getPeakRssKilobytes() >> 10,
+          progress.getUsedMegabytes()));
+    }
+
+    final int exitCode = result.getExitCode();
+    if (exitCode != 0 && !permitNonZeroExitStatus) {
+      throw new IOException(prefix + "Randoop process returned " + exitCode);
+    }
+
+    return exitCode;
+  }
+
+  /** Builds the class data sharing archive, if {@code args} recorded its class list. */
+  public void finishCdsRecording(String prefix, List<String> args) {
+    if (cdsArchive == null || !CdsArchive.isRecording(args)) return;
+
+    try {
+      cdsArchive.dump(log::debug).ifPresent(archive ->
+          log.info(prefix + "Built class data sharing archive " + archive));
+    } catch (IOException e) {
+      log.warn(prefix + "Unable to build class data sharing archive: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Records a run in the performance report, if there is one. */
+  public void recordRun(String label, String mode, int exitCode, boolean timedOut,
+      long wallMillis, long cpuMillis, long peakRssKilobytes, RandoopProgress progress) {
+    if (report == null) return;
+    report.recordRun(new PerformanceReport.Run(label == null ? "randoop" : label, mode,
+        exitCode, timedOut, wallMillis, cpuMillis, peakRssKilobytes,
+        progress.getStartupMillis(), progress.getSequences(),
+        progress.getRegressionTests(), progress.getErrorTests()));
+  }
+
+  private String memoryLimit() {
+    return (memoryGovernor.getLimitKilobytes() >> 10) + " MB";
+  }
+
+  /** @return the --time-limit in a Randoop command line */
+  private static int timeLimitOf(List<String> args) {
+    return args.stream()
+        .filter(a -> a.startsWith("--time-limit="))
+        .map(a -> Integer.parseInt(a.substring("--time-limit=".length())))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("No --time-limit in " + args));
+  }
+
+  /** Runs a command line of {@link #buildArgs}; e.g., with {@link #execute}. */
+  public interface Runner {
+    int run(String label, Shard shard, List<String> args, RandoopProgress progress)
+        throws IOException, InterruptedException;
+  }
+
+  /** Builds the command line of a shard. */
+  public interface ArgsBuilder {
+    List<String> build(Shard shard) throws IOException;
+  }
+
+  /** A forked Randoop was stopped by the memory governor. */
+  public static class MemoryLimitException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    MemoryLimitException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package randoop.maven.exec;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Live metrics of a Randoop run, parsed from what Randoop prints; e.g.,
+ * <pre>
+ *   Progress update: steps=1000, test inputs generated=856, failing inputs=0  (... 64MB used)
+ *   Regression test count: 456
+ *   Error-revealing test count: 0
+ *   Created file /tmp/out/foo/RegressionTest0.java
+ * </pre>
+ * Values are updated by one thread and may be read from any other.
+ */
+public class RandoopProgress {
+
+  private static final Pattern PROGRESS = Pattern.compile(
+      "Progress update: steps=(\\d+), test inputs generated=(\\d+), failing inputs=(\\d+)"
+          + "(?:.*?(\\d+)MB used)?");
+  private static final Pattern REGRESSION_COUNT = Pattern.compile(
+      "Regression test count: (\\d+)");
+  private static final Pattern ERROR_COUNT = Pattern.compile(
+      "Error-revealing test count: (\\d+)");
+  private static final Pattern CREATED_FILE = Pattern.compile("Created file:? (.+)");
+
+  private final long startNanos;
+  private final List<Path> createdFiles = new CopyOnWriteArrayList<>();
+  private volatile long steps;
+  private volatile long sequences;
+  private volatile long failingSequences;
+  private volatile long usedMegabytes = -1;
+  private volatile long regressionTests = -1;
+  private volatile long errorTests = -1;
+  private volatile long lastUpdateNanos;
+  private volatile long firstOutputNanos = -1;
+
+  public RandoopProgress() {
+    this.startNanos = System.nanoTime();
+    this.lastUpdateNanos = startNanos;
+  }
+
+  /**
+   * Updates these metrics from a line of Randoop's output.
+   *
+   * @return true if the line is a periodic progress update
+   */
+  public boolean update(String line) {
+    if (firstOutputNanos < 0) {
+      firstOutputNanos = System.nanoTime();
+    }
+    if (line.startsWith("Progress update:")) {
+      final Matcher progress = PROGRESS.matcher(line);
+      if (progress.find()) {
+        steps = Long.parseLong(progress.group(1));
+        sequences = Long.parseLong(progress.group(2));
+        failingSequences = Long.parseLong(progress.group(3));
+        if (progress.group(4) != null) {
+          usedMegabytes = Long.parseLong(progress.group(4));
+        }
+        lastUpdateNanos = System.nanoTime();
+      }
+      return true;
+    }
+
+    Matcher matcher = REGRESSION_COUNT.matcher(line);
+    if (matcher.find()) {
+      regressionTests = Long.parseLong(matcher.group(1));
+      return false;
+    }
+
+    matcher = ERROR_COUNT.matcher(line);
+    if (matcher.find()) {
+      errorTests = Long.parseLong(matcher.group(1));
+      return false;
+    }
+
+    matcher = CREATED_FILE.matcher(line);
+    if (matcher.find()) {
+      createdFiles.add(Paths.get(matcher.group(1).trim()));
+    }
+
+    return false;
+  }
+
+  /**
+   * Adds the tests and files of a run that carried on with part of this run's work; e.g.,
+   * on fewer classes, after this one was stopped.
+   */
+  public void include(RandoopProgress continuation) {
+    if (continuation.regressionTests >= 0) {
+      regressionTests = Math.max(0, regressionTests) + continuation.regressionTests;
+    }
+    if (continuation.errorTests >= 0) {
+      errorTests = Math.max(0, errorTests) + continuation.errorTests;
+    }
+    sequences += continuation.sequences;
+    createdFiles.addAll(continuation.createdFiles);
+  }
+
+  public long getSteps() {
+    return steps;
+  }
+
+  /** @return test inputs (i.e., sequences) generated so far */
+  public long getSequences() {
+    return sequences;
+  }
+
+  public long getFailingSequences() {
+    return failingSequences;
+  }
+
+  /** @return memory Randoop reported as used, in MB; -1 if never reported */
+  public long getUsedMegabytes() {
+    return usedMegabytes;
+  }
+
+  /** @return number of regression tests; -1 if Randoop has not reported it yet */
+  public long getRegressionTests() {
+    return regressionTests;
+  }
+
+  /** @return number of error-revealing tests; -1 if Randoop has not reported it yet */
+  public long getErrorTests() {
+    return errorTests;
+  }
+
+  public List<Path> getCreatedFiles() {
+    return ImmutableList.copyOf(createdFiles);
+  }
+
+  /**
+   * @return time from the start of the run to Randoop's first line of output; i.e., JVM
+   * startup plus loading Randoop. -1 if there was no output
+   */
+  public long getStartupMillis() {
+    final long first = firstOutputNanos;
+    return first < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(first - startNanos);
+  }
+
+  public double getElapsedSeconds() {
+    return (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  /** @return seconds since the last progress update, or since the start */
+  public double getSecondsSinceUpdate() {
+    return (System.nanoTime() - lastUpdateNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  public double getSequencesPerSecond() {
+    final double elapsed = getElapsedSeconds();
+    return elapsed <= 0 ? 0 : sequences / elapsed;
+  }
+
+  @Override public String toString() {
+    return String.format("%d sequences (%.1f/s), %s regression tests, %s error tests",
+        sequences,
+        getSequencesPerSecond(),
+        regressionTests < 0 ? "?" : String.valueOf(regressionTests),
+        errorTests < 0 ? "?" : String.valueOf(errorTests));
+  }
+}
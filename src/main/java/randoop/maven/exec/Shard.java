@@ -0,0 +1,97 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A slice of the classes under test together with everything a single forked
+ * Randoop process needs to know about it: its own random seed, its own time budget,
+ * and its own JUnit output directory.
+ * <p>
+ * Shards that share a target directory must use different basenames; otherwise
+ * Randoop would emit the same {@code RegressionTest0..N} class names for each of them.
+ */
+public class Shard {
+
+  private final String id;
+  private final List<String> classNames;
+  private final int randomSeed;
+  private final int timeLimitInSeconds;
+  private final Path outputDir;
+  private final String basenameSuffix;
+  private final List<String> methodNames;
+
+  public Shard(String id, List<String> classNames, int randomSeed, int timeLimitInSeconds,
+      Path outputDir, String basenameSuffix) {
+    this(id, classNames, randomSeed, timeLimitInSeconds, outputDir, basenameSuffix,
+        ImmutableList.of());
+  }
+
+  /**
+   * @param methodNames methods and constructors to test on top of those of the classes,
+   *                    in Randoop's {@code --methodlist} format; e.g., {@code a.B.m(int)}
+   */
+  public Shard(String id, List<String> classNames, int randomSeed, int timeLimitInSeconds,
+      Path outputDir, String basenameSuffix, List<String> methodNames) {
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(id));
+    Preconditions.checkArgument(timeLimitInSeconds > 0);
+    this.id = id;
+    this.classNames = ImmutableList.copyOf(classNames);
+    this.randomSeed = randomSeed;
+    this.timeLimitInSeconds = timeLimitInSeconds;
+    this.outputDir = Preconditions.checkNotNull(outputDir);
+    this.basenameSuffix = Strings.emptyToNull(basenameSuffix);
+    this.methodNames = ImmutableList.copyOf(methodNames);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public List<String> getClassNames() {
+    return classNames;
+  }
+
+  public List<String> getMethodNames() {
+    return methodNames;
+  }
+
+  /** @return the method names declared by one of {@code classes} */
+  public List<String> getMethodNamesOf(Collection<String> classes) {
+    return methodNames.stream()
+        .filter(m -> classes.contains(m.substring(0, m.lastIndexOf('.', m.indexOf('(')))))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  public int getRandomSeed() {
+    return randomSeed;
+  }
+
+  public int getTimeLimitInSeconds() {
+    return timeLimitInSeconds;
+  }
+
+  public Path getOutputDir() {
+    return outputDir;
+  }
+
+  /** @return the basename for regression tests; e.g., {@code RegressionTest_S1_} */
+  public Optional<String> getRegressionTestBasename() {
+    return Optional.ofNullable(basenameSuffix).map(s -> "RegressionTest_" + s + "_");
+  }
+
+  /** @return the basename for error-revealing tests; e.g., {@code ErrorTest_S1_} */
+  public Optional<String> getErrorTestBasename() {
+    return Optional.ofNullable(basenameSuffix).map(s -> "ErrorTest_" + s + "_");
+  }
+
+  @Override public String toString() {
+    return id + "(" + classNames.size() + " classes, seed=" + randomSeed
+        + ", time-limit=" + timeLimitInSeconds + "s)";
+  }
+}
@@ -0,0 +1,146 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class Shards {
+
+  private Shards(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * Splits a set of classes into at most {@code count} balanced groups. Classes are
+   * handed out heaviest first, each one to the group with the least accumulated
+   * weight (greedy LPT). Ties are broken by class name so the split is stable
+   * from one build to the next.
+   *
+   * @param classNames classes to distribute
+   * @param count      max number of groups
+   * @param weight     relative cost of each class
+   * @return non-empty groups of class names
+   */
+  public static List<List<String>> partition(Collection<String> classNames, int count,
+      ToLongFunction<String> weight) {
+    Preconditions.checkNotNull(classNames);
+    Preconditions.checkArgument(count > 0);
+
+    final int groupCount = Math.min(count, classNames.size());
+    if (groupCount == 0) {
+      return ImmutableList.of();
+    }
+
+    final List<String> ordered = classNames.stream()
+        .sorted(Comparator.<String>comparingLong(weight).reversed()
+            .thenComparing(Comparator.naturalOrder()))
+        .collect(Collectors.toList());
+
+    final List<List<String>> groups = new ArrayList<>(groupCount);
+    final long[] loads = new long[groupCount];
+    final PriorityQueue<Integer> lightest = new PriorityQueue<>(
+        Comparator.<Integer>comparingLong(i -> loads[i]).thenComparingInt(i -> i));
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(new ArrayList<>());
+      lightest.add(i);
+    }
+
+    for (String each : ordered) {
+      final int target = lightest.poll();
+      groups.get(target).add(each);
+      loads[target] += Math.max(1, weight.applyAsLong(each));
+      lightest.add(target);
+    }
+
+    return groups.stream()
+        .map(ImmutableList::copyOf)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Splits a set of classes into groups of at most {@code size} classes, in name order.
+   * Unlike {@link #partition}, groups do not depend on weights or on the number of
+   * workers, so the classes of a group that is generated again end up in the same group.
+   *
+   * @param classNames classes to distribute
+   * @param size       max number of classes per group
+   * @return non-empty groups of class names
+   */
+  public static List<List<String>> chunks(Collection<String> classNames, int size) {
+    Preconditions.checkNotNull(classNames);
+    Preconditions.checkArgument(size > 0);
+
+    final List<String> ordered = classNames.stream()
+        .sorted()
+        .collect(Collectors.toList());
+    return Lists.partition(ordered, size).stream()
+        .map(ImmutableList::copyOf)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Per-shard time budget when {@code shardCount} shards share {@code parallelism}
+   * workers: shards that cannot run at the same time split the overall budget.
+   */
+  public static int timeLimitPerShard(int totalSeconds, int shardCount, int parallelism) {
+    Preconditions.checkArgument(parallelism > 0);
+    final int waves = Math.max(1, (shardCount + parallelism - 1) / parallelism);
+    return Math.max(1, totalSeconds / waves);
+  }
+
+  /**
+   * Moves the JUnit files that each shard wrote into {@code targetDir}, keeping their
+   * package-relative layout. Stale copies from earlier runs are replaced; two shards
+   * producing the same class name is an error.
+   *
+   * @return shard id to the files it contributed, now living under {@code targetDir}
+   * @throws IOException if two shards produced the same file, or a move failed
+   */
+  public static ListMultimap<String, Path> merge(List<Shard> shards, Path targetDir)
+      throws IOException {
+    Preconditions.checkNotNull(shards);
+    Preconditions.checkNotNull(targetDir);
+
+    final Set<Path> merged = new HashSet<>();
+    final ImmutableListMultimap.Builder<String, Path> results = ImmutableListMultimap.builder();
+    for (Shard each : shards) {
+      final Path shardDir = each.getOutputDir();
+      if (!Files.isDirectory(shardDir)) continue;
+
+      final List<Path> files;
+      try (Stream<Path> walk = Files.walk(shardDir)) {
+        files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+      }
+
+      for (Path file : files) {
+        final Path relative = shardDir.relativize(file);
+        if (!merged.add(relative)) {
+          throw new IOException("Duplicate generated class " + relative + " in " + each.getId());
+        }
+
+        final Path target = targetDir.resolve(relative);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        results.put(each.getId(), target);
+      }
+    }
+
+    return results.build();
+  }
+}
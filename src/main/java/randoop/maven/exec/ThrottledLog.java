@@ -0,0 +1,58 @@
+package randoop.maven.exec;
+
+import com.google.common.base.Preconditions;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Logs the output of a forked process at info level, at most {@code linesPerSecond}
+ * lines per second. Lines over that budget are counted, and the count is reported
+ * the next time a line gets through. With debug enabled, every line is logged.
+ */
+public class ThrottledLog {
+
+  private final Log log;
+  private final String prefix;
+  private final int linesPerSecond;
+  private long windowStartNanos;
+  private int linesInWindow;
+  private long suppressed;
+
+  public ThrottledLog(Log log, String prefix, int linesPerSecond) {
+    Preconditions.checkArgument(linesPerSecond > 0);
+    this.log = Preconditions.checkNotNull(log);
+    this.prefix = prefix == null ? "" : prefix;
+    this.linesPerSecond = linesPerSecond;
+    this.windowStartNanos = System.nanoTime();
+  }
+
+  public void info(String line) {
+    if (log.isDebugEnabled()) {
+      log.debug(prefix + line);
+      return;
+    }
+
+    final long now = System.nanoTime();
+    if (now - windowStartNanos >= TimeUnit.SECONDS.toNanos(1)) {
+      windowStartNanos = now;
+      linesInWindow = 0;
+    }
+
+    if (linesInWindow >= linesPerSecond) {
+      suppressed++;
+      return;
+    }
+
+    linesInWindow++;
+    reportSuppressed();
+    log.info(prefix + line);
+  }
+
+  /** Logs the lines suppressed since the last line logged, if any. */
+  public void reportSuppressed() {
+    if (suppressed > 0) {
+      log.info(prefix + "(" + suppressed + " lines not shown)");
+      suppressed = 0;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package randoop.maven.history;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams test outcomes out of surefire's {@code TEST-*.xml} reports, one
+ * {@code <testcase>} at a time; no report is ever held in memory as a whole.
+ */
+public class SurefireReports {
+
+  private static final String REPORT_GLOB = "TEST-*.xml";
+
+  private SurefireReports(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /** @return the XML reports in {@code reportsDir}, sorted by name */
+  public static List<Path> list(Path reportsDir) throws IOException {
+    final List<Path> reports = new ArrayList<>();
+    if (!Files.isDirectory(reportsDir)) {
+      return reports;
+    }
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(reportsDir, REPORT_GLOB)) {
+      stream.forEach(reports::add);
+    }
+    reports.sort(null);
+    return reports;
+  }
+
+  /**
+   * @return a hash of the names, sizes and modification times of {@code reports}; it only
+   * changes when the reports do (i.e., when tests ran again)
+   */
+  public static String fingerprint(List<Path> reports) throws IOException {
+    final Hasher hasher = Hashing.sha256().newHasher();
+    for (Path each : reports) {
+      hasher.putString(each.getFileName().toString(), StandardCharsets.UTF_8);
+      hasher.putLong(Files.size(each));
+      hasher.putLong(Files.getLastModifiedTime(each).toMillis());
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Reads every {@code <testcase>} of the given reports.
+   *
+   * @throws IOException if a report cannot be read or is not well-formed XML
+   */
+  public static void read(List<Path> reports, Consumer<TestOutcome> outcomes) throws IOException {
+    final XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+    for (Path each : reports) {
+      try (InputStream in = Files.newInputStream(each)) {
+        final XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+          read(reader, outcomes);
+        } finally {
+          reader.close();
+        }
+      } catch (XMLStreamException e) {
+        throw new IOException("Malformed surefire report " + each + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  private static void read(XMLStreamReader reader, Consumer<TestOutcome> outcomes)
+      throws XMLStreamException {
+    String className = null;
+    String methodName = null;
+    long durationMicros = 0;
+    TestOutcome.Status status = null;
+    int depth = 0;
+
+    while (reader.hasNext()) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        final String element = reader.getLocalName();
+        if (className == null) {
+          if ("testcase".equals(element)) {
+            className = Strings.nullToEmpty(reader.getAttributeValue(null, "classname"));
+            methodName = Strings.nullToEmpty(reader.getAttributeValue(null, "name"));
+            durationMicros = micros(reader.getAttributeValue(null, "time"));
+            status = TestOutcome.Status.PASSED;
+            depth = 0;
+          }
+        } else {
+          depth++;
+          // Only direct children tell the outcome; e.g., not elements inside system-out
+          if (depth == 1) {
+            status = statusOf(element, status);
+          }
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT && className != null) {
+        if (depth == 0) {
+          outcomes.accept(new TestOutcome(className, methodName, status, durationMicros));
+          className = null;
+        } else {
+          depth--;
+        }
+      }
+    }
+  }
+
+  private static TestOutcome.Status statusOf(String element, TestOutcome.Status current) {
+    switch (element) {
+      case "failure":
+        return TestOutcome.Status.FAILED;
+      case "error":
+        return TestOutcome.Status.ERROR;
+      case "skipped":
+        return current.isFailure() ? current : TestOutcome.Status.SKIPPED;
+      default:
+        // E.g., flakyFailure: it failed, then passed on a rerun
+        return current;
+    }
+  }
+
+  private static long micros(String seconds) {
+    if (Strings.isNullOrEmpty(seconds)) {
+      return 0;
+    }
+
+    try {
+      // Surefire may use a grouping separator; e.g., 1,234.5
+      return new BigDecimal(seconds.replace(",", "")).movePointRight(6).longValue();
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,353 @@
+package randoop.maven.history;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Outcomes of every test method over every recorded test run. Three files live in the
+ * history directory:
+ * <ul>
+ *   <li>{@code tests.dict}: test names, in the order they were first seen; a test's
+ *   position is its id. Append-only.</li>
+ *   <li>{@code runs.log}: one record per run: run number, timestamp, and one
+ *   (test id, status, duration) entry per test. Append-only, 9 bytes per test.</li>
+ *   <li>{@code index.bin}: per-test aggregates (runs, failures, flips, durations, ...),
+ *   plus how much of the log they cover. Rewritten after each run; if it is lost or
+ *   behind the log, the missing part of the log is replayed.</li>
+ * </ul>
+ * Queries only read the index, so they take the same time after thousands of runs.
+ */
+public class TestHistory {
+
+  private static final int LOG_MAGIC = 0x52544831; // RTH1
+  private static final int INDEX_MAGIC = 0x52544931; // RTI1
+
+  private final Path dictFile;
+  private final Path logFile;
+  private final Path indexFile;
+
+  private final List<String> names = new ArrayList<>();
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final List<TestStats> stats = new ArrayList<>();
+  private long logLength;
+  private int lastRun;
+  private String lastFingerprint = "";
+
+  private TestHistory(Path dir) {
+    this.dictFile = dir.resolve("tests.dict");
+    this.logFile = dir.resolve("runs.log");
+    this.indexFile = dir.resolve("index.bin");
+  }
+
+  /** Opens (or creates) the history in {@code dir}, repairing a torn last write if any. */
+  public static TestHistory open(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    final TestHistory history = new TestHistory(dir);
+    history.loadDictionary();
+    history.loadIndex();
+    history.replayLog();
+    return history;
+  }
+
+  /**
+   * Records a test run, unless its reports were already recorded.
+   *
+   * @param outcomes    outcome of each test of the run
+   * @param fingerprint identifies the reports the outcomes come from
+   * @return the new run number, or -1 if {@code fingerprint} is the one last recorded
+   */
+  public int appendRun(Collection<TestOutcome> outcomes, String fingerprint)
+      throws IOException {
+    Preconditions.checkNotNull(fingerprint);
+    if (fingerprint.equals(lastFingerprint)) {
+      return -1;
+    }
+
+    final List<String> added = new ArrayList<>();
+    for (TestOutcome each : outcomes) {
+      if (!ids.containsKey(each.getTestName())) {
+        ids.put(each.getTestName(), names.size());
+        names.add(each.getTestName());
+        stats.add(new TestStats(each.getTestName()));
+        added.add(each.getTestName());
+      }
+    }
+    appendToDictionary(added);
+
+    final int run = lastRun + 1;
+    final ByteArrayOutputStream record = new ByteArrayOutputStream(16 + 9 * outcomes.size());
+    try (DataOutputStream out = new DataOutputStream(record)) {
+      out.writeInt(run);
+      out.writeLong(System.currentTimeMillis());
+      out.writeInt(outcomes.size());
+      for (TestOutcome each : outcomes) {
+        final int id = ids.get(each.getTestName());
+        final int micros = (int) Math.min(Integer.MAX_VALUE, each.getDurationMicros());
+        out.writeInt(id);
+        out.writeByte(each.getStatus().ordinal());
+        out.writeInt(micros);
+        stats.get(id).add(run, each.getStatus(), micros);
+      }
+    }
+
+    if (!Files.exists(logFile)) {
+      writeLogHeader();
+    }
+    try (OutputStream out = Files.newOutputStream(logFile, StandardOpenOption.APPEND)) {
+      record.writeTo(out);
+    }
+
+    logLength += record.size();
+    lastRun = run;
+    lastFingerprint = fingerprint;
+    saveIndex();
+    return run;
+  }
+
+  /** @return number of the latest recorded run; 0 if none */
+  public int getLastRun() {
+    return lastRun;
+  }
+
+  public int getTestCount() {
+    return stats.size();
+  }
+
+  public Optional<TestStats> statsOf(String testName) {
+    final Integer id = ids.get(testName);
+    return id == null ? Optional.empty() : Optional.of(stats.get(id));
+  }
+
+  public List<TestStats> all() {
+    return ImmutableList.copyOf(stats);
+  }
+
+  /**
+   * @return tests that went from passing to failing and back at least {@code minFlips}
+   * times, most unstable first
+   */
+  public List<TestStats> flaky(int minFlips, int limit) {
+    return stats.stream()
+        .filter(s -> s.getFlips() >= minFlips)
+        .sorted(Comparator.comparingInt(TestStats::getFlips).reversed()
+            .thenComparing(Comparator.comparingInt(TestStats::getFailures).reversed())
+            .thenComparing(TestStats::getTestName))
+        .limit(limit)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** @return tests matching {@code filter}, with the highest mean duration first */
+  public List<TestStats> slowest(Predicate<String> filter, int limit) {
+    return stats.stream()
+        .filter(s -> filter.test(s.getTestName()))
+        .filter(s -> s.getRuns() > s.getSkips())
+        .sorted(Comparator.comparingDouble(TestStats::getMeanMillis).reversed()
+            .thenComparing(TestStats::getTestName))
+        .limit(limit)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * @return tests failing in the latest run that started failing in run {@code run} or
+   * later, in the order they started failing
+   */
+  public List<TestStats> failingSince(int run) {
+    return stats.stream()
+        .filter(s -> s.getLastRun() == lastRun)
+        .filter(s -> s.getFailingSinceRun() >= run)
+        .sorted(Comparator.comparingInt(TestStats::getFailingSinceRun)
+            .thenComparing(TestStats::getTestName))
+        .collect(Collectors.toList());
+  }
+
+  private void loadDictionary() throws IOException {
+    if (!Files.exists(dictFile)) return;
+
+    long good = 0;
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(dictFile)))) {
+      while (true) {
+        final String name;
+        try {
+          name = in.readUTF();
+        } catch (EOFException e) {
+          break;
+        }
+        ids.put(name, names.size());
+        names.add(name);
+        stats.add(new TestStats(name));
+        // 2-byte length prefix plus modified UTF-8; names are plain Java identifiers
+        good += 2 + utfLength(name);
+      }
+    }
+
+    truncate(dictFile, good);
+  }
+
+  private void loadIndex() {
+    if (!Files.exists(indexFile)) return;
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(indexFile)))) {
+      if (in.readInt() != INDEX_MAGIC) return;
+
+      final long coveredLog = in.readLong();
+      final int run = in.readInt();
+      final String fingerprint = in.readUTF();
+      final int count = in.readInt();
+      if (count > names.size() || coveredLog > sizeOf(logFile)) return;
+
+      final List<TestStats> loaded = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        loaded.add(TestStats.read(names.get(i), in));
+      }
+
+      for (int i = 0; i < count; i++) {
+        stats.set(i, loaded.get(i));
+      }
+      logLength = coveredLog;
+      lastRun = run;
+      lastFingerprint = fingerprint;
+    } catch (IOException | RuntimeException ignored) {
+      // Rebuilt from the log
+    }
+  }
+
+  private void replayLog() throws IOException {
+    if (!Files.exists(logFile)) return;
+
+    long good = logLength;
+    try (InputStream raw = Files.newInputStream(logFile);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+      if (logLength == 0) {
+        if (in.readInt() != LOG_MAGIC) {
+          throw new IOException("Not a test history log: " + logFile);
+        }
+        good = 4;
+      } else {
+        for (long skipped = 0; skipped < logLength; ) {
+          final long n = in.skip(logLength - skipped);
+          if (n <= 0) throw new EOFException();
+          skipped += n;
+        }
+      }
+
+      while (true) {
+        final int run;
+        try {
+          run = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+
+        try {
+          in.readLong();
+          final int count = in.readInt();
+          final int[] entries = new int[count * 3];
+          for (int i = 0; i < count; i++) {
+            entries[3 * i] = in.readInt();
+            entries[3 * i + 1] = in.readByte();
+            entries[3 * i + 2] = in.readInt();
+          }
+          for (int i = 0; i < count; i++) {
+            stats.get(entries[3 * i]).add(run,
+                TestOutcome.Status.values()[entries[3 * i + 1]], entries[3 * i + 2]);
+          }
+          good += 16 + 9L * count;
+          lastRun = run;
+          // The reports of a replayed run are unknown; they will not be recorded twice
+          lastFingerprint = "";
+        } catch (EOFException | RuntimeException e) {
+          // Torn last record
+          break;
+        }
+      }
+    }
+
+    truncate(logFile, good);
+    if (good != logLength) {
+      logLength = good;
+      saveIndex();
+    }
+  }
+
+  private void appendToDictionary(List<String> added) throws IOException {
+    if (added.isEmpty()) return;
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(dictFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+      for (String each : added) {
+        out.writeUTF(each);
+      }
+    }
+  }
+
+  private void writeLogHeader() throws IOException {
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(logFile))) {
+      out.writeInt(LOG_MAGIC);
+    }
+    logLength = 4;
+  }
+
+  private void saveIndex() throws IOException {
+    final Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(INDEX_MAGIC);
+      out.writeLong(logLength);
+      out.writeInt(lastRun);
+      out.writeUTF(lastFingerprint);
+      out.writeInt(stats.size());
+      for (TestStats each : stats) {
+        each.write(out);
+      }
+    }
+
+    Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static long sizeOf(Path file) throws IOException {
+    return Files.exists(file) ? Files.size(file) : 0;
+  }
+
+  private static void truncate(Path file, long length) throws IOException {
+    if (Files.size(file) > length) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(length);
+      }
+    }
+  }
+
+  private static int utfLength(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+    }
+    return length;
+  }
+}
@@ -0,0 +1,52 @@
+package randoop.maven.history;
+
+import com.google.common.base.Preconditions;
+
+/** Outcome of one test method in one test run. */
+public class TestOutcome {
+
+  public enum Status {
+    PASSED, FAILED, ERROR, SKIPPED;
+
+    public boolean isFailure() {
+      return this == FAILED || this == ERROR;
+    }
+  }
+
+  private final String className;
+  private final String methodName;
+  private final Status status;
+  private final long durationMicros;
+
+  public TestOutcome(String className, String methodName, Status status, long durationMicros) {
+    this.className = Preconditions.checkNotNull(className);
+    this.methodName = Preconditions.checkNotNull(methodName);
+    this.status = Preconditions.checkNotNull(status);
+    this.durationMicros = Math.max(0, durationMicros);
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /** @return class and method name; e.g., foo.RegressionTest0#test001 */
+  public String getTestName() {
+    return className + "#" + methodName;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public long getDurationMicros() {
+    return durationMicros;
+  }
+
+  @Override public String toString() {
+    return getTestName() + " " + status + " " + durationMicros + "us";
+  }
+}
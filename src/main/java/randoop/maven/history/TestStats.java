@@ -0,0 +1,153 @@
+package randoop.maven.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Optional;
+
+/** Everything the history knows about one test method, over all recorded runs. */
+public class TestStats {
+
+  private static final byte NONE = -1;
+
+  private final String testName;
+  private int runs;
+  private int failures;
+  private int skips;
+  private int flips;
+  private byte lastStatus = NONE;
+  private byte lastVerdict = NONE;
+  private int lastRun = -1;
+  private int failingSinceRun = -1;
+  private long totalMicros;
+  private int maxMicros;
+  private int lastMicros;
+
+  TestStats(String testName) {
+    this.testName = testName;
+  }
+
+  void add(int run, TestOutcome.Status status, int durationMicros) {
+    runs++;
+    lastRun = run;
+    lastStatus = (byte) status.ordinal();
+    if (status == TestOutcome.Status.SKIPPED) {
+      skips++;
+      return;
+    }
+
+    totalMicros += durationMicros;
+    maxMicros = Math.max(maxMicros, durationMicros);
+    lastMicros = durationMicros;
+
+    final byte verdict = (byte) (status.isFailure() ? 1 : 0);
+    if (lastVerdict != NONE && lastVerdict != verdict) {
+      flips++;
+    }
+    if (status.isFailure()) {
+      failures++;
+      if (lastVerdict != 1) {
+        failingSinceRun = run;
+      }
+    } else {
+      failingSinceRun = -1;
+    }
+    lastVerdict = verdict;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(runs);
+    out.writeInt(failures);
+    out.writeInt(skips);
+    out.writeInt(flips);
+    out.writeByte(lastStatus);
+    out.writeByte(lastVerdict);
+    out.writeInt(lastRun);
+    out.writeInt(failingSinceRun);
+    out.writeLong(totalMicros);
+    out.writeInt(maxMicros);
+    out.writeInt(lastMicros);
+  }
+
+  static TestStats read(String testName, DataInput in) throws IOException {
+    final TestStats stats = new TestStats(testName);
+    stats.runs = in.readInt();
+    stats.failures = in.readInt();
+    stats.skips = in.readInt();
+    stats.flips = in.readInt();
+    stats.lastStatus = in.readByte();
+    stats.lastVerdict = in.readByte();
+    stats.lastRun = in.readInt();
+    stats.failingSinceRun = in.readInt();
+    stats.totalMicros = in.readLong();
+    stats.maxMicros = in.readInt();
+    stats.lastMicros = in.readInt();
+    return stats;
+  }
+
+  /** @return class and method name; e.g., foo.RegressionTest0#test001 */
+  public String getTestName() {
+    return testName;
+  }
+
+  public String getClassName() {
+    return testName.substring(0, testName.lastIndexOf('#'));
+  }
+
+  public String getMethodName() {
+    return testName.substring(testName.lastIndexOf('#') + 1);
+  }
+
+  /** @return runs this test was reported in, skipped or not */
+  public int getRuns() {
+    return runs;
+  }
+
+  public int getFailures() {
+    return failures;
+  }
+
+  public int getSkips() {
+    return skips;
+  }
+
+  /** @return times the test went from passing to failing, or back; skipped runs aside */
+  public int getFlips() {
+    return flips;
+  }
+
+  public Optional<TestOutcome.Status> getLastStatus() {
+    return lastStatus == NONE
+        ? Optional.empty()
+        : Optional.of(TestOutcome.Status.values()[lastStatus]);
+  }
+
+  /** @return last run this test was reported in */
+  public int getLastRun() {
+    return lastRun;
+  }
+
+  /** @return first run of the current streak of failures; -1 if the test last passed */
+  public int getFailingSinceRun() {
+    return failingSinceRun;
+  }
+
+  /** @return mean duration of the runs that were not skipped; 0 if none */
+  public double getMeanMillis() {
+    final int timed = runs - skips;
+    return timed == 0 ? 0 : totalMicros / 1000.0 / timed;
+  }
+
+  public double getMaxMillis() {
+    return maxMicros / 1000.0;
+  }
+
+  public double getLastMillis() {
+    return lastMicros / 1000.0;
+  }
+
+  @Override public String toString() {
+    return String.format("%s: %d runs, %d failures, %d flips, %.1f ms mean",
+        testName, runs, failures, flips, getMeanMillis());
+  }
+}
@@ -0,0 +1,203 @@
+package randoop.maven.incremental;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Persistent map from each class under test to the hash of its class file, and
+ * from groups of classes (i.e., the classes one Randoop process was given) to the
+ * JUnit files that process wrote. Randoop mixes every class it was given into the
+ * same {@code RegressionTest*} files, so generated tests can only be attributed
+ * to a group, not to an individual class.
+ * <p>
+ * The index is a plain, tab-separated text file:
+ * <pre>
+ *   class  &lt;class name&gt;  &lt;sha-256&gt;  &lt;group id&gt;
+ *   test   &lt;group id&gt;    &lt;path relative to the target directory&gt;
+ * </pre>
+ */
+public class FingerprintIndex {
+
+  private static final String HEADER = "# randoop-maven-plugin fingerprint index v1";
+  private static final Splitter TAB = Splitter.on('\t');
+
+  private final Map<String, String> hashes;
+  private final Map<String, String> groups;
+  private final Map<String, List<String>> testFiles;
+
+  private FingerprintIndex(Map<String, String> hashes, Map<String, String> groups,
+      Map<String, List<String>> testFiles) {
+    this.hashes = hashes;
+    this.groups = groups;
+    this.testFiles = testFiles;
+  }
+
+  public static FingerprintIndex empty() {
+    return new FingerprintIndex(new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+  }
+
+  /** Loads an index; a missing or unreadable index is treated as empty. */
+  public static FingerprintIndex load(Path indexFile) {
+    final FingerprintIndex index = empty();
+    if (!Files.isRegularFile(indexFile)) {
+      return index;
+    }
+
+    try {
+      for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+        if (line.isEmpty() || line.startsWith("#")) continue;
+
+        final List<String> cols = TAB.splitToList(line);
+        if ("class".equals(cols.get(0)) && cols.size() == 4) {
+          index.hashes.put(cols.get(1), cols.get(2));
+          index.groups.put(cols.get(1), cols.get(3));
+        } else if ("test".equals(cols.get(0)) && cols.size() == 3) {
+          index.testFiles.computeIfAbsent(cols.get(1), k -> new ArrayList<>()).add(cols.get(2));
+        }
+      }
+    } catch (IOException | RuntimeException ignored) {
+      return empty();
+    }
+
+    return index;
+  }
+
+  public void save(Path indexFile) throws IOException {
+    Files.createDirectories(indexFile.getParent());
+    final Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (Map.Entry<String, String> each : hashes.entrySet()) {
+        writer.write(String.join("\t",
+            "class", each.getKey(), each.getValue(), groups.get(each.getKey())));
+        writer.newLine();
+      }
+      for (Map.Entry<String, List<String>> each : testFiles.entrySet()) {
+        for (String file : each.getValue()) {
+          writer.write(String.join("\t", "test", each.getKey(), file));
+          writer.newLine();
+        }
+      }
+    }
+
+    Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Hashes the class file of each given class. Nested classes (e.g., {@code A$1})
+   * are part of their own entries, as Randoop may test them directly.
+   *
+   * @param classesDir directory with compiled classes; e.g., target/classes
+   * @param classNames binary class names
+   * @return class name to hash, for every class whose class file exists
+   */
+  public static Map<String, String> fingerprint(Path classesDir, Collection<String> classNames)
+      throws IOException {
+    final Map<String, String> results = new LinkedHashMap<>();
+    for (String each : classNames) {
+      final Path classFile = classFile(classesDir, each);
+      if (!Files.isRegularFile(classFile)) continue;
+      //noinspection UnstableApiUsage
+      results.put(each, MoreFiles.asByteSource(classFile).hash(Hashing.sha256()).toString());
+    }
+
+    return results;
+  }
+
+  public static Path classFile(Path classesDir, String className) {
+    return classesDir.resolve(className.replace('.', '/') + ".class");
+  }
+
+  /**
+   * Computes which groups of previously generated tests are no longer valid, as at least
+   * one of their classes changed, disappeared, or lost its tests.
+   *
+   * @param current   class name to hash, for the classes found in this build
+   * @param targetDir directory where previous tests were written
+   * @return ids of invalidated groups
+   */
+  public Set<String> staleGroups(Map<String, String> current, Path targetDir) {
+    final Set<String> stale = new HashSet<>();
+    for (Map.Entry<String, String> each : hashes.entrySet()) {
+      final String group = groups.get(each.getKey());
+      if (!each.getValue().equals(current.get(each.getKey()))) {
+        stale.add(group);
+      }
+    }
+
+    for (Map.Entry<String, List<String>> each : testFiles.entrySet()) {
+      if (each.getValue().stream().anyMatch(f -> !Files.exists(targetDir.resolve(f)))) {
+        stale.add(each.getKey());
+      }
+    }
+
+    return ImmutableSet.copyOf(stale);
+  }
+
+  /**
+   * @return classes in {@code current} that need new tests: new classes, plus every
+   * current class belonging to one of the {@code staleGroups}.
+   */
+  public Set<String> classesToGenerate(Map<String, String> current, Set<String> staleGroups) {
+    final Set<String> results = new HashSet<>();
+    for (String each : current.keySet()) {
+      final String group = groups.get(each);
+      if (group == null || staleGroups.contains(group)) {
+        results.add(each);
+      }
+    }
+
+    return ImmutableSet.copyOf(results);
+  }
+
+  public List<String> testFilesOf(String groupId) {
+    return ImmutableList.copyOf(testFiles.getOrDefault(groupId, ImmutableList.of()));
+  }
+
+  /** Forgets the given groups, including the membership of their classes. */
+  public void removeGroups(Set<String> groupIds) {
+    groupIds.forEach(testFiles::remove);
+    final Set<String> gone = new HashSet<>();
+    groups.forEach((cls, group) -> {
+      if (groupIds.contains(group)) gone.add(cls);
+    });
+    gone.forEach(groups::remove);
+    gone.forEach(hashes::remove);
+  }
+
+  /** Records that a Randoop run over {@code classHashes} produced {@code files}. */
+  public void recordGroup(String groupId, Map<String, String> classHashes,
+      Collection<String> files) {
+    Preconditions.checkNotNull(groupId);
+    classHashes.forEach((cls, hash) -> {
+      hashes.put(cls, hash);
+      groups.put(cls, groupId);
+    });
+    testFiles.put(groupId, new ArrayList<>(files));
+  }
+
+  public Map<String, String> hashes() {
+    return ImmutableMap.copyOf(hashes);
+  }
+}
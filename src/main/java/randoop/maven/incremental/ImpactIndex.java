@@ -0,0 +1,258 @@
+package randoop.maven.incremental;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent record of the project classes generated tests were last run against (i.e.,
+ * the hash of each class file under the classes directory), and of the project classes
+ * each generated test class refers to in its source. Together they tell which generated
+ * tests a change can affect. Sources are read rather than class files, as tests are
+ * selected before they are compiled; e.g., right after {@code mvn clean}.
+ * <p>
+ * The index is a plain, tab-separated text file:
+ * <pre>
+ *   class  &lt;class name&gt;       &lt;sha-256&gt;
+ *   test   &lt;test class name&gt;  &lt;comma-separated project classes it refers to&gt;
+ * </pre>
+ */
+public class ImpactIndex {
+
+  private static final String HEADER = "# randoop-maven-plugin impact index v1";
+  private static final Splitter TAB = Splitter.on('\t');
+  private static final Splitter COMMA = Splitter.on(',').omitEmptyStrings();
+  private static final Pattern IMPORT = Pattern.compile(
+      "^\\s*import\\s+([\\w.$]+)\\s*;", Pattern.MULTILINE);
+  private static final Pattern NAME = Pattern.compile(
+      "[A-Za-z_$][\\w$]*(?:\\.[A-Za-z_$][\\w$]*)*");
+
+  private final Map<String, String> hashes;
+  private final Map<String, Set<String>> dependencies;
+
+  private ImpactIndex(Map<String, String> hashes, Map<String, Set<String>> dependencies) {
+    this.hashes = hashes;
+    this.dependencies = dependencies;
+  }
+
+  public static ImpactIndex empty() {
+    return new ImpactIndex(new TreeMap<>(), new TreeMap<>());
+  }
+
+  /** Loads an index; a missing or unreadable index is treated as empty. */
+  public static ImpactIndex load(Path indexFile) {
+    final ImpactIndex index = empty();
+    if (!Files.isRegularFile(indexFile)) {
+      return index;
+    }
+
+    try {
+      for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+        if (line.isEmpty() || line.startsWith("#")) continue;
+
+        final List<String> cols = TAB.splitToList(line);
+        if ("class".equals(cols.get(0)) && cols.size() == 3) {
+          index.hashes.put(cols.get(1), cols.get(2));
+        } else if ("test".equals(cols.get(0)) && cols.size() == 3) {
+          index.dependencies.put(cols.get(1), new TreeSet<>(COMMA.splitToList(cols.get(2))));
+        }
+      }
+    } catch (IOException | RuntimeException ignored) {
+      return empty();
+    }
+
+    return index;
+  }
+
+  public void save(Path indexFile) throws IOException {
+    Files.createDirectories(indexFile.getParent());
+    final Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (Map.Entry<String, String> each : hashes.entrySet()) {
+        writer.write(String.join("\t", "class", each.getKey(), each.getValue()));
+        writer.newLine();
+      }
+      for (Map.Entry<String, Set<String>> each : dependencies.entrySet()) {
+        writer.write(String.join("\t", "test", each.getKey(), String.join(",", each.getValue())));
+        writer.newLine();
+      }
+    }
+
+    Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Hashes, in parallel, every class file under {@code classesDir}.
+   *
+   * @return binary class name to hash
+   */
+  public static Map<String, String> fingerprintAll(Path classesDir) throws IOException {
+    if (!Files.isDirectory(classesDir)) return ImmutableMap.of();
+
+    final List<Path> classFiles;
+    try (Stream<Path> walk = Files.walk(classesDir)) {
+      classFiles = walk.filter(f -> f.getFileName().toString().endsWith(".class"))
+          .filter(Files::isRegularFile)
+          .collect(Collectors.toList());
+    }
+
+    try {
+      return classFiles.parallelStream().collect(Collectors.toMap(
+          f -> toClassName(classesDir.relativize(f)),
+          f -> {
+            try {
+              //noinspection UnstableApiUsage
+              return MoreFiles.asByteSource(f).hash(Hashing.sha256()).toString();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          },
+          (a, b) -> a,
+          TreeMap::new));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** @return true if the index has never recorded a build */
+  public boolean isEmpty() {
+    return hashes.isEmpty();
+  }
+
+  /** Records the project classes generated tests now run against. */
+  public void recordClasses(Map<String, String> current) {
+    hashes.clear();
+    hashes.putAll(current);
+  }
+
+  /**
+   * @param current class name to hash, for the classes of this build
+   * @return classes changed, added or removed since {@link #recordClasses}
+   */
+  public Set<String> changedClasses(Map<String, String> current) {
+    final Set<String> results = new TreeSet<>();
+    current.forEach((cls, hash) -> {
+      if (!hash.equals(hashes.get(cls))) results.add(cls);
+    });
+    hashes.keySet().stream().filter(c -> !current.containsKey(c)).forEach(results::add);
+    return results;
+  }
+
+  /**
+   * Reads the sources of generated test classes and records the project classes each
+   * refers to by name: qualified, imported, or in the test's own package. Tests not in
+   * {@code testSources} are forgotten.
+   *
+   * @param testSources     binary name of each generated test class to its source file
+   * @param projectClasses  binary names of the project classes
+   */
+  public void indexTestSources(Map<String, Path> testSources, Set<String> projectClasses)
+      throws IOException {
+    // Nested classes are written A.B in sources, and named A$B in class files
+    final Map<String, String> bySourceName = new HashMap<>();
+    projectClasses.forEach(c -> bySourceName.put(c.replace('$', '.'), c));
+
+    dependencies.keySet().retainAll(testSources.keySet());
+    for (Map.Entry<String, Path> each : testSources.entrySet()) {
+      final String testClass = each.getKey();
+      final String packageName = testClass.lastIndexOf('.') < 0
+          ? ""
+          : testClass.substring(0, testClass.lastIndexOf('.'));
+      final String source = new String(Files.readAllBytes(each.getValue()),
+          StandardCharsets.UTF_8);
+      dependencies.put(testClass, references(source, packageName, bySourceName));
+    }
+  }
+
+  /**
+   * @return the tests among {@code testClasses} that refer to one of {@code changed};
+   * tests nothing is known about are included
+   */
+  public Set<String> affectedTests(Set<String> changed, Collection<String> testClasses) {
+    final Set<String> results = new TreeSet<>();
+    for (String each : testClasses) {
+      final Set<String> references = dependencies.get(each);
+      if (references == null || references.stream().anyMatch(changed::contains)) {
+        results.add(each);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Names in comments and string literals count too; a test may then run when it need
+   * not, but never the other way around.
+   *
+   * @param bySourceName project classes, by their name in sources
+   * @return the project classes {@code source} refers to
+   */
+  static Set<String> references(String source, String packageName,
+      Map<String, String> bySourceName) {
+    final Map<String, String> imported = new HashMap<>();
+    final Matcher imports = IMPORT.matcher(source);
+    while (imports.find()) {
+      final String name = imports.group(1);
+      imported.put(name.substring(name.lastIndexOf('.') + 1), name);
+    }
+
+    final Set<String> results = new TreeSet<>();
+    final Matcher names = NAME.matcher(source);
+    while (names.find()) {
+      final String name = names.group();
+      final int dot = name.indexOf('.');
+      final String first = dot < 0 ? name : name.substring(0, dot);
+      resolve(name, bySourceName, results);
+      if (imported.containsKey(first)) {
+        resolve(imported.get(first) + name.substring(first.length()), bySourceName, results);
+      }
+      if (!packageName.isEmpty()) {
+        resolve(packageName + "." + name, bySourceName, results);
+      }
+    }
+    return results;
+  }
+
+  /** Adds the project class named by the longest prefix of {@code name}, if any. */
+  private static void resolve(String name, Map<String, String> bySourceName,
+      Set<String> results) {
+    String prefix = name;
+    while (true) {
+      final String each = bySourceName.get(prefix);
+      if (each != null) {
+        results.add(each);
+        return;
+      }
+
+      final int dot = prefix.lastIndexOf('.');
+      if (dot < 0) return;
+      prefix = prefix.substring(0, dot);
+    }
+  }
+
+  private static String toClassName(Path relativePath) {
+    final String path = relativePath.toString().replace('\\', '/');
+    return path.substring(0, path.length() - ".class".length()).replace('/', '.');
+  }
+}
@@ -0,0 +1,176 @@
+package randoop.maven.incremental;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Local, content-addressed cache of generated tests. An entry is a zip of the files one
+ * execution of gentests left in its target directory, named after a key that hashes
+ * everything those files depend on: the classes under test, the dependencies, the Randoop
+ * (and plugin) jars, and the generation parameters. Builds with the same key restore the
+ * entry instead of running Randoop.
+ * <p>
+ * Entries are touched whenever they are used; once the cache grows beyond its size limit,
+ * the least recently used entries are deleted.
+ */
+public class OutputCache {
+
+  private static final String SUFFIX = ".zip";
+
+  private final Path cacheDir;
+  private final long maxBytes;
+
+  /**
+   * @param cacheDir where entries are kept; may be shared by several projects
+   * @param maxBytes size the entries may take, in total
+   */
+  public OutputCache(Path cacheDir, long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0);
+    this.cacheDir = Preconditions.checkNotNull(cacheDir);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Computes the key of an execution.
+   *
+   * @param classHashes class name to hash, of the project classes
+   * @param jars        dependencies, Randoop and the plugin; hashed by content, in parallel
+   * @param parameters  name to value, of every parameter affecting the generated tests
+   */
+  public static String key(Map<String, String> classHashes, Collection<Path> jars,
+      Map<String, String> parameters) throws IOException {
+    final Map<String, String> jarHashes;
+    try {
+      jarHashes = jars.parallelStream()
+          .filter(Files::isRegularFile)
+          .collect(Collectors.toMap(
+              j -> j.getFileName().toString(),
+              j -> {
+                try {
+                  //noinspection UnstableApiUsage
+                  return MoreFiles.asByteSource(j).hash(Hashing.sha256()).toString();
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              },
+              (a, b) -> a + b,
+              TreeMap::new));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    final Hasher hasher = Hashing.sha256().newHasher();
+    new TreeMap<>(classHashes).forEach((k, v) -> put(hasher, "class", k, v));
+    jarHashes.forEach((k, v) -> put(hasher, "jar", k, v));
+    new TreeMap<>(parameters).forEach((k, v) -> put(hasher, "param", k, v));
+    return hasher.hash().toString();
+  }
+
+  private static void put(Hasher hasher, String kind, String key, String value) {
+    hasher.putString(kind + '\t' + key + '\t' + value + '\n', StandardCharsets.UTF_8);
+  }
+
+  public boolean contains(String key) {
+    return Files.isRegularFile(cacheDir.resolve(key + SUFFIX));
+  }
+
+  /**
+   * Unpacks the entry of {@code key} into {@code targetDir}, overwriting files there.
+   *
+   * @return the files restored; empty if there is no such entry
+   */
+  public Optional<List<Path>> restore(String key, Path targetDir) throws IOException {
+    final Path entry = cacheDir.resolve(key + SUFFIX);
+    if (!Files.isRegularFile(entry)) return Optional.empty();
+
+    final List<Path> restored = new ArrayList<>();
+    final Path root = targetDir.toAbsolutePath().normalize();
+    try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(entry))) {
+      for (ZipEntry each = zip.getNextEntry(); each != null; each = zip.getNextEntry()) {
+        final Path file = root.resolve(each.getName()).normalize();
+        Preconditions.checkState(file.startsWith(root), "Bad cache entry %s", each.getName());
+        Files.createDirectories(file.getParent());
+        Files.copy(zip, file, StandardCopyOption.REPLACE_EXISTING);
+        restored.add(file);
+      }
+    } catch (IOException | IllegalStateException e) {
+      // A damaged entry is dropped rather than restored again and again
+      Files.deleteIfExists(entry);
+      throw new IOException("Unable to restore cache entry " + entry, e);
+    }
+
+    Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    return Optional.of(restored);
+  }
+
+  /**
+   * Stores {@code files}, relative to {@code targetDir}, as the entry of {@code key}, then
+   * evicts least recently used entries beyond the size limit.
+   */
+  public void store(String key, Path targetDir, Collection<Path> files) throws IOException {
+    Files.createDirectories(cacheDir);
+    final Path tmp = Files.createTempFile(cacheDir, key, ".tmp");
+    try {
+      try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmp))) {
+        for (Path each : files.stream().sorted().collect(Collectors.toList())) {
+          zip.putNextEntry(new ZipEntry(
+              targetDir.relativize(each).toString().replace('\\', '/')));
+          Files.copy(each, zip);
+          zip.closeEntry();
+        }
+      }
+      Files.move(tmp, cacheDir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+
+    evict();
+  }
+
+  /** Deletes least recently used entries until the cache fits in its size limit. */
+  void evict() throws IOException {
+    final List<Path> entries;
+    try (Stream<Path> files = Files.list(cacheDir)) {
+      entries = files.filter(f -> f.getFileName().toString().endsWith(SUFFIX))
+          .collect(Collectors.toList());
+    }
+
+    final Map<Path, FileTime> used = new TreeMap<>();
+    long total = 0;
+    for (Path each : entries) {
+      used.put(each, Files.getLastModifiedTime(each));
+      total += Files.size(each);
+    }
+
+    final List<Path> oldestFirst = entries.stream()
+        .sorted(Comparator.comparing(used::get))
+        .collect(Collectors.toList());
+    for (Path each : oldestFirst) {
+      if (total <= maxBytes) break;
+      total -= Files.size(each);
+      Files.deleteIfExists(each);
+    }
+  }
+}
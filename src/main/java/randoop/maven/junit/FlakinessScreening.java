@@ -0,0 +1,307 @@
+package randoop.maven.junit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Runs generated tests several times to find those whose outcome is not stable (e.g.,
+ * they depend on hash ordering, the clock, or state other tests leave behind). Runs go in
+ * parallel; each one loads the tests and the code under test in a class loader of its own,
+ * so static state does not leak from one run into another, and runs them in its own
+ * order: the first run in Randoop's, the others shuffled.
+ * <p>
+ * JUnit is loaded from the classpath given, not from the plugin's, and called reflectively.
+ */
+public class FlakinessScreening {
+
+  /** A test running longer than this counts as timed out. */
+  public static final long TEST_TIMEOUT_MILLIS = 10_000;
+
+  public enum Outcome { PASS, FAIL, TIMEOUT }
+
+  private FlakinessScreening(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * Checks, before any test is generated, that screening will be able to run tests.
+   *
+   * @throws IOException if {@code org.junit.runner.JUnitCore} cannot be loaded from
+   *                     {@code classpath}
+   */
+  public static void requireJUnit(List<URL> classpath) throws IOException {
+    try (URLClassLoader loader = new URLClassLoader(classpath.toArray(new URL[0]),
+        ClassLoader.getPlatformClassLoader())) {
+      loader.loadClass("org.junit.runner.JUnitCore");
+    } catch (ClassNotFoundException | LinkageError e) {
+      throw new IOException("JUnit 4 is not on the test classpath", e);
+    }
+  }
+
+  /**
+   * @param classpath the compiled tests, the code under test, its dependencies and JUnit 4
+   * @param tests     test methods to run, by qualified class name; in Randoop's order
+   * @param runs      times each test runs
+   * @param threads   runs going at once
+   * @param seed      seed of the shuffled orders
+   * @throws IOException if JUnit cannot be loaded from {@code classpath}
+   */
+  public static Result screen(List<URL> classpath, Map<String, List<String>> tests, int runs,
+      int threads, long seed) throws IOException, InterruptedException {
+    Preconditions.checkArgument(runs > 1, "Screening takes at least two runs");
+    Preconditions.checkArgument(threads > 0);
+
+    final List<String> order = new ArrayList<>();
+    tests.forEach((c, methods) -> methods.forEach(m -> order.add(c + "#" + m)));
+    final URL[] urls = classpath.toArray(new URL[0]);
+
+    final ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, runs));
+    try {
+      final List<Future<Map<String, Outcome>>> pending = new ArrayList<>();
+      for (int i = 0; i < runs; i++) {
+        final List<String> runOrder = new ArrayList<>(order);
+        if (i > 0) {
+          Collections.shuffle(runOrder, new Random(seed + i));
+        }
+        pending.add(pool.submit(() -> run(urls, runOrder)));
+      }
+
+      final Map<String, List<Outcome>> outcomes = new LinkedHashMap<>();
+      order.forEach(t -> outcomes.put(t, new ArrayList<>()));
+      for (Future<Map<String, Outcome>> each : pending) {
+        each.get().forEach((t, o) -> outcomes.get(t).add(o));
+      }
+      return new Result(runs, outcomes);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException("Unable to run generated tests", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /** Runs {@code tests} (class#method), in that order, in a new class loader. */
+  private static Map<String, Outcome> run(URL[] classpath, List<String> tests)
+      throws IOException, InterruptedException {
+    final Map<String, Outcome> outcomes = new LinkedHashMap<>();
+    try (URLClassLoader loader = new URLClassLoader(classpath,
+        ClassLoader.getPlatformClassLoader())) {
+      final Object core;
+      final Method requestMethod;
+      final Method runRequest;
+      try {
+        final Class<?> request = loader.loadClass("org.junit.runner.Request");
+        core = loader.loadClass("org.junit.runner.JUnitCore").getConstructor().newInstance();
+        requestMethod = request.getMethod("method", Class.class, String.class);
+        runRequest = core.getClass().getMethod("run", request);
+      } catch (ReflectiveOperationException e) {
+        throw new IOException("JUnit 4 is not on the test classpath", e);
+      }
+
+      ExecutorService runner = newRunner(loader);
+      try {
+        for (String each : tests) {
+          final int hash = each.indexOf('#');
+          final String className = each.substring(0, hash);
+          final String methodName = each.substring(hash + 1);
+          final Future<Boolean> outcome = runner.submit(() -> {
+            final Object request = requestMethod.invoke(
+                null, loader.loadClass(className), methodName);
+            final Object result = runRequest.invoke(core, request);
+            return (Boolean) result.getClass().getMethod("wasSuccessful").invoke(result);
+          });
+
+          try {
+            outcomes.put(each, outcome.get(TEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                ? Outcome.PASS
+                : Outcome.FAIL);
+          } catch (TimeoutException e) {
+            outcomes.put(each, Outcome.TIMEOUT);
+            // The test may never stop; later tests get a new thread
+            runner.shutdownNow();
+            runner = newRunner(loader);
+          } catch (ExecutionException e) {
+            // E.g., the class does not load in this run
+            outcomes.put(each, Outcome.FAIL);
+          }
+        }
+      } finally {
+        runner.shutdownNow();
+      }
+    }
+    return outcomes;
+  }
+
+  private static ExecutorService newRunner(ClassLoader loader) {
+    return Executors.newSingleThreadExecutor(r -> {
+      final Thread thread = new Thread(r, "randoop-screening");
+      thread.setDaemon(true);
+      thread.setContextClassLoader(loader);
+      return thread;
+    });
+  }
+
+  /**
+   * Moves {@code tests} out of {@code files} into classes of the same name in
+   * {@code quarantineDir}, which collect the quarantined tests of earlier builds too.
+   * Classes left without tests are deleted, as are their entries in suites.
+   *
+   * @param files generated test classes, suites included
+   * @param tests tests to move, as class#method
+   * @return the test classes left
+   */
+  public static List<Path> quarantine(List<Path> files, Set<String> tests, Path quarantineDir)
+      throws IOException {
+    if (tests.isEmpty()) return files;
+
+    final List<Path> remaining = new ArrayList<>();
+    final List<Path> suites = new ArrayList<>();
+    final Set<String> deletedClasses = new HashSet<>();
+    for (Path each : files) {
+      final TestSource source = TestSource.read(each);
+      if (source.isSuite()) {
+        suites.add(each);
+        continue;
+      }
+
+      final List<TestSource.Member> kept = new ArrayList<>();
+      final List<TestSource.Member> moved = new ArrayList<>();
+      for (TestSource.Member member : source.getMembers()) {
+        final boolean quarantined = member.getKind() == TestSource.Kind.TEST
+            && tests.contains(source.getQualifiedName() + "#" + member.getName());
+        (quarantined ? moved : kept).add(member);
+      }
+      if (moved.isEmpty()) {
+        remaining.add(each);
+        continue;
+      }
+
+      writeQuarantined(source, moved, quarantineDir);
+      if (kept.stream().anyMatch(m -> m.getKind() == TestSource.Kind.TEST)) {
+        source.with(source.getClassName(), kept).write(each);
+        remaining.add(each);
+      } else {
+        Files.delete(each);
+        deletedClasses.add(source.getClassName());
+      }
+    }
+
+    for (Path each : suites) {
+      if (!deletedClasses.isEmpty()) {
+        TestDeduplicator.removeFromSuite(each, deletedClasses);
+      }
+      remaining.add(each);
+    }
+    return remaining;
+  }
+
+  private static void writeQuarantined(TestSource source, List<TestSource.Member> tests,
+      Path quarantineDir) throws IOException {
+    final Path file = quarantineDir
+        .resolve(source.getPackageName().replace('.', '/'))
+        .resolve(source.getClassName() + ".java");
+    final List<TestSource.Member> members = new ArrayList<>();
+    final Set<String> names = new HashSet<>();
+    if (Files.isRegularFile(file)) {
+      for (TestSource.Member each : TestSource.read(file).getMembers()) {
+        members.add(each);
+        names.add(each.getName());
+      }
+    } else {
+      // Fields (e.g., debug) the tests use
+      source.getMembers().stream()
+          .filter(m -> m.getKind() == TestSource.Kind.FIELD)
+          .forEach(m -> {
+            members.add(m);
+            names.add(m.getName());
+          });
+    }
+    tests.stream().filter(t -> !names.contains(t.getName())).forEach(members::add);
+
+    Files.createDirectories(file.getParent());
+    source.with(source.getClassName(), members).write(file);
+  }
+
+  public static class Result {
+    private final int runs;
+    private final Map<String, List<Outcome>> outcomes;
+
+    Result(int runs, Map<String, List<Outcome>> outcomes) {
+      this.runs = runs;
+      this.outcomes = ImmutableMap.copyOf(outcomes);
+    }
+
+    public int getRuns() {
+      return runs;
+    }
+
+    /** @return outcomes of each test (class#method), one per run */
+    public Map<String, List<Outcome>> getOutcomes() {
+      return outcomes;
+    }
+
+    /** @return tests with different outcomes in different runs */
+    public List<String> getFlaky() {
+      return outcomes.entrySet().stream()
+          .filter(e -> e.getValue().stream().distinct().count() > 1)
+          .map(Map.Entry::getKey)
+          .collect(ImmutableList.toImmutableList());
+    }
+
+    /** @return tests that failed or timed out in every run */
+    public List<String> getFailing() {
+      return outcomes.entrySet().stream()
+          .filter(e -> e.getValue().stream().noneMatch(o -> o == Outcome.PASS))
+          .map(Map.Entry::getKey)
+          .collect(ImmutableList.toImmutableList());
+    }
+
+    public void writeJson(Path file) throws IOException {
+      final List<String> flaky = getFlaky();
+      final List<String> failing = getFailing();
+      final StringBuilder json = new StringBuilder();
+      json.append("{\n");
+      json.append("  \"runs\": ").append(runs).append(",\n");
+      json.append("  \"tests\": ").append(outcomes.size()).append(",\n");
+      json.append("  \"quarantined\": [");
+      json.append(outcomes.entrySet().stream()
+          .filter(e -> flaky.contains(e.getKey()) || failing.contains(e.getKey()))
+          .map(e -> String.format(Locale.ROOT,
+              "\n    {\"test\": \"%s\", \"reason\": \"%s\", \"outcomes\": [%s]}",
+              e.getKey(), flaky.contains(e.getKey()) ? "flaky" : "failing",
+              e.getValue().stream()
+                  .map(o -> "\"" + o.name().toLowerCase(Locale.ROOT) + "\"")
+                  .collect(Collectors.joining(", "))))
+          .collect(Collectors.joining(",")));
+      json.append(flaky.isEmpty() && failing.isEmpty() ? "]\n" : "\n  ]\n");
+      json.append("}\n");
+
+      Files.createDirectories(file.getParent());
+      Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
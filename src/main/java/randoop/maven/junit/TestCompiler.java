@@ -0,0 +1,508 @@
+package randoop.maven.junit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import randoop.maven.utils.Utils;
+
+/**
+ * Compiles generated test classes while Randoop is still generating others, so they are
+ * compiled by the time generation ends. Directories Randoop writes to are watched for test
+ * files; a file is compiled once it has not changed for {@link #SETTLE_MILLIS}, in
+ * batches, on a few threads with the in-process {@code javax.tools} compiler. Suites
+ * refer to the classes they list, so they are only compiled by {@link #finish}.
+ * <p>
+ * Tests are rewritten after generation (deduplicated, rebalanced, moved out of shard
+ * directories), so {@link #finish} compiles whatever changed since, deletes the classes of
+ * sources that are gone, and rejects sources that do not compile: they are deleted and
+ * removed from their suites.
+ */
+public class TestCompiler implements Closeable {
+
+  /** Time a file must stay unchanged before it is compiled. */
+  public static final long SETTLE_MILLIS = 500;
+  /** Most files compiled at once; one javac task per batch amortizes its startup. */
+  public static final int BATCH_SIZE = 16;
+
+  private static final long POLL_MILLIS = 200;
+
+  private final JavaCompiler compiler;
+  private final List<Path> roots;
+  private final Path outputDir;
+  private final List<String> options;
+  private final Consumer<String> log;
+  private final ExecutorService pool;
+  // javac's file managers are not thread-safe: one per thread, shared by its batches
+  private final ThreadLocal<StandardJavaFileManager> fileManagers;
+  private final List<StandardJavaFileManager> allFileManagers = new ArrayList<>();
+
+  private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+  private final Map<Path, Long> changes = new LinkedHashMap<>();
+  private final List<Path> settled = new ArrayList<>();
+  private final List<Future<Integer>> batches = new ArrayList<>();
+  // by file name: shard files keep their name (and modification time) when merged
+  private final Map<String, Long> compiled = new ConcurrentHashMap<>();
+  private final Map<String, Set<Path>> outputs = new ConcurrentHashMap<>();
+  private final Set<Path> rejected = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger overlapped = new AtomicInteger();
+
+  private WatchService watcher;
+  private Thread watcherThread;
+  private volatile boolean watching;
+  private long lastSettled;
+
+  /**
+   * @param roots     directories Randoop writes to; they need not exist yet
+   * @param outputDir where class files go
+   * @param classpath classpath of the tests
+   * @param release   Java release to compile for (e.g., 11); empty for the JDK's own
+   * @param threads   compiling threads
+   * @param log       receives rejected tests and compiler errors
+   * @throws IllegalStateException if no compiler is available (e.g., running on a JRE)
+   */
+  public TestCompiler(List<Path> roots, Path outputDir, List<Path> classpath, String release,
+      int threads, Consumer<String> log) {
+    Preconditions.checkArgument(!roots.isEmpty());
+    Preconditions.checkArgument(threads > 0);
+    this.compiler = ToolProvider.getSystemJavaCompiler();
+    Preconditions.checkState(compiler != null, "No Java compiler; is Maven running on a JRE?");
+
+    this.roots = ImmutableList.copyOf(roots);
+    this.outputDir = Preconditions.checkNotNull(outputDir);
+    this.log = Preconditions.checkNotNull(log);
+
+    final List<String> opts = new ArrayList<>(ImmutableList.of(
+        "-d", outputDir.toString(),
+        // Suites are compiled against the classes they list
+        "-classpath", Stream.concat(Stream.of(outputDir), classpath.stream())
+            .map(Path::toString)
+            .collect(Collectors.joining(File.pathSeparator)),
+        "-encoding", "UTF-8",
+        "-proc:none",
+        "-nowarn",
+        "-g"));
+    if (release != null && !release.trim().isEmpty()) {
+      opts.add("--release");
+      opts.add(release.trim());
+    }
+    this.options = ImmutableList.copyOf(opts);
+
+    this.pool = Executors.newFixedThreadPool(threads, r -> {
+      final Thread thread = new Thread(r, "randoop-test-compiler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.fileManagers = ThreadLocal.withInitial(() -> {
+      final StandardJavaFileManager fileManager = compiler.getStandardFileManager(
+          null, Locale.ROOT, null);
+      synchronized (allFileManagers) {
+        allFileManagers.add(fileManager);
+      }
+      return fileManager;
+    });
+  }
+
+  /** Starts watching the roots; test files already in them are not compiled until finish. */
+  public void start() throws IOException {
+    Preconditions.checkState(watcher == null, "Already started");
+    Files.createDirectories(outputDir);
+    watcher = FileSystems.getDefault().newWatchService();
+    watching = true;
+    registerRoots(false);
+    watcherThread = new Thread(this::watch, "randoop-test-watcher");
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+  }
+
+  /**
+   * Stops watching, waits for running batches, and brings the class files in line with
+   * {@code sources}: compiles those not compiled in their current version (suites last),
+   * rejects those that do not compile, and deletes classes compiled from other sources.
+   *
+   * @param sources the generated test classes to keep, suites included
+   */
+  public Result finish(Collection<Path> sources) throws InterruptedException {
+    watching = false;
+    if (watcherThread != null) {
+      watcherThread.join();
+    }
+    awaitBatches();
+
+    final Set<String> names = sources.stream()
+        .map(p -> p.getFileName().toString())
+        .collect(Collectors.toSet());
+    int deleted = 0;
+    for (String each : new ArrayList<>(outputs.keySet())) {
+      if (!names.contains(each)) {
+        deleted += deleteOutputsOf(each);
+      }
+    }
+
+    final List<Path> tests = new ArrayList<>();
+    final List<Path> suites = new ArrayList<>();
+    for (Path each : sources) {
+      if (!Files.isRegularFile(each) || isCompiled(each)) continue;
+      (isSuite(each) ? suites : tests).add(each);
+    }
+    int compiledAtFinish = compileAll(tests);
+
+    final Set<String> rejectedClasses = rejected.stream()
+        .map(p -> p.getFileName().toString().replaceFirst("\\.java$", ""))
+        .collect(Collectors.toSet());
+    for (Path each : suites) {
+      if (!rejectedClasses.isEmpty()) {
+        try {
+          TestDeduplicator.removeFromSuite(each, rejectedClasses);
+        } catch (IOException e) {
+          log.accept("Unable to update suite " + each.getFileName() + ": " + e.getMessage());
+        }
+      }
+    }
+    compiledAtFinish += compileAll(suites);
+
+    final int kept = (int) sources.stream()
+        .filter(Files::isRegularFile)
+        .filter(f -> !isSuite(f))
+        .count();
+    return new Result(overlapped.get(), compiledAtFinish, ImmutableList.copyOf(rejected),
+        deleted, kept);
+  }
+
+  @Override public void close() throws IOException {
+    watching = false;
+    pool.shutdownNow();
+    if (watcher != null) {
+      watcher.close();
+    }
+    synchronized (allFileManagers) {
+      for (StandardJavaFileManager each : allFileManagers) {
+        each.close();
+      }
+      allFileManagers.clear();
+    }
+  }
+
+  private void watch() {
+    try {
+      while (watching) {
+        registerRoots(true);
+        final WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          handle(key);
+        }
+        dispatchSettled(false);
+      }
+      // Randoop has exited: what it wrote is settled
+      WatchKey key;
+      while ((key = watcher.poll()) != null) {
+        handle(key);
+      }
+      dispatchSettled(true);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException ignored) {
+      // closed
+    }
+  }
+
+  /** @param created whether roots appeared since start, so their files are all new */
+  private void registerRoots(boolean created) {
+    for (Path each : roots) {
+      if (Files.isDirectory(each) && !watchedDirs.containsValue(each)) {
+        register(each);
+        if (created) {
+          Utils.findFiles(each, Utils.JAVA_MATCHER).forEach(this::changed);
+        }
+      }
+    }
+  }
+
+  private void register(Path dir) {
+    try (Stream<Path> walk = Files.walk(dir)) {
+      for (Path each : walk.filter(Files::isDirectory).collect(Collectors.toList())) {
+        if (!watchedDirs.containsValue(each)) {
+          watchedDirs.put(each.register(watcher,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY), each);
+        }
+      }
+    } catch (IOException e) {
+      // Deleted while walking (e.g., an old shard directory); registered once recreated
+    }
+  }
+
+  private void handle(WatchKey key) {
+    final Path dir = watchedDirs.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+
+      final Path changed = dir.resolve((Path) event.context());
+      if (Files.isDirectory(changed)) {
+        register(changed);
+        // Files written before the directory was registered
+        Utils.findFiles(changed, Utils.JAVA_MATCHER).forEach(this::changed);
+      } else {
+        changed(changed);
+      }
+    }
+    if (!key.reset()) {
+      watchedDirs.remove(key);
+    }
+  }
+
+  private void changed(Path file) {
+    final String name = file.getFileName().toString();
+    if (Utils.JAVA_MATCHER.matches(file.getFileName())
+        && Utils.RANDOOP_TESTS_PRED.test(name)) {
+      changes.put(file, System.currentTimeMillis());
+    }
+  }
+
+  private void dispatchSettled(boolean all) {
+    final long now = System.currentTimeMillis();
+    changes.entrySet().removeIf(e -> {
+      if (!all && now - e.getValue() < SETTLE_MILLIS) return false;
+
+      final Path file = e.getKey();
+      if (Files.isRegularFile(file) && !isCompiled(file) && !isSuite(file)) {
+        settled.add(file);
+        lastSettled = now;
+      }
+      return true;
+    });
+
+    // A partial batch waits a little for more files, unless Randoop is done
+    while (settled.size() >= BATCH_SIZE
+        || (!settled.isEmpty() && (all || now - lastSettled >= SETTLE_MILLIS))) {
+      final List<Path> batch = new ArrayList<>(
+          settled.subList(0, Math.min(BATCH_SIZE, settled.size())));
+      settled.subList(0, batch.size()).clear();
+      synchronized (batches) {
+        batches.add(pool.submit(() -> overlapped.addAndGet(compile(batch))));
+      }
+    }
+  }
+
+  private int compileAll(List<Path> files) throws InterruptedException {
+    for (int i = 0; i < files.size(); i += BATCH_SIZE) {
+      final List<Path> batch = files.subList(i, Math.min(files.size(), i + BATCH_SIZE));
+      synchronized (batches) {
+        batches.add(pool.submit(() -> compile(batch)));
+      }
+    }
+    return awaitBatches();
+  }
+
+  /** @return number of files the batches compiled */
+  private int awaitBatches() throws InterruptedException {
+    final List<Future<Integer>> pending;
+    synchronized (batches) {
+      pending = new ArrayList<>(batches);
+      batches.clear();
+    }
+    int results = 0;
+    for (Future<Integer> each : pending) {
+      try {
+        results += each.get();
+      } catch (ExecutionException e) {
+        log.accept("Unable to compile generated tests: " + e.getCause());
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Compiles {@code batch}; files with errors are rejected and the others compiled again.
+   *
+   * @return number of files compiled
+   */
+  private int compile(List<Path> batch) {
+    final List<Path> files = batch.stream()
+        .map(p -> p.toAbsolutePath().normalize())
+        .filter(Files::isRegularFile)
+        .collect(Collectors.toList());
+    if (files.isEmpty()) return 0;
+
+    final Map<Path, Long> versions = new HashMap<>();
+    for (Path each : files) {
+      versions.put(each, lastModified(each));
+    }
+
+    final StandardJavaFileManager fileManager = fileManagers.get();
+    final Map<String, Set<Path>> produced = new HashMap<>();
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    final boolean success = compiler.getTask(null, recording(fileManager, produced),
+        diagnostics, options, null, fileManager.getJavaFileObjectsFromPaths(files)).call();
+
+    if (success) {
+      for (Path each : files) {
+        final String name = each.getFileName().toString();
+        compiled.put(name, versions.get(each));
+        outputs.put(name, produced.getOrDefault(name, new HashSet<>()));
+      }
+      return files.size();
+    }
+
+    final Set<Path> failing = new HashSet<>();
+    for (Diagnostic<? extends JavaFileObject> each : diagnostics.getDiagnostics()) {
+      if (each.getKind() != Diagnostic.Kind.ERROR) continue;
+      if (each.getSource() == null) {
+        log.accept(each.getMessage(Locale.ROOT));
+        continue;
+      }
+
+      final Path source = Paths.get(each.getSource().toUri());
+      if (files.contains(source) && failing.add(source)) {
+        log.accept(String.format("%s:%d: %s", source.getFileName(), each.getLineNumber(),
+            each.getMessage(Locale.ROOT)));
+      }
+    }
+    // Moved or rewritten during compilation; finish compiles the current version
+    files.removeIf(f -> lastModified(f) != versions.get(f));
+    if (failing.isEmpty() || !files.containsAll(failing)) {
+      return 0;
+    }
+
+    for (Path each : failing) {
+      reject(each);
+    }
+    files.removeAll(failing);
+    return compile(files);
+  }
+
+  private void reject(Path file) {
+    final String name = file.getFileName().toString();
+    rejected.add(file);
+    compiled.remove(name);
+    deleteOutputsOf(name);
+    Utils.deleteFileQuietly(file);
+  }
+
+  private int deleteOutputsOf(String sourceName) {
+    final Set<Path> classFiles = outputs.remove(sourceName);
+    compiled.remove(sourceName);
+    if (classFiles == null) return 0;
+
+    classFiles.forEach(Utils::deleteFileQuietly);
+    return classFiles.size();
+  }
+
+  private boolean isCompiled(Path file) {
+    final Long version = compiled.get(file.getFileName().toString());
+    return version != null && version == lastModified(file);
+  }
+
+  private static boolean isSuite(Path file) {
+    try {
+      return TestSource.read(file).isSuite();
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /** @return {@code fileManager}, recording the class files written for each source */
+  private static JavaFileManager recording(StandardJavaFileManager fileManager,
+      Map<String, Set<Path>> produced) {
+    return new ForwardingJavaFileManager<JavaFileManager>(fileManager) {
+      @Override public JavaFileObject getJavaFileForOutput(Location location, String className,
+          JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+        final JavaFileObject output = super.getJavaFileForOutput(
+            location, className, kind, sibling);
+        if (sibling != null && "file".equals(output.toUri().getScheme())) {
+          final String source = Paths.get(sibling.toUri()).getFileName().toString();
+          produced.computeIfAbsent(source, k -> new HashSet<>()).add(Paths.get(output.toUri()));
+        }
+        return output;
+      }
+    };
+  }
+
+  public static class Result {
+    private final int overlapped;
+    private final int compiledAtFinish;
+    private final List<Path> rejected;
+    private final int deletedClassFiles;
+    private final int kept;
+
+    Result(int overlapped, int compiledAtFinish, List<Path> rejected, int deletedClassFiles,
+        int kept) {
+      this.overlapped = overlapped;
+      this.compiledAtFinish = compiledAtFinish;
+      this.rejected = rejected;
+      this.deletedClassFiles = deletedClassFiles;
+      this.kept = kept;
+    }
+
+    /** @return test files compiled while Randoop was running */
+    public int getOverlapped() {
+      return overlapped;
+    }
+
+    /** @return test files (e.g., suites, rewritten classes) compiled by finish */
+    public int getCompiledAtFinish() {
+      return compiledAtFinish;
+    }
+
+    /** @return test files that did not compile, now deleted */
+    public List<Path> getRejected() {
+      return rejected;
+    }
+
+    /** @return class files of sources no longer there, now deleted */
+    public int getDeletedClassFiles() {
+      return deletedClassFiles;
+    }
+
+    /** @return test classes (i.e., not suites) among the sources that compiled */
+    public int getKept() {
+      return kept;
+    }
+  }
+}
@@ -0,0 +1,504 @@
+package randoop.maven.junit;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes generated tests that check nothing another generated test does not. Each test
+ * method is normalized (comments, layout and the {@code debug} trace dropped; locals only
+ * ever holding a literal replaced by the literal, so it does not matter whether a value is
+ * passed inline or through a local; other local variables renamed after the order they
+ * are declared in) and split into its call sequence and its assertions, each assertion tagged with the number of calls before it.
+ * Among tests with the same call sequence, a test is dropped if its assertions are also
+ * made by a test that is kept: it is either a duplicate (same assertions) or subsumed
+ * (fewer assertions).
+ */
+public class TestDeduplicator {
+
+  /** Rough javac throughput on Randoop's tests; only used to estimate savings */
+  static final double COMPILE_MILLIS_PER_KB = 2.0;
+
+  private static final Pattern ASSERTION = Pattern.compile(
+      "^(?:org \\. junit \\. )?(?:Assert \\. )?(?:assert\\w*|fail) \\(");
+  private static final Pattern SUITE_CLASSES = Pattern.compile(
+      "(SuiteClasses\\s*\\(\\s*\\{)([^}]*)(\\})");
+  private static final Set<String> KEYWORDS = ImmutableSet.of(
+      "return", "throw", "new", "case", "else", "assert", "instanceof");
+  private static final List<String> DEBUG_TRACE = ImmutableList.of("if", "(", "debug", ")");
+
+  private TestDeduplicator(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * Drops redundant tests from {@code files}, rewriting the classes that lose tests and
+   * deleting those left without any, as well as their entries in suites.
+   *
+   * @param files      generated test classes, suites included
+   * @param durationOf recorded duration, in ms, of a test (class#method); NaN if unknown
+   */
+  public static Result deduplicate(List<Path> files, ToDoubleFunction<String> durationOf)
+      throws IOException {
+    final List<Path> suites = new ArrayList<>();
+    final Map<Path, TestSource> sources = new LinkedHashMap<>();
+    for (Path each : files) {
+      final TestSource source = TestSource.read(each);
+      if (source.isSuite()) {
+        suites.add(each);
+      } else {
+        sources.put(each, source);
+      }
+    }
+
+    // Tests with the same call sequence, in the order they were generated
+    final Map<String, List<Candidate>> bySequence = new LinkedHashMap<>();
+    int tests = 0;
+    for (Map.Entry<Path, TestSource> each : sources.entrySet()) {
+      for (TestSource.Member test : each.getValue().getTests()) {
+        final Candidate candidate = Candidate.of(each.getKey(), tests++, test);
+        bySequence.computeIfAbsent(candidate.sequence, k -> new ArrayList<>()).add(candidate);
+      }
+    }
+
+    int duplicates = 0;
+    int subsumed = 0;
+    final Map<Path, Set<String>> removed = new HashMap<>();
+    for (List<Candidate> group : bySequence.values()) {
+      if (group.size() < 2) continue;
+
+      // Tests making the most assertions are kept first; ties keep generation order
+      group.sort(Comparator.comparingInt((Candidate c) -> c.assertions.size()).reversed()
+          .thenComparingInt(c -> c.order));
+      final List<Candidate> kept = new ArrayList<>();
+      for (Candidate each : group) {
+        final Candidate covering = kept.stream()
+            .filter(k -> k.assertions.containsAll(each.assertions))
+            .findFirst()
+            .orElse(null);
+        if (covering == null) {
+          kept.add(each);
+          continue;
+        }
+
+        if (covering.assertions.size() == each.assertions.size()) {
+          duplicates++;
+        } else {
+          subsumed++;
+        }
+        removed.computeIfAbsent(each.file, k -> new HashSet<>()).add(each.name);
+      }
+    }
+
+    final List<Path> remaining = new ArrayList<>();
+    final Set<String> deletedClasses = new HashSet<>();
+    final List<String> removedTests = new ArrayList<>();
+    long removedBytes = 0;
+    for (Map.Entry<Path, TestSource> each : sources.entrySet()) {
+      final Set<String> names = removed.getOrDefault(each.getKey(), ImmutableSet.of());
+      final TestSource source = each.getValue();
+      if (names.isEmpty()) {
+        remaining.add(each.getKey());
+        continue;
+      }
+
+      final List<TestSource.Member> members = new ArrayList<>();
+      for (TestSource.Member member : source.getMembers()) {
+        if (member.getKind() == TestSource.Kind.TEST && names.contains(member.getName())) {
+          removedBytes += member.getText().length();
+          removedTests.add(source.getQualifiedName() + "#" + member.getName());
+        } else {
+          members.add(member);
+        }
+      }
+
+      if (members.stream().anyMatch(m -> m.getKind() == TestSource.Kind.TEST)) {
+        source.with(source.getClassName(), members).write(each.getKey());
+        remaining.add(each.getKey());
+      } else {
+        // JUnit rejects a test class without tests
+        removedBytes += Files.size(each.getKey());
+        Files.delete(each.getKey());
+        deletedClasses.add(source.getClassName());
+      }
+    }
+
+    for (Path each : suites) {
+      if (!deletedClasses.isEmpty()) {
+        removeFromSuite(each, deletedClasses);
+      }
+      remaining.add(each);
+    }
+
+    return new Result(tests, duplicates, subsumed, removedBytes,
+        runMillisOf(removedTests, sources, durationOf), remaining);
+  }
+
+  /** @return the expected duration of {@code removedTests}; NaN if no duration is known */
+  private static double runMillisOf(List<String> removedTests, Map<Path, TestSource> sources,
+      ToDoubleFunction<String> durationOf) {
+    if (removedTests.isEmpty()) return 0;
+
+    // Tests without a recorded duration take the mean of those with one
+    final OptionalDouble mean = sources.values().stream()
+        .flatMap(s -> s.getTests().stream().map(t -> s.getQualifiedName() + "#" + t.getName()))
+        .mapToDouble(durationOf)
+        .filter(d -> !Double.isNaN(d))
+        .average();
+    if (!mean.isPresent()) return Double.NaN;
+
+    return removedTests.stream()
+        .mapToDouble(durationOf)
+        .map(d -> Double.isNaN(d) ? mean.getAsDouble() : d)
+        .sum();
+  }
+
+  /** Removes {@code deletedClasses} (simple or qualified names) from a suite's list. */
+  static void removeFromSuite(Path suite, Set<String> deletedClasses) throws IOException {
+    final String text = new String(Files.readAllBytes(suite), StandardCharsets.UTF_8);
+    final Matcher matcher = SUITE_CLASSES.matcher(text);
+    if (!matcher.find()) return;
+
+    final List<String> entries = new ArrayList<>();
+    for (String each : matcher.group(2).split(",")) {
+      final String entry = each.trim();
+      final String className = entry.replaceFirst("\\.class$", "");
+      if (!entry.isEmpty() && !deletedClasses.contains(className)
+          && !deletedClasses.contains(className.substring(className.lastIndexOf('.') + 1))) {
+        entries.add(entry);
+      }
+    }
+
+    final String updated = text.substring(0, matcher.start())
+        + matcher.group(1) + " " + Joiner.on(", ").join(entries) + " " + matcher.group(3)
+        + text.substring(matcher.end());
+    Files.write(suite, updated.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** A test method, by what it does. */
+  private static class Candidate {
+    final Path file;
+    final int order;
+    final String name;
+    final String sequence;
+    final Set<String> assertions;
+
+    Candidate(Path file, int order, String name, String sequence, Set<String> assertions) {
+      this.file = file;
+      this.order = order;
+      this.name = name;
+      this.sequence = sequence;
+      this.assertions = assertions;
+    }
+
+    static Candidate of(Path file, int order, TestSource.Member test) {
+      final List<List<String>> statements = statements(
+          normalize(inlineLiterals(tokens(test.getBody().orElse(test.getText())))));
+
+      final List<String> calls = new ArrayList<>();
+      final Set<String> assertions = new HashSet<>();
+      for (List<String> each : statements) {
+        final String statement = String.join(" ", each);
+        if (ASSERTION.matcher(statement).find()) {
+          // The same assertion after other calls checks something else
+          assertions.add(hash(calls.size() + ":" + statement));
+        } else {
+          calls.add(statement);
+        }
+      }
+
+      return new Candidate(file, order, test.getName(), hash(String.join("\n", calls)),
+          assertions);
+    }
+  }
+
+  private static String hash(String value) {
+    return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * Puts literals where they are used: a top-level declaration of a local from a literal
+   * (e.g., {@code int i = 1;}) is dropped, and uses of the local become the literal, cast
+   * to the local's type (e.g., {@code (int) 1}) unless it is a string. Locals assigned
+   * again are left alone.
+   */
+  static List<String> inlineLiterals(List<String> tokens) {
+    final List<List<String>> statements = statements(tokens);
+    final Map<String, List<String>> literals = new HashMap<>();
+    final List<List<String>> kept = new ArrayList<>();
+    for (int i = 0; i < statements.size(); i++) {
+      final List<String> each = statements.get(i);
+      final List<String> value = literalDeclared(each);
+      final String name = value.isEmpty() ? null : each.get(each.indexOf("=") - 1);
+      if (name == null || literals.containsKey(name)
+          || assignedIn(statements.subList(i + 1, statements.size()), name)) {
+        kept.add(each);
+        continue;
+      }
+
+      final List<String> type = each.subList(0, each.indexOf("=") - 1);
+      final boolean string = value.get(0).startsWith("\"")
+          && (type.equals(ImmutableList.of("String"))
+              || type.equals(ImmutableList.of("java", ".", "lang", ".", "String")));
+      final List<String> replacement = new ArrayList<>();
+      if (!string && !value.get(0).equals("(")) {
+        replacement.add("(");
+        replacement.addAll(type);
+        replacement.add(")");
+      }
+      replacement.addAll(value);
+      literals.put(name, replacement);
+    }
+
+    final List<String> results = new ArrayList<>(tokens.size());
+    for (List<String> each : kept) {
+      for (int i = 0; i < each.size(); i++) {
+        final String token = each.get(i);
+        final boolean member = i > 0 && each.get(i - 1).equals(".");
+        if (!member && literals.containsKey(token)) {
+          results.addAll(literals.get(token));
+        } else {
+          results.add(token);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return the literal of a statement {@code Type name = literal;}, where the type is a
+   * (qualified) name and the literal may be negated or cast; empty for other statements
+   */
+  private static List<String> literalDeclared(List<String> statement) {
+    final int assign = statement.indexOf("=");
+    if (assign < 2 || !";".equals(statement.get(statement.size() - 1))) return ImmutableList.of();
+
+    // Type tokens alternate between names and dots; then comes the local's name
+    final int typeEnd = assign - 1;
+    if (typeEnd % 2 == 0 || !isIdentifier(statement.get(typeEnd))) return ImmutableList.of();
+    for (int i = 0; i < typeEnd; i++) {
+      final String token = statement.get(i);
+      final boolean expected = i % 2 == 0
+          ? isIdentifier(token) && !KEYWORDS.contains(token)
+          : token.equals(".");
+      if (!expected) return ImmutableList.of();
+    }
+
+    List<String> value = statement.subList(assign + 1, statement.size() - 1);
+    final List<String> literal = value;
+    if (value.size() == 4 && value.get(0).equals("(") && value.get(2).equals(")")) {
+      value = value.subList(3, 4);
+    }
+    if (value.size() == 2 && value.get(0).equals("-")) {
+      value = value.subList(1, 2);
+    }
+    return value.size() == 1 && isLiteral(value.get(0)) ? literal : ImmutableList.of();
+  }
+
+  /** @return true if {@code name} is assigned, or incremented, in {@code statements} */
+  private static boolean assignedIn(List<List<String>> statements, String name) {
+    for (List<String> each : statements) {
+      for (int i = 0; i < each.size(); i++) {
+        if (!each.get(i).equals(name) || (i > 0 && each.get(i - 1).equals("."))) continue;
+
+        final String previous = i > 0 ? each.get(i - 1) : "";
+        final String next = i + 1 < each.size() ? each.get(i + 1) : "";
+        final String afterNext = i + 2 < each.size() ? each.get(i + 2) : "";
+        if (next.equals("=") || next.equals("++") || next.equals("--")
+            || previous.equals("++") || previous.equals("--")
+            || ("+-*/%&|^".contains(next) && next.length() == 1 && afterNext.equals("="))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isLiteral(String token) {
+    final char first = token.charAt(0);
+    return Character.isDigit(first) || first == '"' || first == '\''
+        || token.equals("true") || token.equals("false") || token.equals("null");
+  }
+
+  /** @return local variables renamed v0, v1, ... in the order they are declared */
+  static List<String> normalize(List<String> tokens) {
+    final Map<String, String> locals = new HashMap<>();
+    for (int i = 1; i + 1 < tokens.size(); i++) {
+      final String previous = tokens.get(i - 1);
+      final String next = tokens.get(i + 1);
+      final boolean afterType = (isIdentifier(previous) && !KEYWORDS.contains(previous))
+          || previous.equals(">") || previous.equals("]");
+      final boolean declared = next.equals("=") || next.equals(";") || next.equals(")")
+          || next.equals(":");
+      if (afterType && declared && isIdentifier(tokens.get(i))
+          && !".".equals(i > 1 ? tokens.get(i - 2) : "")) {
+        locals.putIfAbsent(tokens.get(i), "v" + locals.size());
+      }
+    }
+
+    final List<String> normalized = new ArrayList<>(tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      final String token = tokens.get(i);
+      final boolean member = i > 0 && tokens.get(i - 1).equals(".");
+      normalized.add(!member && locals.containsKey(token) ? locals.get(token) : token);
+    }
+    return normalized;
+  }
+
+  /**
+   * @return top-level statements, a block statement (e.g., try/catch) being one; without
+   * the {@code if (debug)} trace Randoop starts tests with
+   */
+  static List<List<String>> statements(List<String> tokens) {
+    final List<List<String>> statements = new ArrayList<>();
+    List<String> current = new ArrayList<>();
+    int depth = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      final String token = tokens.get(i);
+      current.add(token);
+      if (token.equals("(") || token.equals("{") || token.equals("[")) {
+        depth++;
+      } else if (token.equals(")") || token.equals("}") || token.equals("]")) {
+        depth--;
+      }
+
+      final String next = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+      final boolean ends = depth == 0 && (token.equals(";")
+          || (token.equals("}") && !next.equals("catch") && !next.equals("finally")
+              && !next.equals("else")));
+      if (ends) {
+        if (!(current.size() > 3 && current.subList(0, 4).equals(DEBUG_TRACE))) {
+          statements.add(current);
+        }
+        current = new ArrayList<>();
+      }
+    }
+    if (!current.isEmpty()) {
+      statements.add(current);
+    }
+    return statements;
+  }
+
+  /** @return the tokens of a method body: identifiers, literals and operators */
+  static List<String> tokens(String code) {
+    final List<String> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < code.length()) {
+      final char c = code.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (code.startsWith("//", i)) {
+        final int eol = code.indexOf('\n', i);
+        i = eol < 0 ? code.length() : eol;
+      } else if (code.startsWith("/*", i)) {
+        final int end = code.indexOf("*/", i + 2);
+        i = end < 0 ? code.length() : end + 2;
+      } else if (c == '"' || c == '\'') {
+        int end = i + 1;
+        while (end < code.length() && code.charAt(end) != c) {
+          end += code.charAt(end) == '\\' ? 2 : 1;
+        }
+        end = Math.min(end + 1, code.length());
+        tokens.add(code.substring(i, end));
+        i = end;
+      } else if (Character.isJavaIdentifierPart(c)) {
+        int end = i;
+        while (end < code.length() && (Character.isJavaIdentifierPart(code.charAt(end))
+            || (Character.isDigit(c) && code.charAt(end) == '.'))) {
+          end++;
+        }
+        tokens.add(code.substring(i, end));
+        i = end;
+      } else {
+        final String pair = i + 1 < code.length() ? code.substring(i, i + 2) : "";
+        final boolean twoChars = pair.matches("==|!=|<=|>=|&&|\\|\\||->|::|\\+\\+|--");
+        tokens.add(twoChars ? pair : String.valueOf(c));
+        i += twoChars ? 2 : 1;
+      }
+    }
+    return tokens;
+  }
+
+  private static boolean isIdentifier(String token) {
+    return !token.isEmpty() && Character.isJavaIdentifierStart(token.charAt(0));
+  }
+
+  public static class Result {
+    private final int tests;
+    private final int duplicates;
+    private final int subsumed;
+    private final long removedBytes;
+    private final double runMillisSaved;
+    private final List<Path> files;
+
+    Result(int tests, int duplicates, int subsumed, long removedBytes, double runMillisSaved,
+        List<Path> files) {
+      this.tests = tests;
+      this.duplicates = duplicates;
+      this.subsumed = subsumed;
+      this.removedBytes = removedBytes;
+      this.runMillisSaved = runMillisSaved;
+      this.files = ImmutableList.copyOf(files);
+    }
+
+    /** @return tests before deduplication */
+    public int getTests() {
+      return tests;
+    }
+
+    /** @return tests dropped for making the same calls and assertions as a kept test */
+    public int getDuplicates() {
+      return duplicates;
+    }
+
+    /** @return tests dropped for making a subset of the assertions of a kept test */
+    public int getSubsumed() {
+      return subsumed;
+    }
+
+    public int getRemoved() {
+      return duplicates + subsumed;
+    }
+
+    /** @return source removed, in bytes (chars, for rewritten classes) */
+    public long getRemovedBytes() {
+      return removedBytes;
+    }
+
+    public long getCompileMillisSaved() {
+      return Math.round(removedBytes / 1024.0 * COMPILE_MILLIS_PER_KB);
+    }
+
+    /** @return expected test time saved, in ms; NaN if no test duration is known */
+    public double getRunMillisSaved() {
+      return runMillisSaved;
+    }
+
+    /** @return the test classes (and suites) left */
+    public List<Path> getFiles() {
+      return files;
+    }
+
+    @Override public String toString() {
+      return String.format("%d of %d tests removed (%d duplicates, %d subsumed)",
+          getRemoved(), tests, duplicates, subsumed);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package randoop.maven.junit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleBiFunction;
+import randoop.maven.exec.Shards;
+
+/**
+ * Rewrites Randoop's test classes (a few, very large {@code RegressionTest0..N} classes
+ * plus a suite listing them) into K classes of about the same cost, so each of them can
+ * run in its own surefire fork. A test's cost is its recorded duration, when there is one;
+ * tests without one cost the mean recorded duration, or all the same if none is known.
+ * <p>
+ * Test methods keep their body; their name gets the suffix of the class they come from
+ * (e.g., {@code test001} in {@code RegressionTest3} becomes {@code test001_3}), so names
+ * stay unique. Non-test members (e.g., the {@code debug} flag) go into every new class.
+ */
+public class TestRebalancer {
+
+  private TestRebalancer(){
+    throw new Error("Cannot be instantiated!");
+  }
+
+  /**
+   * @param files      generated test classes, in one package; suites among them are dropped
+   * @param classCount number of classes to write
+   * @param classNameOf name of the i-th new class
+   * @param durationOf recorded duration, in ms, of a test, given its name (class#method)
+   *                   and its method name once moved; NaN if unknown
+   * @return the written files; the input files are deleted, unless overwritten
+   */
+  public static List<Path> rebalance(List<Path> files, int classCount,
+      IntFunction<String> classNameOf, ToDoubleBiFunction<String, String> durationOf) throws IOException {
+    Preconditions.checkArgument(classCount > 0);
+    if (files.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    final List<TestSource> sources = new ArrayList<>();
+    for (Path each : files) {
+      final TestSource source = TestSource.read(each);
+      if (!source.isSuite()) {
+        sources.add(source);
+      }
+    }
+    if (sources.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    final Path dir = files.get(0).getParent();
+    final TestSource template = sources.get(0);
+    final List<String> imports = new ArrayList<>();
+    final Map<String, TestSource.Member> shared = new LinkedHashMap<>();
+    final Map<String, TestSource.Member> tests = new LinkedHashMap<>();
+    final Map<String, Double> durations = new HashMap<>();
+    for (TestSource each : sources) {
+      Preconditions.checkArgument(each.getPackageName().equals(template.getPackageName()),
+          "Test classes from more than one package");
+      each.getImports().stream().filter(i -> !imports.contains(i)).forEach(imports::add);
+
+      final String suffix = suffixOf(each.getClassName());
+      for (TestSource.Member member : each.getMembers()) {
+        if (member.getKind() == TestSource.Kind.TEST) {
+          final String name = suffix.isEmpty() ? member.getName() : member.getName() + "_" + suffix;
+          final String key = String.format("%08d", tests.size());
+          tests.put(key, member.renamed(name));
+          durations.put(key, durationOf.applyAsDouble(
+              each.getQualifiedName() + "#" + member.getName(), name));
+        } else {
+          shared.putIfAbsent(member.getKind() + " " + member.getName() + " "
+              + (member.getName().isEmpty() ? member.getText() : ""), member);
+        }
+      }
+    }
+
+    final OptionalDouble meanDuration = durations.values().stream()
+        .filter(d -> !Double.isNaN(d))
+        .mapToDouble(Double::doubleValue)
+        .average();
+    // Weights are in microseconds; a test without a duration weighs one
+    final List<List<String>> groups = Shards.partition(tests.keySet(), classCount, key -> {
+      final double duration = durations.get(key);
+      if (!meanDuration.isPresent()) return 1L;
+      return Math.max(1L, Math.round(1000 * (Double.isNaN(duration)
+          ? meanDuration.getAsDouble()
+          : duration)));
+    });
+
+    final List<Path> written = new ArrayList<>();
+    for (int i = 0; i < groups.size(); i++) {
+      final List<TestSource.Member> members = new ArrayList<>(shared.values());
+      // Keep the tests in the order Randoop wrote them
+      groups.get(i).stream().sorted().map(tests::get).forEach(members::add);
+
+      final String className = classNameOf.apply(i);
+      final Path target = dir.resolve(className + ".java");
+      template.with(className, members).withImports(imports).write(target);
+      written.add(target);
+    }
+
+    for (Path each : files) {
+      if (!written.contains(each)) {
+        Files.deleteIfExists(each);
+      }
+    }
+
+    return ImmutableList.copyOf(written);
+  }
+
+  /** @return what tells a class apart from its siblings; e.g., 3 for RegressionTest3 */
+  static String suffixOf(String className) {
+    String suffix = className.replaceFirst("^(Regression|Error)Tests?", "");
+    suffix = suffix.replaceAll("^_+|_+$", "");
+    return suffix.replaceAll("[^\\w]", "_");
+  }
+}
@@ -0,0 +1,391 @@
+package randoop.maven.junit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A JUnit test class, as Randoop writes them: a package, imports, and one top-level class
+ * whose body holds fields (e.g., {@code debug}) and {@code @Test} methods. Members are kept
+ * verbatim, so a class can be taken apart and put back together without changing what
+ * its tests do. This is not a general Java parser: it only knows enough (comments, string
+ * and character literals, brackets) to find where each member starts and ends.
+ */
+public class TestSource {
+
+  private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;",
+      Pattern.MULTILINE);
+  private static final Pattern IMPORT = Pattern.compile("^\\s*(import\\s+[\\w.*\\s]+;)",
+      Pattern.MULTILINE);
+  private static final Pattern CLASS_NAME = Pattern.compile("\\bclass\\s+(\\w+)");
+  private static final Pattern TEST_ANNOTATION = Pattern.compile("@(?:org\\.junit\\.)?Test\\b");
+  private static final Pattern METHOD_NAME = Pattern.compile("(\\w+)\\s*\\($");
+  private static final Pattern FIELD_NAME = Pattern.compile("(\\w+)\\s*(?:=|;)");
+  private static final Pattern SUITE = Pattern.compile("@RunWith\\s*\\(\\s*Suite\\.class|"
+      + "@Suite\\.SuiteClasses|@SuiteClasses");
+
+  public enum Kind { FIELD, TEST, METHOD, OTHER }
+
+  private final String packageName;
+  private final List<String> imports;
+  private final String declaration;
+  private final String className;
+  private final List<Member> members;
+
+  private TestSource(String packageName, List<String> imports, String declaration,
+      String className, List<Member> members) {
+    this.packageName = packageName;
+    this.imports = ImmutableList.copyOf(imports);
+    this.declaration = declaration;
+    this.className = className;
+    this.members = ImmutableList.copyOf(members);
+  }
+
+  public static TestSource read(Path file) throws IOException {
+    return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @throws IOException if {@code source} does not look like a single top-level class
+   */
+  public static TestSource parse(String source) throws IOException {
+    final int open = indexOfBodyStart(source);
+    if (open < 0) {
+      throw new IOException("No class body found");
+    }
+    final int close = matchingBrace(source, open);
+    if (close < 0) {
+      throw new IOException("Unbalanced class body");
+    }
+
+    final String header = source.substring(0, open);
+    final Matcher packageMatcher = PACKAGE.matcher(header);
+    final String packageName = packageMatcher.find() ? packageMatcher.group(1) : "";
+
+    final List<String> imports = new ArrayList<>();
+    final Matcher importMatcher = IMPORT.matcher(header);
+    int declarationStart = packageMatcher.find(0) ? packageMatcher.end() : 0;
+    while (importMatcher.find()) {
+      imports.add(importMatcher.group(1).replaceAll("\\s+", " ").replace(" ;", ";"));
+      declarationStart = Math.max(declarationStart, importMatcher.end());
+    }
+
+    final String declaration = header.substring(declarationStart).trim();
+    final Matcher classMatcher = CLASS_NAME.matcher(declaration);
+    if (!classMatcher.find()) {
+      throw new IOException("No class declaration found");
+    }
+
+    return new TestSource(packageName, imports, declaration, classMatcher.group(1),
+        splitMembers(source.substring(open + 1, close)));
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  /** @return import declarations; e.g., {@code import org.junit.Test;} */
+  public List<String> getImports() {
+    return imports;
+  }
+
+  /** @return annotations, modifiers and the class declaration, up to the opening brace */
+  public String getDeclaration() {
+    return declaration;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public String getQualifiedName() {
+    return packageName.isEmpty() ? className : packageName + "." + className;
+  }
+
+  public List<Member> getMembers() {
+    return members;
+  }
+
+  public List<Member> getTests() {
+    return members.stream()
+        .filter(m -> m.getKind() == Kind.TEST)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** @return true if this is a JUnit suite (e.g., the RegressionTest class listing the others) */
+  public boolean isSuite() {
+    return SUITE.matcher(declaration).find();
+  }
+
+  /** @return the same class under another name, with {@code newMembers} as its body */
+  public TestSource with(String newClassName, List<Member> newMembers) {
+    final String newDeclaration = CLASS_NAME.matcher(declaration)
+        .replaceFirst("class " + Matcher.quoteReplacement(newClassName));
+    return new TestSource(packageName, imports, newDeclaration, newClassName, newMembers);
+  }
+
+  /** @return a copy with {@code extraImports} added, keeping the existing ones first */
+  public TestSource withImports(List<String> extraImports) {
+    final List<String> merged = new ArrayList<>(imports);
+    extraImports.stream().filter(i -> !merged.contains(i)).forEach(merged::add);
+    return new TestSource(packageName, merged, declaration, className, members);
+  }
+
+  /** @return the Java source of this class */
+  public String render() {
+    final StringBuilder out = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      out.append("package ").append(packageName).append(";\n\n");
+    }
+    for (String each : imports) {
+      out.append(each).append('\n');
+    }
+    if (!imports.isEmpty()) {
+      out.append('\n');
+    }
+
+    out.append(declaration).append(" {\n");
+    for (Member each : members) {
+      out.append('\n').append(each.getText()).append('\n');
+    }
+    out.append("}\n");
+    return out.toString();
+  }
+
+  public void write(Path file) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Files.write(file, render().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** A field, method, or anything else declared in the class body, with its comments. */
+  public static class Member {
+    private final Kind kind;
+    private final String name;
+    private final String text;
+
+    Member(Kind kind, String name, String text) {
+      this.kind = Preconditions.checkNotNull(kind);
+      this.name = Preconditions.checkNotNull(name);
+      this.text = Preconditions.checkNotNull(text);
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    /** @return field or method name; empty for anything else (e.g., an initializer) */
+    public String getName() {
+      return name;
+    }
+
+    /** @return the member's source, including leading comments and annotations */
+    public String getText() {
+      return text;
+    }
+
+    /** @return the part of a method after its opening brace, up to its closing brace */
+    public Optional<String> getBody() {
+      final int open = indexOfBodyStart(text);
+      if (open < 0) return Optional.empty();
+      final int close = matchingBrace(text, open);
+      return close < 0 ? Optional.empty() : Optional.of(text.substring(open + 1, close));
+    }
+
+    /** @return the same method under another name */
+    public Member renamed(String newName) {
+      Preconditions.checkState(kind == Kind.TEST || kind == Kind.METHOD);
+      final int open = indexOfBodyStart(text);
+      final String header = text.substring(0, open);
+      final Matcher matcher = Pattern.compile("\\b" + Pattern.quote(name) + "(\\s*\\()")
+          .matcher(header);
+      if (!matcher.find()) {
+        return this;
+      }
+      return new Member(kind, newName, header.substring(0, matcher.start()) + newName
+          + header.substring(matcher.start() + name.length()) + text.substring(open));
+    }
+
+    /** @return the same method with {@code body} between its braces */
+    public Member withBody(String body) {
+      final int open = indexOfBodyStart(text);
+      final int close = matchingBrace(text, open);
+      Preconditions.checkState(open >= 0 && close >= 0);
+      return new Member(kind, name, text.substring(0, open + 1) + body + text.substring(close));
+    }
+
+    @Override public String toString() {
+      return kind + " " + name;
+    }
+  }
+
+  private static List<Member> splitMembers(String body) {
+    final List<Member> members = new ArrayList<>();
+    final Scanner scanner = new Scanner(body);
+    int start = 0;
+    int braces = 0;
+    int parens = 0;
+    int firstBrace = -1;
+    while (scanner.next()) {
+      final int at = scanner.position;
+      final char c = body.charAt(at);
+      if (c == '(') {
+        parens++;
+      } else if (c == ')') {
+        parens--;
+      } else if (c == '{') {
+        if (braces == 0 && parens == 0 && firstBrace < 0) firstBrace = at;
+        braces++;
+      } else if (c == '}') {
+        braces--;
+        // A method (or initializer, or nested class) ends here, unless this closes an
+        // array initializer or lambda in a field declaration, which ends with a ';'
+        if (braces == 0 && parens == 0
+            && !body.substring(start, firstBrace).contains("=")) {
+          members.add(member(body, start, at + 1, firstBrace - start));
+          start = at + 1;
+          firstBrace = -1;
+        }
+      } else if (c == ';' && braces == 0 && parens == 0) {
+        members.add(member(body, start, at + 1, -1));
+        start = at + 1;
+        firstBrace = -1;
+      }
+    }
+
+    return members;
+  }
+
+  private static Member member(String body, int start, int end, int headerLength) {
+    // Keep the indentation of the first line, but not the blank lines before it
+    int from = start;
+    for (int i = start; i < end && Character.isWhitespace(body.charAt(i)); i++) {
+      if (body.charAt(i) == '\n') from = i + 1;
+    }
+    final String text = body.substring(from, end);
+    final String header = headerLength < 0
+        ? text
+        : body.substring(start, start + headerLength);
+    final String code = stripComments(header).trim();
+
+    if (headerLength < 0) {
+      final Matcher field = FIELD_NAME.matcher(code);
+      return new Member(Kind.FIELD, field.find() ? field.group(1) : "", text);
+    }
+
+    final String signature = methodSignature(code);
+    final Matcher method = METHOD_NAME.matcher(signature);
+    if (!method.find() || signature.matches("(?s).*\\b(class|interface|enum|new)\\b.*")) {
+      return new Member(Kind.OTHER, "", text);
+    }
+
+    final boolean isTest = TEST_ANNOTATION.matcher(code).find();
+    return new Member(isTest ? Kind.TEST : Kind.METHOD, method.group(1), text);
+  }
+
+  /** @return a method header up to (and including) the '(' of its parameter list */
+  private static String methodSignature(String header) {
+    // Skip annotations, which may have their own parentheses
+    final String withoutAnnotations = header.replaceAll(
+        "@[\\w.]+(\\s*\\((?:[^()]|\\([^()]*\\))*\\))?", " ");
+    final int paren = withoutAnnotations.indexOf('(');
+    return paren < 0 ? "" : withoutAnnotations.substring(0, paren + 1);
+  }
+
+  /** @return {@code code} without comments, nor the contents of its literals */
+  private static String stripComments(String code) {
+    final StringBuilder out = new StringBuilder();
+    final Scanner scanner = new Scanner(code);
+    while (scanner.next()) {
+      out.append(code.charAt(scanner.position));
+    }
+    return out.toString();
+  }
+
+  private static int indexOfBodyStart(String source) {
+    final Scanner scanner = new Scanner(source);
+    int parens = 0;
+    while (scanner.next()) {
+      final char c = source.charAt(scanner.position);
+      if (c == '(') parens++;
+      else if (c == ')') parens--;
+      else if (c == '{' && parens == 0) return scanner.position;
+    }
+    return -1;
+  }
+
+  private static int matchingBrace(String source, int open) {
+    final Scanner scanner = new Scanner(source, open);
+    int depth = 0;
+    while (scanner.next()) {
+      final char c = source.charAt(scanner.position);
+      if (c == '{') depth++;
+      else if (c == '}' && --depth == 0) return scanner.position;
+    }
+    return -1;
+  }
+
+  /**
+   * Steps through the code characters of a Java source, skipping comments, and string,
+   * text block and character literals. {@link #position} is the current code character.
+   */
+  private static class Scanner {
+    private final String source;
+    private int cursor;
+    int position = -1;
+
+    Scanner(String source) {
+      this(source, 0);
+    }
+
+    Scanner(String source, int from) {
+      this.source = source;
+      this.cursor = from;
+    }
+
+    boolean next() {
+      while (cursor < source.length()) {
+        final char c = source.charAt(cursor);
+        if (c == '/' && cursor + 1 < source.length() && source.charAt(cursor + 1) == '/') {
+          final int eol = source.indexOf('\n', cursor);
+          cursor = eol < 0 ? source.length() : eol;
+        } else if (c == '/' && cursor + 1 < source.length()
+            && source.charAt(cursor + 1) == '*') {
+          final int end = source.indexOf("*/", cursor + 2);
+          cursor = end < 0 ? source.length() : end + 2;
+        } else if (source.startsWith("\"\"\"", cursor)) {
+          final int end = source.indexOf("\"\"\"", cursor + 3);
+          cursor = end < 0 ? source.length() : end + 3;
+        } else if (c == '"' || c == '\'') {
+          cursor = skipLiteral(c, cursor + 1);
+        } else {
+          position = cursor++;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private int skipLiteral(char quote, int from) {
+      int i = from;
+      while (i < source.length()) {
+        final char c = source.charAt(i);
+        if (c == '\\') {
+          i += 2;
+        } else if (c == quote || c == '\n') {
+          return i + 1;
+        } else {
+          i++;
+        }
+      }
+      return i;
+    }
+  }
+}
@@ -0,0 +1,381 @@
+package randoop.maven.metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Where a gentests execution spent its time. Phases run on the mojo thread and are
+ * measured in wall time, CPU time and bytes allocated by that thread; a phase entered
+ * more than once (e.g., building a command line per shard) accumulates. Randoop runs
+ * are measured separately, as they happen in other processes (or in the daemon).
+ */
+public class PerformanceReport {
+
+  /** Name of the phase spent running Randoop. */
+  public static final String GENERATION = "generation";
+
+  private static final String HISTORY_HEADER =
+      "# timestamp\twall ms\toverhead ms\truns\tregression tests\ttests per second";
+  private static final int HISTORY_SIZE = 100;
+  private static final int BASELINE_SIZE = 10;
+  private static final Splitter TAB = Splitter.on('\t');
+
+  private final String project;
+  private final Instant startedAt;
+  private final long startNanos;
+  private final Map<String, long[]> phases = new LinkedHashMap<>();
+  private final List<Run> runs = new ArrayList<>();
+  private long wallMillis = -1;
+
+  public PerformanceReport(String project) {
+    this.project = Preconditions.checkNotNull(project);
+    this.startedAt = Instant.now();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Starts measuring a phase, on the calling thread, until the returned phase is closed.
+   * <pre>
+   *   try (PerformanceReport.Phase ignored = report.phase("cleanup")) { ... }
+   * </pre>
+   */
+  public Phase phase(String name) {
+    return new Phase(name);
+  }
+
+  /** Records the outcome of one Randoop run; unknown values are -1. */
+  public synchronized void recordRun(Run run) {
+    runs.add(Preconditions.checkNotNull(run));
+  }
+
+  /** Marks the end of the execution. */
+  public synchronized void finish() {
+    wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  public synchronized long getWallMillis() {
+    return wallMillis < 0
+        ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        : wallMillis;
+  }
+
+  /** @return time not spent waiting for Randoop; i.e., the plugin's own overhead */
+  public synchronized long getOverheadMillis() {
+    return phases.entrySet().stream()
+        .filter(e -> !GENERATION.equals(e.getKey()))
+        .mapToLong(e -> e.getValue()[1])
+        .sum();
+  }
+
+  public synchronized long getRegressionTests() {
+    return runs.stream().mapToLong(r -> Math.max(0, r.regressionTests)).sum();
+  }
+
+  /** @return regression tests per second of Randoop run time, over all runs */
+  public synchronized double getTestsPerSecond() {
+    final long runMillis = runs.stream().mapToLong(r -> r.wallMillis).sum();
+    return runMillis <= 0 ? 0 : getRegressionTests() * 1000.0 / runMillis;
+  }
+
+  /** @return mean time to first output of forked runs; -1 if none had output */
+  public synchronized long getMeanStartupMillis() {
+    final OptionalDouble mean = runs.stream()
+        .filter(r -> "fork".equals(r.mode) && r.startupMillis >= 0)
+        .mapToLong(r -> r.startupMillis)
+        .average();
+    return mean.isPresent() ? Math.round(mean.getAsDouble()) : -1;
+  }
+
+  public synchronized void writeJson(Path file) throws IOException {
+    final StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"project\": ").append(quote(project)).append(",\n");
+    json.append("  \"startedAt\": ").append(quote(startedAt.toString())).append(",\n");
+    json.append("  \"wallMillis\": ").append(getWallMillis()).append(",\n");
+    json.append("  \"overheadMillis\": ").append(getOverheadMillis()).append(",\n");
+    json.append("  \"regressionTests\": ").append(getRegressionTests()).append(",\n");
+    json.append("  \"testsPerSecond\": ").append(decimal(getTestsPerSecond())).append(",\n");
+
+    json.append("  \"phases\": [");
+    json.append(phases.entrySet().stream()
+        .map(e -> String.format(Locale.ROOT,
+            "\n    {\"name\": %s, \"count\": %d, \"wallMillis\": %d, \"cpuMillis\": %d,"
+                + " \"allocatedBytes\": %d}",
+            quote(e.getKey()), e.getValue()[0], e.getValue()[1], e.getValue()[2],
+            e.getValue()[3]))
+        .collect(Collectors.joining(",")));
+    json.append(phases.isEmpty() ? "],\n" : "\n  ],\n");
+
+    json.append("  \"runs\": [");
+    json.append(runs.stream()
+        .map(r -> String.format(Locale.ROOT,
+            "\n    {\"label\": %s, \"mode\": %s, \"exitCode\": %d, \"timedOut\": %b,"
+                + " \"wallMillis\": %d, \"cpuMillis\": %d, \"peakRssKilobytes\": %d,"
+                + " \"startupMillis\": %d, \"sequences\": %d, \"regressionTests\": %d,"
+                + " \"errorTests\": %d}",
+            quote(r.label), quote(r.mode), r.exitCode, r.timedOut, r.wallMillis, r.cpuMillis,
+            r.peakRssKilobytes, r.startupMillis, r.sequences, r.regressionTests,
+            r.errorTests))
+        .collect(Collectors.joining(",")));
+    json.append(runs.isEmpty() ? "]\n" : "\n  ]\n");
+    json.append("}\n");
+
+    write(file, json.toString());
+  }
+
+  /** Writes this report in the Prometheus text exposition format. */
+  public synchronized void writePrometheus(Path file) throws IOException {
+    final StringBuilder text = new StringBuilder();
+    gauge(text, "randoop_gentests_wall_seconds", "Wall time of gentests",
+        getWallMillis() / 1000.0);
+    gauge(text, "randoop_gentests_overhead_seconds", "Time gentests spent outside Randoop",
+        getOverheadMillis() / 1000.0);
+    gauge(text, "randoop_gentests_regression_tests", "Regression tests generated",
+        getRegressionTests());
+    gauge(text, "randoop_gentests_tests_per_second", "Regression tests per second",
+        getTestsPerSecond());
+
+    header(text, "randoop_gentests_phase_wall_seconds", "Wall time per phase");
+    phases.forEach((name, v) -> sample(text, "randoop_gentests_phase_wall_seconds",
+        "phase", name, v[1] / 1000.0));
+    header(text, "randoop_gentests_phase_cpu_seconds", "Mojo thread CPU time per phase");
+    phases.forEach((name, v) -> sample(text, "randoop_gentests_phase_cpu_seconds",
+        "phase", name, v[2] / 1000.0));
+    header(text, "randoop_gentests_phase_allocated_bytes", "Bytes allocated per phase");
+    phases.forEach((name, v) -> sample(text, "randoop_gentests_phase_allocated_bytes",
+        "phase", name, v[3]));
+
+    header(text, "randoop_run_wall_seconds", "Wall time per Randoop run");
+    runs.forEach(r -> sample(text, "randoop_run_wall_seconds", "run", r.label,
+        r.wallMillis / 1000.0));
+    header(text, "randoop_run_peak_rss_bytes", "Peak RSS per forked Randoop run");
+    runs.stream().filter(r -> r.peakRssKilobytes >= 0).forEach(r -> sample(text,
+        "randoop_run_peak_rss_bytes", "run", r.label, r.peakRssKilobytes * 1024.0));
+    header(text, "randoop_run_startup_seconds", "Time to first output per Randoop run");
+    runs.stream().filter(r -> r.startupMillis >= 0).forEach(r -> sample(text,
+        "randoop_run_startup_seconds", "run", r.label, r.startupMillis / 1000.0));
+    header(text, "randoop_run_exit_code", "Exit status per Randoop run");
+    runs.forEach(r -> sample(text, "randoop_run_exit_code", "run", r.label, r.exitCode));
+
+    write(file, text.toString());
+  }
+
+  /**
+   * Appends this execution to a history of executions, and compares it to the median of
+   * the latest ones. Executions that ran Randoop for nothing (e.g., restored from a cache,
+   * or reusing earlier tests) are not recorded, as their figures say nothing about
+   * generation. The history keeps the latest {@value #HISTORY_SIZE} executions.
+   *
+   * @return a message for each figure that regressed noticeably; empty if none did
+   */
+  public List<String> appendToHistory(Path historyFile) throws IOException {
+    synchronized (this) {
+      if (runs.isEmpty()) return ImmutableList.of();
+    }
+
+    // Reads the latest rows only, however large the file grew
+    final Deque<String> lines = new ArrayDeque<>();
+    if (Files.isRegularFile(historyFile)) {
+      try (Stream<String> all = Files.lines(historyFile, StandardCharsets.UTF_8)) {
+        all.filter(l -> !l.startsWith("#") && TAB.splitToList(l).size() == 6).forEach(l -> {
+          if (lines.size() == HISTORY_SIZE) lines.removeFirst();
+          lines.addLast(l);
+        });
+      }
+    }
+
+    final List<String> messages = new ArrayList<>();
+    final List<List<String>> baseline = lines.stream()
+        .skip(Math.max(0, lines.size() - BASELINE_SIZE))
+        .map(TAB::splitToList)
+        .collect(Collectors.toList());
+    if (!baseline.isEmpty()) {
+      final double overhead = median(baseline, 2);
+      if (getOverheadMillis() > 1.5 * overhead && getOverheadMillis() - overhead > 1000) {
+        messages.add(String.format(Locale.ROOT,
+            "Plugin overhead went up to %d ms (median of last %d builds: %.0f ms)",
+            getOverheadMillis(), baseline.size(), overhead));
+      }
+
+      final double throughput = median(baseline, 5);
+      if (getTestsPerSecond() < throughput / 1.5) {
+        messages.add(String.format(Locale.ROOT,
+            "Generation throughput went down to %.2f tests/s (median of last %d builds: %.2f)",
+            getTestsPerSecond(), baseline.size(), throughput));
+      }
+    }
+
+    synchronized (this) {
+      if (lines.size() == HISTORY_SIZE) lines.removeFirst();
+      lines.addLast(String.join("\t",
+          startedAt.toString(),
+          String.valueOf(getWallMillis()),
+          String.valueOf(getOverheadMillis()),
+          String.valueOf(runs.size()),
+          String.valueOf(getRegressionTests()),
+          decimal(getTestsPerSecond())));
+    }
+
+    lines.addFirst(HISTORY_HEADER);
+    write(historyFile, String.join("\n", lines) + "\n");
+    return ImmutableList.copyOf(messages);
+  }
+
+  private static double median(List<List<String>> rows, int column) {
+    final double[] values = rows.stream()
+        .mapToDouble(cols -> Double.parseDouble(cols.get(column)))
+        .sorted()
+        .toArray();
+    final int mid = values.length / 2;
+    return values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2;
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void gauge(StringBuilder text, String name, String help, double value) {
+    header(text, name, help);
+    text.append(name).append(' ').append(decimal(value)).append('\n');
+  }
+
+  private static void header(StringBuilder text, String name, String help) {
+    text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(name).append(" gauge\n");
+  }
+
+  private static void sample(StringBuilder text, String name, String label, String value,
+      double sample) {
+    text.append(name).append('{').append(label).append("=\"")
+        .append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"} ")
+        .append(decimal(sample)).append('\n');
+  }
+
+  private static String decimal(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  private static String quote(String value) {
+    final StringBuilder quoted = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"': quoted.append("\\\""); break;
+        case '\\': quoted.append("\\\\"); break;
+        case '\n': quoted.append("\\n"); break;
+        case '\r': quoted.append("\\r"); break;
+        case '\t': quoted.append("\\t"); break;
+        default:
+          if (c < 0x20) {
+            quoted.append(String.format("\\u%04x", (int) c));
+          } else {
+            quoted.append(c);
+          }
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  /** A measured phase; closing it adds its figures to the report. */
+  public class Phase implements AutoCloseable {
+    private final String name;
+    private final long wallStart;
+    private final long cpuStart;
+    private final long allocatedStart;
+
+    private Phase(String name) {
+      this.name = Preconditions.checkNotNull(name);
+      this.wallStart = System.nanoTime();
+      this.cpuStart = threadCpuNanos();
+      this.allocatedStart = threadAllocatedBytes();
+    }
+
+    @Override public void close() {
+      final long wall = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+      final long cpu = cpuStart < 0 ? -1
+          : TimeUnit.NANOSECONDS.toMillis(threadCpuNanos() - cpuStart);
+      final long allocated = allocatedStart < 0 ? -1 : threadAllocatedBytes() - allocatedStart;
+      synchronized (PerformanceReport.this) {
+        final long[] totals = phases.computeIfAbsent(name, k -> new long[4]);
+        totals[0]++;
+        totals[1] += wall;
+        totals[2] = cpu < 0 ? -1 : totals[2] + cpu;
+        totals[3] = allocated < 0 ? -1 : totals[3] + allocated;
+      }
+    }
+  }
+
+  private static long threadCpuNanos() {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static long threadAllocatedBytes() {
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      final com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+      if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+        return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  /** Outcome of one Randoop run. */
+  public static class Run {
+    private final String label;
+    private final String mode;
+    private final int exitCode;
+    private final boolean timedOut;
+    private final long wallMillis;
+    private final long cpuMillis;
+    private final long peakRssKilobytes;
+    private final long startupMillis;
+    private final long sequences;
+    private final long regressionTests;
+    private final long errorTests;
+
+    /**
+     * @param label shard id, or "randoop" for a single run
+     * @param mode  "fork" or "daemon"
+     * @param startupMillis time to Randoop's first line of output
+     */
+    public Run(String label, String mode, int exitCode, boolean timedOut, long wallMillis,
+        long cpuMillis, long peakRssKilobytes, long startupMillis, long sequences,
+        long regressionTests, long errorTests) {
+      this.label = Preconditions.checkNotNull(label);
+      this.mode = Preconditions.checkNotNull(mode);
+      this.exitCode = exitCode;
+      this.timedOut = timedOut;
+      this.wallMillis = wallMillis;
+      this.cpuMillis = cpuMillis;
+      this.peakRssKilobytes = peakRssKilobytes;
+      this.startupMillis = startupMillis;
+      this.sequences = sequences;
+      this.regressionTests = regressionTests;
+      this.errorTests = errorTests;
+    }
+  }
+}
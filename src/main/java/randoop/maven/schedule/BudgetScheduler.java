@@ -0,0 +1,225 @@
+package randoop.maven.schedule;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import randoop.maven.bytecode.ClassFile;
+import randoop.maven.exec.Shard;
+
+/**
+ * Splits one wall-clock time slot across Randoop shards. The slot, times the number
+ * of shards that run at once, is a budget of CPU-seconds; it is spent in two rounds:
+ * <ol>
+ *   <li>every shard gets a share of {@link #EXPLORATION_SHARE} of the budget, in
+ *   proportion to the weight of its classes; i.e., their public API, scaled by the
+ *   tests per second they yielded in earlier builds. Shares are cut so that the round
+ *   ends within that share of the wall-clock slot, however shards queue for slots;</li>
+ *   <li>whatever the first round left unused goes to follow-up runs (new seeds, same
+ *   classes) of the shards that produced the most tests per second, as those are the
+ *   ones still finding new behavior. Shards that produced nothing get no more time.</li>
+ * </ol>
+ */
+public class BudgetScheduler {
+
+  /** Share of the budget handed out before anything is known about this build's yield. */
+  public static final double EXPLORATION_SHARE = 0.7;
+  /** Shortest follow-up run worth a JVM start. */
+  public static final int MIN_FOLLOW_UP_SECONDS = 5;
+
+  // History only nudges the static weight; a class that yielded nothing once still runs
+  private static final double MIN_YIELD_FACTOR = 0.25;
+  private static final double MAX_YIELD_FACTOR = 4.0;
+
+  private final int wallSeconds;
+  private final int slots;
+  private final long startNanos;
+  private final Map<String, Shard> parents = new HashMap<>();
+  private final Map<String, double[]> outcomes = new HashMap<>();
+
+  /**
+   * @param wallSeconds wall-clock time all shards must finish in
+   * @param slots       number of shards that run at once
+   */
+  public BudgetScheduler(int wallSeconds, int slots) {
+    Preconditions.checkArgument(wallSeconds > 0);
+    Preconditions.checkArgument(slots > 0);
+    this.wallSeconds = wallSeconds;
+    this.slots = slots;
+    this.startNanos = System.nanoTime();
+  }
+
+  /** @return cost of generating tests for a class: 1 plus its public methods and constructors */
+  public static long staticWeight(ClassFile classFile) {
+    return 1 + classFile.getMethods().stream()
+        .filter(ClassFile.Member::isPublic)
+        .filter(m -> !m.isSynthetic())
+        .count();
+  }
+
+  /**
+   * @param staticWeights class name to {@link #staticWeight(ClassFile)}
+   * @param history       yield of earlier builds
+   * @return weight of each class, in hundredths of a public member
+   */
+  public static ToLongFunction<String> weights(Map<String, Long> staticWeights,
+      YieldHistory history) {
+    final OptionalDouble mean = history.meanYield();
+    final Map<String, Long> results = new HashMap<>();
+    staticWeights.forEach((cls, weight) -> {
+      double factor = 1;
+      final OptionalDouble yield = history.yieldOf(cls);
+      if (yield.isPresent() && mean.isPresent() && mean.getAsDouble() > 0) {
+        factor = Math.max(MIN_YIELD_FACTOR,
+            Math.min(MAX_YIELD_FACTOR, yield.getAsDouble() / mean.getAsDouble()));
+      }
+      results.put(cls, Math.max(1, Math.round(weight * factor * 100)));
+    });
+
+    final Map<String, Long> frozen = ImmutableMap.copyOf(results);
+    return cls -> frozen.getOrDefault(cls, 100L);
+  }
+
+  /**
+   * Sizes the first round: each shard gets a share of the budget in proportion to its
+   * weight. Shards run longest first, each on the slot free earliest (as the mojos run
+   * them); if the busiest slot would then run past {@link #EXPLORATION_SHARE} of the
+   * wall-clock slot, every time limit is scaled down until it does not.
+   *
+   * @param shardWeights total weight of the classes of each shard
+   * @return first-round time limit of each shard, in the order of {@code shardWeights}
+   */
+  public List<Integer> initialTimeLimits(List<Long> shardWeights) {
+    final long totalWeight = shardWeights.stream().mapToLong(Long::longValue).sum();
+    Preconditions.checkArgument(totalWeight > 0);
+    final double maxMakespan = EXPLORATION_SHARE * wallSeconds;
+    final double budget = maxMakespan * slots;
+    final double[] shares = shardWeights.stream()
+        .mapToDouble(w -> Math.min(maxMakespan, budget * w / totalWeight))
+        .toArray();
+
+    double scale = Math.min(1, maxMakespan / makespan(shares));
+    List<Integer> results = timeLimits(shares, scale);
+    // Limits are rounded, and none is under a second; scale down until that fits too
+    while (scale > 0.01 && makespan(results.stream().mapToDouble(i -> i).toArray())
+        > maxMakespan) {
+      scale *= 0.95;
+      results = timeLimits(shares, scale);
+    }
+    return results;
+  }
+
+  private static List<Integer> timeLimits(double[] shares, double scale) {
+    return Arrays.stream(shares)
+        .mapToObj(s -> (int) Math.max(1, s * scale))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** @return time the busiest slot takes when {@code limits} run longest first */
+  private double makespan(double[] limits) {
+    final double[] sorted = limits.clone();
+    Arrays.sort(sorted);
+    final PriorityQueue<Double> loads = new PriorityQueue<>();
+    for (int i = 0; i < slots; i++) {
+      loads.add(0.0);
+    }
+    for (int i = sorted.length - 1; i >= 0; i--) {
+      loads.add(loads.poll() + sorted[i]);
+    }
+    return loads.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+  }
+
+  /** Records how long a shard ran for, and how many tests it produced. */
+  public synchronized void record(Shard shard, double elapsedSeconds, long tests) {
+    outcomes.put(shard.getId(), new double[] {
+        Math.min(elapsedSeconds, shard.getTimeLimitInSeconds()), Math.max(0, tests)});
+  }
+
+  /**
+   * Hands the budget the first round left unused to the shards with the highest yield.
+   * At most one follow-up per running slot is planned, and none of them may run past
+   * the end of the wall-clock slot.
+   *
+   * @param firstRound shards that ran in the first round
+   * @return follow-up shards; possibly none
+   */
+  public synchronized List<Shard> followUps(List<Shard> firstRound) {
+    final double remainingWall = wallSeconds
+        - (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    double unused = (double) wallSeconds * slots;
+    for (double[] each : outcomes.values()) {
+      unused -= each[0];
+    }
+
+    if (remainingWall < MIN_FOLLOW_UP_SECONDS || unused < MIN_FOLLOW_UP_SECONDS) {
+      return ImmutableList.of();
+    }
+
+    final List<Shard> productive = firstRound.stream()
+        .filter(s -> yieldOf(s.getId()) > 0)
+        .sorted(Comparator.comparingDouble((Shard s) -> yieldOf(s.getId())).reversed())
+        .limit(slots)
+        .collect(Collectors.toList());
+    final double totalYield = productive.stream().mapToDouble(s -> yieldOf(s.getId())).sum();
+
+    final List<Shard> results = new ArrayList<>();
+    for (Shard each : productive) {
+      final int seconds = (int) Math.min(remainingWall,
+          unused * yieldOf(each.getId()) / totalYield);
+      if (seconds < MIN_FOLLOW_UP_SECONDS) continue;
+
+      final String id = each.getId() + "_2";
+      final Shard followUp = new Shard(id, each.getClassNames(),
+          each.getRandomSeed() + firstRound.size(), seconds,
+          each.getOutputDir().resolveSibling(id), id);
+      parents.put(id, each);
+      results.add(followUp);
+    }
+
+    return ImmutableList.copyOf(results);
+  }
+
+  /** @return the first-round shard a follow-up continues, or {@code shard} itself */
+  public synchronized String parentOf(String shardId) {
+    final Shard parent = parents.get(shardId);
+    return parent == null ? shardId : parent.getId();
+  }
+
+  /** Adds the yield of every shard run so far (follow-ups count for their parent). */
+  public synchronized void updateHistory(YieldHistory history, Collection<Shard> ran) {
+    final Map<String, double[]> totals = new HashMap<>();
+    final Map<String, List<String>> classes = new HashMap<>();
+    for (Shard each : ran) {
+      final double[] outcome = outcomes.get(each.getId());
+      if (outcome == null) continue;
+
+      final String parent = parentOf(each.getId());
+      final double[] total = totals.computeIfAbsent(parent, k -> new double[2]);
+      total[0] += outcome[0];
+      total[1] += outcome[1];
+      classes.put(parent, each.getClassNames());
+    }
+
+    totals.forEach((parent, total) -> {
+      if (total[0] > 0) {
+        history.record(classes.get(parent), total[1] / total[0]);
+      }
+    });
+  }
+
+  private double yieldOf(String shardId) {
+    final double[] outcome = outcomes.get(shardId);
+    return outcome == null || outcome[0] <= 0 ? 0 : outcome[1] / outcome[0];
+  }
+}
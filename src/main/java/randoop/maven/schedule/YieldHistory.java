@@ -0,0 +1,108 @@
+package randoop.maven.schedule;
+
+import com.google.common.base.Splitter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+
+/**
+ * Tests Randoop produced per second of generation, for each class under test, over
+ * earlier builds. Randoop mixes all classes of a run into the same tests, so every
+ * class of a run gets that run's yield. Older runs fade out: each new run counts as
+ * much as all earlier runs together.
+ * <p>
+ * The history is a plain, tab-separated text file:
+ * <pre>
+ *   &lt;class name&gt;  &lt;tests per second&gt;  &lt;number of runs&gt;
+ * </pre>
+ */
+public class YieldHistory {
+
+  private static final String HEADER = "# randoop-maven-plugin yield history v1";
+  private static final Splitter TAB = Splitter.on('\t');
+
+  private final Map<String, double[]> yields;
+
+  private YieldHistory(Map<String, double[]> yields) {
+    this.yields = yields;
+  }
+
+  public static YieldHistory empty() {
+    return new YieldHistory(new TreeMap<>());
+  }
+
+  /** Loads a history; a missing or unreadable history is treated as empty. */
+  public static YieldHistory load(Path historyFile) {
+    final YieldHistory history = empty();
+    if (!Files.isRegularFile(historyFile)) {
+      return history;
+    }
+
+    try {
+      for (String line : Files.readAllLines(historyFile, StandardCharsets.UTF_8)) {
+        if (line.isEmpty() || line.startsWith("#")) continue;
+
+        final List<String> cols = TAB.splitToList(line);
+        if (cols.size() == 3) {
+          history.yields.put(cols.get(0), new double[] {
+              Double.parseDouble(cols.get(1)), Double.parseDouble(cols.get(2))});
+        }
+      }
+    } catch (IOException | RuntimeException ignored) {
+      return empty();
+    }
+
+    return history;
+  }
+
+  public void save(Path historyFile) throws IOException {
+    Files.createDirectories(historyFile.getParent());
+    final Path tmp = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (Map.Entry<String, double[]> each : yields.entrySet()) {
+        writer.write(String.join("\t", each.getKey(),
+            String.format(Locale.ROOT, "%.4f", each.getValue()[0]),
+            String.valueOf((long) each.getValue()[1])));
+        writer.newLine();
+      }
+    }
+
+    Files.move(tmp, historyFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** @return tests per second seen for {@code className}, if it was ever generated for */
+  public OptionalDouble yieldOf(String className) {
+    final double[] entry = yields.get(className);
+    return entry == null ? OptionalDouble.empty() : OptionalDouble.of(entry[0]);
+  }
+
+  /** @return mean yield over all known classes, if any */
+  public OptionalDouble meanYield() {
+    return yields.values().stream().mapToDouble(e -> e[0]).average();
+  }
+
+  /** Records that a run over {@code classNames} produced {@code testsPerSecond}. */
+  public void record(Collection<String> classNames, double testsPerSecond) {
+    for (String each : classNames) {
+      final double[] entry = yields.get(each);
+      if (entry == null) {
+        yields.put(each, new double[] {testsPerSecond, 1});
+      } else {
+        entry[0] = (entry[0] + testsPerSecond) / 2;
+        entry[1] += 1;
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package randoop.maven.utils;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Deletes the files of a tree that match a predicate, plus every directory left empty,
+ * in a single walk. File attributes come with the walk, so no file is stat'ed twice;
+ * matched files are deleted in batches on a fork-join pool while the walk goes on.
+ * Whether a directory ends up empty is known when the walk leaves it (all of its files
+ * matched, and all of its subdirectories end up empty), so empty directories are removed
+ * bottom-up without listing them again.
+ */
+public class TreeCleaner {
+
+  /** Randoop's JUnit files; e.g., RegressionTest0.java or ErrorTest_S1_0.java */
+  public static final Predicate<Path> RANDOOP_TEST_FILE = file -> {
+    final String name = file.getFileName().toString();
+    return name.endsWith(".java") && Utils.RANDOOP_TESTS_PRED.test(name);
+  };
+
+  private static final int BATCH_SIZE = 256;
+
+  private final ForkJoinPool pool;
+
+  public TreeCleaner() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public TreeCleaner(ForkJoinPool pool) {
+    this.pool = Preconditions.checkNotNull(pool);
+  }
+
+  /**
+   * Deletes the files under {@code root} that match {@code matches}, and then every
+   * directory under {@code root} that is left empty; including {@code root} itself.
+   * Failures to delete are counted, not thrown.
+   *
+   * @param root    directory to clean; nothing happens if it does not exist
+   * @param matches files to delete
+   * @return what was deleted
+   */
+  public Result clean(Path root, Predicate<Path> matches) {
+    Preconditions.checkNotNull(root);
+    Preconditions.checkNotNull(matches);
+
+    final Result result = new Result();
+    if (!Files.isDirectory(root)) {
+      return result;
+    }
+
+    final Walker walker = new Walker(matches, result);
+    try {
+      Files.walkFileTree(root, walker);
+    } catch (IOException e) {
+      result.failures.increment();
+    }
+
+    // All files must be gone before their directories can go
+    walker.tasks.forEach(ForkJoinTask::join);
+    for (Path each : walker.emptyDirs) {
+      try {
+        Files.delete(each);
+        result.directoriesDeleted.increment();
+      } catch (NoSuchFileException ignored) {
+        // Already gone
+      } catch (IOException e) {
+        // E.g., a file could not be deleted, or one was created meanwhile
+        result.failures.increment();
+      }
+    }
+
+    return result;
+  }
+
+  private class Walker extends SimpleFileVisitor<Path> {
+    private final Predicate<Path> matches;
+    private final Result result;
+    private final Deque<Directory> open = new ArrayDeque<>();
+    private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    // Post-order; i.e., every directory comes after its subdirectories
+    private final List<Path> emptyDirs = new ArrayList<>();
+
+    Walker(Predicate<Path> matches, Result result) {
+      this.matches = matches;
+      this.result = result;
+    }
+
+    @Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+      open.push(new Directory());
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+      // The root itself; i.e., it stopped being a directory since clean checked it
+      if (open.isEmpty()) return FileVisitResult.CONTINUE;
+
+      final Directory current = open.peek();
+      if (!attrs.isRegularFile() || !matches.test(file)) {
+        current.kept++;
+        return FileVisitResult.CONTINUE;
+      }
+
+      current.files.add(file);
+      current.sizes.add(attrs.size());
+      if (current.files.size() == BATCH_SIZE) {
+        submit(current);
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override public FileVisitResult visitFileFailed(Path file, IOException exc) {
+      // The root fails before any directory is open; e.g., it cannot be read
+      if (!open.isEmpty()) {
+        open.peek().kept++;
+      }
+      result.failures.increment();
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+      final Directory current = open.pop();
+      submit(current);
+      if (exc != null) {
+        result.failures.increment();
+      }
+
+      if (current.kept == 0 && exc == null) {
+        emptyDirs.add(dir);
+      } else if (!open.isEmpty()) {
+        open.peek().kept++;
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    private void submit(Directory directory) {
+      if (directory.files.isEmpty()) return;
+
+      final List<Path> files = directory.files;
+      final List<Long> sizes = directory.sizes;
+      directory.files = new ArrayList<>();
+      directory.sizes = new ArrayList<>();
+      tasks.add(pool.submit(() -> {
+        for (int i = 0; i < files.size(); i++) {
+          try {
+            Files.delete(files.get(i));
+            result.filesDeleted.increment();
+            result.bytesFreed.add(sizes.get(i));
+          } catch (NoSuchFileException ignored) {
+            // Already gone
+          } catch (IOException | RuntimeException e) {
+            result.failures.increment();
+          }
+        }
+      }));
+    }
+  }
+
+  private static class Directory {
+    private List<Path> files = new ArrayList<>();
+    private List<Long> sizes = new ArrayList<>();
+    private int kept;
+  }
+
+  /** What a cleanup deleted. */
+  public static class Result {
+    private final LongAdder filesDeleted = new LongAdder();
+    private final LongAdder directoriesDeleted = new LongAdder();
+    private final LongAdder bytesFreed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public long getFilesDeleted() {
+      return filesDeleted.sum();
+    }
+
+    public long getDirectoriesDeleted() {
+      return directoriesDeleted.sum();
+    }
+
+    public long getBytesFreed() {
+      return bytesFreed.sum();
+    }
+
+    /** @return files or directories that could not be read or deleted */
+    public long getFailures() {
+      return failures.sum();
+    }
+
+    @Override public String toString() {
+      return String.format("%d files (%d KB) and %d directories deleted%s",
+          getFilesDeleted(), getBytesFreed() / 1024, getDirectoriesDeleted(),
+          getFailures() == 0 ? "" : ", " + getFailures() + " failures");
+    }
+  }
+}
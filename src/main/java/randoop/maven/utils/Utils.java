@@ -21,10 +21,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -39,6 +41,8 @@ public class Utils {
   public static final Predicate<String> RANDOOP_TESTS_PRED = Pattern.compile(
       "RegressionTest\\d*|RegressionTests\\d*|RegressionTest.+|RegressionTests.+|ErrorTest\\d*|ErrorTests\\d*|ErrorTest.+|ErrorTests.+").asPredicate();
 
+  private static final Pattern SIZE = Pattern.compile("(\\d+)\\s*([kmgt]?)b?");
+
 
 
   private Utils(){
@@ -166,6 +170,11 @@ public class Utils {
     return Optional.ofNullable(current);
   }
 
+  /**
+   * Finds the classes of a package by scanning the whole classpath of {@code loader}, and
+   * then loading (and linking) each match. Kept as the reference implementation for
+   * {@link randoop.maven.bytecode.ClassDiscovery}, which does the same without loading classes.
+   */
   public static Set<Class<?>> classesLookup(final String packageName, ClassLoader loader)
       throws IOException {
     Preconditions.checkNotNull(packageName);
@@ -236,4 +245,36 @@ public class Utils {
   public static URL[] toURLArray(final Collection<URL> candidateURLs){
     return candidateURLs.toArray(new URL[0]);
   }
+
+  /**
+   * @param size a size in bytes, or with a k, m, g or t suffix; e.g., 4g or 3500m
+   * @return the size in bytes
+   * @throws IllegalArgumentException if {@code size} is no size
+   */
+  public static long parseBytes(String size){
+    final Matcher matcher = SIZE.matcher(size.trim().toLowerCase(Locale.ROOT));
+    Preconditions.checkArgument(matcher.matches(), "Not a size: %s", size);
+    final int shift;
+    switch (matcher.group(2)){
+      case "k":
+        shift = 10;
+        break;
+      case "m":
+        shift = 20;
+        break;
+      case "g":
+        shift = 30;
+        break;
+      case "t":
+        shift = 40;
+        break;
+      default:
+        shift = 0;
+    }
+    try {
+      return Math.multiplyExact(Long.parseLong(matcher.group(1)), 1L << shift);
+    } catch (ArithmeticException | NumberFormatException e){
+      throw new IllegalArgumentException("Size too large: " + size, e);
+    }
+  }
 }
@@ -0,0 +1,200 @@
+package randoop.maven.bytecode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ClassFileTest {
+
+  static class Constants {
+    static final long WIDE_FIELD = 0x123456789ABCL;
+
+    long big() {
+      return 1234567890123L;
+    }
+
+    double ratio() {
+      return 2.75;
+    }
+
+    String after() {
+      return "after the wide constants";
+    }
+  }
+
+  static class StaticMember {
+  }
+
+  private static class PrivateMember {
+  }
+
+  class InnerMember {
+  }
+
+  interface Contract {
+  }
+
+  @interface Marker {
+  }
+
+  enum Color { RED }
+
+  static Object anonymous() {
+    return new Object() {
+    };
+  }
+
+  static Object local() {
+    class Local {
+    }
+    return new Local();
+  }
+
+  static byte[] bytesOf(Class<?> type) throws IOException {
+    final String resource = "/" + type.getName().replace('.', '/') + ".class";
+    try (InputStream in = type.getResourceAsStream(resource)) {
+      return in.readAllBytes();
+    }
+  }
+
+  static ClassFile read(Class<?> type) throws IOException {
+    return ClassFile.parse(bytesOf(type));
+  }
+
+  @Test public void wideConstantsTakeTwoEntries() throws IOException {
+    final ConstantPool pool = read(Constants.class).getConstantPool();
+
+    final List<Long> longs = new ArrayList<>();
+    final List<Double> doubles = new ArrayList<>();
+    final List<String> strings = new ArrayList<>();
+    for (int i = 1; i < pool.size(); i++) {
+      switch (pool.tag(i)) {
+        case ConstantPool.LONG:
+          longs.add(pool.longValue(i));
+          assertEquals("slot after a long", 0, pool.tag(i + 1));
+          break;
+        case ConstantPool.DOUBLE:
+          doubles.add(pool.doubleValue(i));
+          assertEquals("slot after a double", 0, pool.tag(i + 1));
+          break;
+        case ConstantPool.STRING:
+          strings.add(pool.string(i));
+          break;
+        default:
+          break;
+      }
+    }
+
+    assertTrue(longs.containsAll(Arrays.asList(0x123456789ABCL, 1234567890123L)));
+    assertEquals(Arrays.asList(2.75), doubles);
+    // Entries past the wide ones are found at the right offsets
+    assertEquals(Arrays.asList("after the wide constants"), strings);
+  }
+
+  @Test public void membersAfterTheConstantPool() throws IOException {
+    final ClassFile classFile = read(Constants.class);
+
+    assertEquals("randoop.maven.bytecode.ClassFileTest$Constants", classFile.getName());
+    assertEquals("randoop.maven.bytecode", classFile.getPackageName());
+    assertEquals("ClassFileTest$Constants", classFile.getSimpleBinaryName());
+    assertEquals("java.lang.Object", classFile.getSuperName().orElse(null));
+    assertEquals(Arrays.asList("WIDE_FIELD"), classFile.getFields().stream()
+        .map(ClassFile.Member::getName)
+        .collect(Collectors.toList()));
+    assertEquals(Arrays.asList("<init>()V", "big()J", "ratio()D", "after()Ljava/lang/String;"),
+        classFile.getMethods().stream()
+            .map(m -> m.getName() + m.getDescriptor())
+            .collect(Collectors.toList()));
+    assertEquals(1, classFile.getConstructors().size());
+  }
+
+  @Test public void topLevelClass() throws IOException {
+    final ClassFile classFile = read(ClassFileTest.class);
+
+    assertFalse(classFile.isNested());
+    assertFalse(classFile.isInner());
+    assertTrue(classFile.isPublic());
+    assertEquals(classFile.getAccessFlags(), classFile.getDeclaredAccessFlags());
+  }
+
+  @Test public void staticMemberClass() throws IOException {
+    final ClassFile classFile = read(StaticMember.class);
+
+    assertTrue(classFile.isNested());
+    assertTrue(classFile.isMemberClass());
+    assertFalse(classFile.isInner());
+    assertFalse(classFile.isAnonymous());
+    assertFalse(classFile.isLocal());
+    assertTrue((classFile.getDeclaredAccessFlags() & ClassFile.ACC_STATIC) != 0);
+  }
+
+  @Test public void privateMemberClass() throws IOException {
+    final ClassFile classFile = read(PrivateMember.class);
+
+    // The class file header cannot say private; the InnerClasses attribute does
+    assertEquals(0, classFile.getAccessFlags() & ClassFile.ACC_PRIVATE);
+    assertTrue((classFile.getDeclaredAccessFlags() & ClassFile.ACC_PRIVATE) != 0);
+    assertFalse(classFile.isPublic());
+  }
+
+  @Test public void innerMemberClass() throws IOException {
+    final ClassFile classFile = read(InnerMember.class);
+
+    assertTrue(classFile.isMemberClass());
+    assertTrue(classFile.isInner());
+  }
+
+  @Test public void anonymousClass() throws IOException {
+    final ClassFile classFile = read(anonymous().getClass());
+
+    assertTrue(classFile.isNested());
+    assertTrue(classFile.isAnonymous());
+    assertTrue(classFile.isLocal());
+    assertFalse(classFile.isMemberClass());
+  }
+
+  @Test public void localClass() throws IOException {
+    final ClassFile classFile = read(local().getClass());
+
+    assertTrue(classFile.isLocal());
+    assertFalse(classFile.isAnonymous());
+    assertFalse(classFile.isMemberClass());
+  }
+
+  @Test public void kindsOfTypes() throws IOException {
+    assertTrue(read(Contract.class).isInterface());
+    assertTrue(read(Contract.class).isAbstract());
+    assertTrue(read(Marker.class).isAnnotation());
+    assertTrue(read(Color.class).isEnum());
+    assertFalse(read(StaticMember.class).isInterface());
+  }
+
+  @Test public void rejectsOtherFiles() {
+    try {
+      ClassFile.parse("not a class file".getBytes(StandardCharsets.US_ASCII));
+      fail();
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test public void rejectsTruncatedClassFiles() throws IOException {
+    final byte[] bytes = bytesOf(Constants.class);
+    try {
+      ClassFile.parse(Arrays.copyOf(bytes, bytes.length / 2));
+      fail();
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+}
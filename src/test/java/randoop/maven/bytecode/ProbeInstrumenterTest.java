@@ -0,0 +1,191 @@
+package randoop.maven.bytecode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class ProbeInstrumenterTest {
+
+  public static class Fixture {
+    private final int base;
+
+    public Fixture() {
+      this(1);
+    }
+
+    public Fixture(int base) {
+      this.base = base;
+    }
+
+    // Loops need a StackMapTable
+    public int sum(int n) {
+      int total = 0;
+      for (int i = 0; i < n; i++) {
+        total += base + i;
+      }
+      return total;
+    }
+
+    // Frames with uninitialized objects on the stack
+    public String describe(int n) {
+      return new StringBuilder(n > 0 ? "positive" : "other").toString();
+    }
+
+    // An exception table
+    public String parse(String text) {
+      try {
+        return "number " + Integer.parseInt(text);
+      } catch (NumberFormatException e) {
+        return "not a number";
+      }
+    }
+
+    // Fails on its second line, with more code after it
+    public static int explode(int[] values) {
+      int first = values[0];
+      int second = values[1];
+      return first + second;
+    }
+
+    public void neverCalled() {
+    }
+  }
+
+  /** Defines the probes class and the instrumented fixture; the rest comes from its parent. */
+  private static class InstrumentedLoader extends ClassLoader {
+    private final Map<String, byte[]> classes = new HashMap<>();
+
+    InstrumentedLoader(byte[] fixture) {
+      super(ProbeInstrumenterTest.class.getClassLoader());
+      classes.put(ProbeInstrumenter.PROBES_CLASS, ProbeInstrumenter.probesClass());
+      classes.put(Fixture.class.getName(), fixture);
+    }
+
+    @Override protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded == null) {
+          final byte[] bytes = classes.get(name);
+          loaded = bytes == null
+              ? super.loadClass(name, false)
+              : defineClass(name, bytes, 0, bytes.length);
+        }
+        if (resolve) {
+          resolveClass(loaded);
+        }
+        return loaded;
+      }
+    }
+  }
+
+  private static final List<String> METHODS = Arrays.asList(
+      "<init>()V",
+      "<init>(I)V",
+      "sum(I)I",
+      "describe(I)Ljava/lang/String;",
+      "parse(Ljava/lang/String;)Ljava/lang/String;",
+      "explode([I)I",
+      "neverCalled()V");
+
+  private static ProbeInstrumenter.Instrumented instrument(int firstProbe) throws IOException {
+    return ProbeInstrumenter.instrument(ClassFileTest.bytesOf(Fixture.class), firstProbe);
+  }
+
+  /** @return the instrumented fixture, verified and with its probes set to {@code hits} */
+  private static Class<?> load(ProbeInstrumenter.Instrumented instrumented, boolean[] hits)
+      throws ReflectiveOperationException {
+    final ClassLoader loader = new InstrumentedLoader(instrumented.getBytes());
+    loader.loadClass(ProbeInstrumenter.PROBES_CLASS)
+        .getField(ProbeInstrumenter.PROBES_FIELD)
+        .set(null, hits);
+    return Class.forName(Fixture.class.getName(), true, loader);
+  }
+
+  private static Object call(Class<?> fixture, Object instance, String name, Object... args)
+      throws ReflectiveOperationException {
+    return Arrays.stream(fixture.getMethods())
+        .filter(m -> m.getName().equals(name))
+        .findFirst()
+        .orElseThrow(NoSuchMethodException::new)
+        .invoke(instance, args);
+  }
+
+  @Test public void probesEveryMethodButStaticInitializers() throws IOException {
+    assertEquals(METHODS, instrument(0).getMethods());
+  }
+
+  @Test public void instrumentedMethodsBehaveAsBefore() throws Exception {
+    final boolean[] hits = new boolean[METHODS.size()];
+    final Class<?> fixture = load(instrument(0), hits);
+    final Object instance = fixture.getConstructor().newInstance();
+
+    assertEquals(10, call(fixture, instance, "sum", 4));
+    assertEquals("positive", call(fixture, instance, "describe", 1));
+    assertEquals("other", call(fixture, instance, "describe", 0));
+    assertEquals("number 12", call(fixture, instance, "parse", "12"));
+    assertEquals("not a number", call(fixture, instance, "parse", "twelve"));
+  }
+
+  @Test public void recordsWhichMethodsRan() throws Exception {
+    final int firstProbe = 3;
+    final boolean[] hits = new boolean[firstProbe + METHODS.size()];
+    final Class<?> fixture = load(instrument(firstProbe), hits);
+    final Object instance = fixture.getConstructor().newInstance();
+    call(fixture, instance, "sum", 2);
+    call(fixture, instance, "describe", 1);
+    call(fixture, instance, "parse", "x");
+
+    assertArrayEquals(
+        new boolean[] {false, false, false, true, true, true, true, true, false, false},
+        hits);
+  }
+
+  @Test public void probesPastTheShortRange() throws Exception {
+    // The first probes are pushed with sipush, the others loaded from the constant pool
+    final int firstProbe = Short.MAX_VALUE - 1;
+    final boolean[] hits = new boolean[firstProbe + METHODS.size()];
+    final Class<?> fixture = load(instrument(firstProbe), hits);
+    call(fixture, fixture.getConstructor(int.class).newInstance(2), "parse", "1");
+
+    assertFalse(hits[firstProbe]);
+    assertTrue(hits[firstProbe + METHODS.indexOf("<init>(I)V")]);
+    assertTrue(hits[firstProbe + METHODS.indexOf("parse(Ljava/lang/String;)Ljava/lang/String;")]);
+    assertFalse(hits[firstProbe + METHODS.indexOf("sum(I)I")]);
+  }
+
+  @Test public void keepsLineNumbers() throws Exception {
+    final Class<?> fixture = load(instrument(0), new boolean[METHODS.size()]);
+    try {
+      call(fixture, null, "explode", (Object) new int[1]);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertEquals(lineOfExplode(), e.getCause().getStackTrace()[0].getLineNumber());
+    }
+  }
+
+  private static int lineOfExplode() {
+    try {
+      Fixture.explode(new int[1]);
+      throw new AssertionError();
+    } catch (ArrayIndexOutOfBoundsException e) {
+      return e.getStackTrace()[0].getLineNumber();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    ProbeInstrumenter.instrument("not a class file".getBytes(StandardCharsets.US_ASCII), 0);
+  }
+}
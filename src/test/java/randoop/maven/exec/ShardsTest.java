@@ -0,0 +1,172 @@
+package randoop.maven.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardsTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final ToLongFunction<String> UNIFORM = c -> 1;
+
+  private static long load(List<String> group, ToLongFunction<String> weight) {
+    return group.stream().mapToLong(weight).sum();
+  }
+
+  @Test public void balancesByWeight() {
+    final Map<String, Long> weights = ImmutableMap.<String, Long>builder()
+        .put("a.A", 8L).put("a.B", 7L).put("a.C", 6L).put("a.D", 5L)
+        .put("a.E", 4L).put("a.F", 3L).put("a.G", 2L).put("a.H", 1L)
+        .build();
+    final ToLongFunction<String> weight = weights::get;
+
+    final List<List<String>> groups = Shards.partition(weights.keySet(), 3, weight);
+
+    // Heaviest first, each to the lightest group; ties go to the first group
+    assertEquals(Arrays.asList(
+        Arrays.asList("a.A", "a.F", "a.G"),
+        Arrays.asList("a.B", "a.E", "a.H"),
+        Arrays.asList("a.C", "a.D")), groups);
+    assertEquals(Arrays.asList(13L, 12L, 11L), groups.stream()
+        .map(g -> load(g, weight))
+        .collect(Collectors.toList()));
+  }
+
+  @Test public void everyClassExactlyOnce() {
+    final List<String> classes = Arrays.asList("a.A", "a.B", "a.C", "a.D", "a.E");
+
+    final List<String> assigned = Shards.partition(classes, 2, UNIFORM).stream()
+        .flatMap(List::stream)
+        .sorted()
+        .collect(Collectors.toList());
+
+    assertEquals(classes, assigned);
+  }
+
+  @Test public void stableAcrossInputOrders() {
+    final List<String> classes = Arrays.asList("a.A", "a.B", "a.C", "a.D", "a.E");
+    final List<String> reversed = ImmutableList.copyOf(classes).reverse();
+
+    assertEquals(Shards.partition(classes, 3, UNIFORM), Shards.partition(reversed, 3, UNIFORM));
+  }
+
+  @Test public void noMoreGroupsThanClasses() {
+    final List<List<String>> groups = Shards.partition(Arrays.asList("a.A", "a.B"), 8, UNIFORM);
+
+    assertEquals(2, groups.size());
+    groups.forEach(g -> assertEquals(1, g.size()));
+  }
+
+  @Test public void zeroWeightsStillSpread() {
+    final List<List<String>> groups = Shards.partition(
+        Arrays.asList("a.A", "a.B", "a.C", "a.D"), 2, c -> 0);
+
+    assertEquals(Arrays.asList(2, 2), groups.stream()
+        .map(List::size)
+        .collect(Collectors.toList()));
+  }
+
+  @Test public void noClassesNoGroups() {
+    assertTrue(Shards.partition(Collections.emptyList(), 4, UNIFORM).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNoGroups() {
+    Shards.partition(Arrays.asList("a.A"), 0, UNIFORM);
+  }
+
+  @Test public void chunksInNameOrder() {
+    final List<List<String>> groups = Shards.chunks(
+        Arrays.asList("a.E", "a.B", "a.D", "a.A", "a.C"), 2);
+
+    assertEquals(Arrays.asList(
+        Arrays.asList("a.A", "a.B"),
+        Arrays.asList("a.C", "a.D"),
+        Arrays.asList("a.E")), groups);
+  }
+
+  @Test public void chunksOfOne() {
+    assertEquals(3, Shards.chunks(Arrays.asList("a.A", "a.B", "a.C"), 1).size());
+    assertTrue(Shards.chunks(Collections.emptyList(), 4).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEmptyChunks() {
+    Shards.chunks(Arrays.asList("a.A"), 0);
+  }
+
+  @Test public void timeLimitSplitByWaves() {
+    assertEquals(60, Shards.timeLimitPerShard(60, 4, 4));
+    assertEquals(30, Shards.timeLimitPerShard(60, 5, 4));
+    assertEquals(20, Shards.timeLimitPerShard(60, 3, 1));
+    assertEquals(60, Shards.timeLimitPerShard(60, 0, 2));
+    assertEquals(1, Shards.timeLimitPerShard(2, 10, 1));
+  }
+
+  private Shard shard(String id, String... files) throws IOException {
+    final Path dir = temp.getRoot().toPath().resolve("shards").resolve(id);
+    for (String each : files) {
+      final Path file = dir.resolve(each);
+      Files.createDirectories(file.getParent());
+      Files.write(file, id.getBytes(StandardCharsets.UTF_8));
+    }
+    return new Shard(id, ImmutableList.of(), 0, 1, dir, id);
+  }
+
+  @Test public void mergeMovesFilesAndReplacesStaleOnes() throws IOException {
+    final Path target = temp.newFolder("target").toPath();
+    final Path stale = target.resolve("a/b/RegressionTest_S0_0.java");
+    Files.createDirectories(stale.getParent());
+    Files.write(stale, "stale".getBytes(StandardCharsets.UTF_8));
+    final Shard s0 = shard("S0", "a/b/RegressionTest_S0_0.java");
+    final Shard s1 = shard("S1", "a/b/RegressionTest_S1_0.java", "a/b/ErrorTest_S1_0.java");
+
+    final ListMultimap<String, Path> merged = Shards.merge(Arrays.asList(s0, s1), target);
+
+    assertEquals(Arrays.asList(stale), merged.get("S0"));
+    assertEquals(2, merged.get("S1").size());
+    assertEquals("S0", new String(Files.readAllBytes(stale), StandardCharsets.UTF_8));
+    assertTrue(Files.isRegularFile(target.resolve("a/b/ErrorTest_S1_0.java")));
+    assertFalse(Files.exists(s1.getOutputDir().resolve("a/b/ErrorTest_S1_0.java")));
+  }
+
+  @Test public void mergeSkipsShardsWithoutOutput() throws IOException {
+    final Path target = temp.newFolder("target").toPath();
+    final Shard empty = new Shard("S0", ImmutableList.of(), 0, 1,
+        temp.getRoot().toPath().resolve("missing"), "S0");
+
+    assertTrue(Shards.merge(Arrays.asList(empty), target).isEmpty());
+  }
+
+  @Test public void mergeRejectsDuplicateClasses() throws IOException {
+    final Path target = temp.newFolder("target").toPath();
+    final Shard s0 = shard("S0", "a/RegressionTest.java");
+    final Shard s1 = shard("S1", "a/RegressionTest.java");
+
+    try {
+      Shards.merge(Arrays.asList(s0, s1), target);
+      fail();
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains("S1"));
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package randoop.maven.incremental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FingerprintIndexTest {
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path classes;
+  private Path target;
+
+  @Before public void setUp() throws IOException {
+    classes = temp.newFolder("classes").toPath();
+    target = temp.newFolder("target").toPath();
+  }
+
+  private void writeClass(String className, String content) throws IOException {
+    final Path file = FingerprintIndex.classFile(classes, className);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private void writeTest(String relative) throws IOException {
+    final Path file = target.resolve(relative);
+    Files.createDirectories(file.getParent());
+    Files.write(file, relative.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Two groups: g1 with a.A and a.B, g2 with a.C; each with its test files written. */
+  private FingerprintIndex twoGroups() throws IOException {
+    writeClass("a.A", "A");
+    writeClass("a.B", "B");
+    writeClass("a.C", "C");
+    writeTest("a/RegressionTest_g1_0.java");
+    writeTest("a/RegressionTest_g2_0.java");
+
+    final Map<String, String> hashes = fingerprint("a.A", "a.B", "a.C");
+    final FingerprintIndex index = FingerprintIndex.empty();
+    index.recordGroup("g1", ImmutableMap.of("a.A", hashes.get("a.A"), "a.B", hashes.get("a.B")),
+        Arrays.asList("a/RegressionTest_g1_0.java"));
+    index.recordGroup("g2", ImmutableMap.of("a.C", hashes.get("a.C")),
+        Arrays.asList("a/RegressionTest_g2_0.java"));
+    return index;
+  }
+
+  private Map<String, String> fingerprint(String... classNames) throws IOException {
+    return FingerprintIndex.fingerprint(classes, Arrays.asList(classNames));
+  }
+
+  @Test public void fingerprintsExistingClassFiles() throws IOException {
+    writeClass("a.A", "one");
+    writeClass("a.A$1", "one");
+    writeClass("a.B", "two");
+
+    final Map<String, String> hashes = fingerprint("a.A", "a.A$1", "a.B", "a.Missing");
+
+    assertEquals(ImmutableSet.of("a.A", "a.A$1", "a.B"), hashes.keySet());
+    assertEquals(hashes.get("a.A"), hashes.get("a.A$1"));
+    assertNotEquals(hashes.get("a.A"), hashes.get("a.B"));
+    assertEquals(64, hashes.get("a.A").length());
+  }
+
+  @Test public void nothingStaleWhenNothingChanged() throws IOException {
+    final FingerprintIndex index = twoGroups();
+    final Map<String, String> current = fingerprint("a.A", "a.B", "a.C");
+
+    final Set<String> stale = index.staleGroups(current, target);
+
+    assertTrue(stale.isEmpty());
+    assertTrue(index.classesToGenerate(current, stale).isEmpty());
+  }
+
+  @Test public void changedClassInvalidatesOnlyItsGroup() throws IOException {
+    final FingerprintIndex index = twoGroups();
+    writeClass("a.B", "B, changed");
+    final Map<String, String> current = fingerprint("a.A", "a.B", "a.C");
+
+    final Set<String> stale = index.staleGroups(current, target);
+
+    assertEquals(ImmutableSet.of("g1"), stale);
+    assertEquals(ImmutableSet.of("a.A", "a.B"), index.classesToGenerate(current, stale));
+  }
+
+  @Test public void removedClassInvalidatesItsGroup() throws IOException {
+    final FingerprintIndex index = twoGroups();
+    final Map<String, String> current = fingerprint("a.A", "a.B");
+
+    final Set<String> stale = index.staleGroups(current, target);
+
+    assertEquals(ImmutableSet.of("g2"), stale);
+    assertTrue(index.classesToGenerate(current, stale).isEmpty());
+  }
+
+  @Test public void deletedTestFileInvalidatesItsGroup() throws IOException {
+    final FingerprintIndex index = twoGroups();
+    Files.delete(target.resolve("a/RegressionTest_g2_0.java"));
+
+    final Map<String, String> current = fingerprint("a.A", "a.B", "a.C");
+    final Set<String> stale = index.staleGroups(current, target);
+
+    assertEquals(ImmutableSet.of("g2"), stale);
+    assertEquals(ImmutableSet.of("a.C"), index.classesToGenerate(current, stale));
+  }
+
+  @Test public void newClassesAreGenerated() throws IOException {
+    final FingerprintIndex index = twoGroups();
+    writeClass("a.D", "D");
+    final Map<String, String> current = fingerprint("a.A", "a.B", "a.C", "a.D");
+
+    final Set<String> stale = index.staleGroups(current, target);
+
+    assertTrue(stale.isEmpty());
+    assertEquals(ImmutableSet.of("a.D"), index.classesToGenerate(current, stale));
+  }
+
+  @Test public void removeGroupsForgetsTheirClasses() throws IOException {
+    final FingerprintIndex index = twoGroups();
+
+    index.removeGroups(ImmutableSet.of("g1"));
+
+    assertEquals(ImmutableSet.of("a.C"), index.hashes().keySet());
+    assertTrue(index.testFilesOf("g1").isEmpty());
+    assertEquals(Arrays.asList("a/RegressionTest_g2_0.java"), index.testFilesOf("g2"));
+  }
+
+  @Test public void saveAndLoad() throws IOException {
+    final FingerprintIndex index = twoGroups();
+    final Path file = temp.getRoot().toPath().resolve(".randoop.d").resolve("index.tsv");
+
+    index.save(file);
+    final FingerprintIndex loaded = FingerprintIndex.load(file);
+
+    assertEquals(index.hashes(), loaded.hashes());
+    assertEquals(index.testFilesOf("g1"), loaded.testFilesOf("g1"));
+    assertEquals(index.testFilesOf("g2"), loaded.testFilesOf("g2"));
+    assertFalse(Files.exists(file.resolveSibling("index.tsv.tmp")));
+    writeClass("a.C", "C, changed");
+    assertEquals(ImmutableSet.of("g2"),
+        loaded.staleGroups(fingerprint("a.A", "a.B", "a.C"), target));
+  }
+
+  @Test public void missingIndexIsEmpty() {
+    final FingerprintIndex index = FingerprintIndex.load(temp.getRoot().toPath().resolve("none"));
+
+    assertTrue(index.hashes().isEmpty());
+  }
+}